@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.idempotent;
+
+/**
+ * A simple in-memory Bloom filter over string keys.
+ * <p/>
+ * The bit positions are derived from a single 64 bit FNV-1a hash using double hashing,
+ * so each lookup hashes the key only once.
+ */
+final class BloomFilter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] bits;
+    private final long numberOfBits;
+    private final int numberOfHashes;
+
+    BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("falsePositiveProbability must be between 0 and 1");
+        }
+
+        long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        size = Math.max(64, Math.min(size, 64L * Integer.MAX_VALUE));
+        this.bits = new long[(int) ((size + 63) / 64)];
+        this.numberOfBits = bits.length * 64L;
+        this.numberOfHashes = Math.max(1, (int) Math.round((double) numberOfBits / expectedInsertions * Math.log(2)));
+    }
+
+    void put(String key) {
+        long hash = hash64(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numberOfHashes; i++) {
+            long index = bitIndex(hash1, hash2, i);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash64(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numberOfHashes; i++) {
+            long index = bitIndex(hash1, hash2, i);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long bitIndex(int hash1, int hash2, int i) {
+        long combined = hash1 + (long) i * hash2;
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % numberOfBits;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the characters of the given key.
+     */
+    static long hash64(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
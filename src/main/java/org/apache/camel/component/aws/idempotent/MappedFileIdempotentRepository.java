@@ -0,0 +1,420 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.idempotent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.impl.ServiceSupport;
+import org.apache.camel.spi.IdempotentRepository;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent {@link IdempotentRepository} which stores its keys in an append-only,
+ * memory-mapped file and keeps an in-memory Bloom filter in front of it.
+ * <p/>
+ * Keys which were never added are rejected by the Bloom filter without touching the file.
+ * Only positive answers of the filter are verified against the mapped file, using an
+ * in-memory index from key hash to record offset. Removed keys are written as tombstone
+ * records, and the file is compacted once the dead records exceed the configured ratio.
+ * <p/>
+ * Typical keys are <tt>key@eTag</tt> for S3 objects and the message id for SQS messages.
+ */
+public class MappedFileIdempotentRepository extends ServiceSupport implements IdempotentRepository<String> {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(MappedFileIdempotentRepository.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte LIVE = 1;
+    private static final byte REMOVED = 0;
+    // record layout: int key length, byte status, key bytes
+    private static final int HEADER_SIZE = 5;
+
+    private File fileStore;
+    private long expectedInsertions = 1000000;
+    private double falsePositiveProbability = 0.01;
+    private int initialMappedSize = 1024 * 1024;
+    private double compactionRatio = 0.5;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private BloomFilter bloomFilter;
+    private final Map<Long, Integer> index = new HashMap<Long, Integer>();
+    private final Map<String, Integer> collisions = new HashMap<String, Integer>();
+    private int position;
+    private long deadBytes;
+
+    private long filteredLookups;
+    private long fileLookups;
+
+    public MappedFileIdempotentRepository() {
+    }
+
+    public MappedFileIdempotentRepository(File fileStore) {
+        this.fileStore = fileStore;
+    }
+
+    /**
+     * Creates a new mapped file based repository using the given file as the store
+     *
+     * @param fileStore the file to use as the store
+     * @return the repository
+     */
+    public static IdempotentRepository<String> mappedFileIdempotentRepository(File fileStore) {
+        return new MappedFileIdempotentRepository(fileStore);
+    }
+
+    public synchronized boolean add(String key) {
+        // a record with a zero length key would read as the end of the store
+        if (key == null || key.length() == 0) {
+            throw new IllegalArgumentException("key must be specified and not empty");
+        }
+        if (contains(key)) {
+            return false;
+        }
+
+        int offset = append(key, LIVE);
+        bloomFilter.put(key);
+        index(key, offset);
+        return true;
+    }
+
+    public synchronized boolean contains(String key) {
+        ensureOpen();
+        if (!bloomFilter.mightContain(key)) {
+            filteredLookups++;
+            return false;
+        }
+
+        fileLookups++;
+        return lookup(key) >= 0;
+    }
+
+    public synchronized boolean remove(String key) {
+        ensureOpen();
+        int offset = lookup(key);
+        if (offset < 0) {
+            return false;
+        }
+
+        unindex(key, offset);
+        append(key, REMOVED);
+        // both the live record and its tombstone are garbage now
+        deadBytes += 2 * (buffer.getInt(offset) + HEADER_SIZE);
+
+        if (deadBytes > 0 && deadBytes >= position * compactionRatio) {
+            compact();
+        }
+        return true;
+    }
+
+    public boolean confirm(String key) {
+        // keys are written to the store when added
+        return true;
+    }
+
+    /**
+     * Rewrites the store with the live records only and rebuilds the Bloom filter,
+     * dropping the keys which have been removed in the meantime.
+     */
+    public synchronized void compact() {
+        LOG.debug("Compacting idempotent file store {} with {} of {} bytes in removed records",
+                new Object[]{fileStore, deadBytes, position});
+
+        List<Integer> offsets = new ArrayList<Integer>(index.size() + collisions.size());
+        offsets.addAll(index.values());
+        offsets.addAll(collisions.values());
+        // keep the original insertion order
+        Collections.sort(offsets);
+
+        File compacted = new File(fileStore.getPath() + ".compact");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compacted)));
+            for (Integer offset : offsets) {
+                byte[] key = readKeyBytes(offset);
+                out.writeInt(key.length);
+                out.writeByte(LIVE);
+                out.write(key);
+            }
+            out.close();
+            out = null;
+
+            close();
+            if (!compacted.renameTo(fileStore)) {
+                if (!fileStore.delete() || !compacted.renameTo(fileStore)) {
+                    throw new IOException("Cannot rename " + compacted + " to " + fileStore);
+                }
+            }
+            open();
+        } catch (IOException e) {
+            throw ObjectHelper.wrapRuntimeCamelException(e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    LOG.warn("Cannot close compacted file store " + compacted, e);
+                }
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (buffer == null) {
+            throw new IllegalStateException("Idempotent file store " + fileStore + " is not started");
+        }
+    }
+
+    private int lookup(String key) {
+        Integer offset = index.get(BloomFilter.hash64(key));
+        if (offset != null && key.equals(readKey(offset))) {
+            return offset;
+        }
+
+        offset = collisions.get(key);
+        return offset != null ? offset : -1;
+    }
+
+    private void index(String key, int offset) {
+        Long hash = BloomFilter.hash64(key);
+        Integer existing = index.get(hash);
+        if (existing == null || key.equals(readKey(existing))) {
+            index.put(hash, offset);
+        } else {
+            // another key with the same hash already owns the slot
+            collisions.put(key, offset);
+        }
+    }
+
+    private void unindex(String key, int offset) {
+        Long hash = BloomFilter.hash64(key);
+        Integer existing = index.get(hash);
+        if (existing != null && existing.intValue() == offset) {
+            index.remove(hash);
+        } else {
+            collisions.remove(key);
+        }
+    }
+
+    private int append(String key, byte status) {
+        byte[] bytes = key.getBytes(UTF8);
+        int size = HEADER_SIZE + bytes.length;
+        // always leave room for the zero length which terminates the records
+        ensureCapacity((long) position + size + 4);
+
+        int offset = position;
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + 4);
+        record.put(status);
+        record.put(bytes);
+        // the length is written last, so a partially written record reads as the end of the store
+        buffer.putInt(offset, bytes.length);
+
+        position += size;
+        return offset;
+    }
+
+    private String readKey(int offset) {
+        return new String(readKeyBytes(offset), UTF8);
+    }
+
+    private byte[] readKeyBytes(int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + HEADER_SIZE);
+        record.get(bytes);
+        return bytes;
+    }
+
+    private void ensureCapacity(long required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Idempotent file store " + fileStore + " exceeds the maximum mapped size");
+        }
+
+        long size = Math.min(Math.max(2L * buffer.capacity(), required), Integer.MAX_VALUE);
+        LOG.debug("Growing idempotent file store {} to {} bytes", fileStore, size);
+        try {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw ObjectHelper.wrapRuntimeCamelException(e);
+        }
+    }
+
+    private void open() throws IOException {
+        if (fileStore.getParentFile() != null) {
+            fileStore.getParentFile().mkdirs();
+        }
+
+        file = new RandomAccessFile(fileStore, "rw");
+        channel = file.getChannel();
+        long size = Math.max(channel.size(), initialMappedSize);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        bloomFilter = new BloomFilter(expectedInsertions, falsePositiveProbability);
+        index.clear();
+        collisions.clear();
+        position = 0;
+        deadBytes = 0;
+
+        // replay the records to rebuild the Bloom filter and the index
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+
+            String key = readKey(position);
+            if (buffer.get(position + 4) == LIVE) {
+                bloomFilter.put(key);
+                index(key, position);
+            } else {
+                int live = lookup(key);
+                if (live >= 0) {
+                    unindex(key, live);
+                    deadBytes += HEADER_SIZE + length;
+                }
+                deadBytes += HEADER_SIZE + length;
+            }
+            position += HEADER_SIZE + length;
+        }
+
+        LOG.debug("Loaded {} keys from idempotent file store {}", index.size() + collisions.size(), fileStore);
+    }
+
+    private void close() throws IOException {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+    @Override
+    protected synchronized void doStart() throws Exception {
+        ObjectHelper.notNull(fileStore, "fileStore", this);
+        open();
+
+        if (deadBytes > 0 && deadBytes >= position * compactionRatio) {
+            compact();
+        }
+    }
+
+    @Override
+    protected synchronized void doStop() throws Exception {
+        close();
+        index.clear();
+        collisions.clear();
+    }
+
+    public File getFileStore() {
+        return fileStore;
+    }
+
+    public void setFileStore(File fileStore) {
+        this.fileStore = fileStore;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * Sets the number of keys the Bloom filter is sized for (default 1000000)
+     */
+    public void setExpectedInsertions(long expectedInsertions) {
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    public double getFalsePositiveProbability() {
+        return falsePositiveProbability;
+    }
+
+    /**
+     * Sets the false positive probability the Bloom filter is sized for (default 0.01)
+     */
+    public void setFalsePositiveProbability(double falsePositiveProbability) {
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    public int getInitialMappedSize() {
+        return initialMappedSize;
+    }
+
+    /**
+     * Sets the number of bytes initially mapped, the mapping doubles whenever it runs full (default 1MB)
+     */
+    public void setInitialMappedSize(int initialMappedSize) {
+        this.initialMappedSize = initialMappedSize;
+    }
+
+    public double getCompactionRatio() {
+        return compactionRatio;
+    }
+
+    /**
+     * Sets the share of removed records in the store which triggers a compaction (default 0.5)
+     */
+    public void setCompactionRatio(double compactionRatio) {
+        this.compactionRatio = compactionRatio;
+    }
+
+    public synchronized int getSize() {
+        return index.size() + collisions.size();
+    }
+
+    /**
+     * @return the number of lookups answered by the Bloom filter alone
+     */
+    public synchronized long getFilteredLookups() {
+        return filteredLookups;
+    }
+
+    /**
+     * @return the number of lookups which had to be verified against the file store
+     */
+    public synchronized long getFileLookups() {
+        return fileLookups;
+    }
+}
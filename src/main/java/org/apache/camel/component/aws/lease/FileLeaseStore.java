@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.lease;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link LeaseStore} which keeps one file per lease in a directory.
+ * <p/>
+ * The lease files are updated under an exclusive file lock, so the directory can be shared
+ * by several processes on the same host, or by several hosts on a file system which supports locking.
+ * Within one JVM the nodes should share a single instance, as file locks are held per process.
+ */
+public class FileLeaseStore implements LeaseStore {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(FileLeaseStore.class);
+    private static final String SUFFIX = ".lease";
+    private static final String UTF8 = "UTF-8";
+
+    private File directory;
+
+    public FileLeaseStore() {
+    }
+
+    public FileLeaseStore(File directory) {
+        this.directory = directory;
+    }
+
+    public synchronized boolean tryAcquire(String name, String owner, long durationMillis) {
+        RandomAccessFile file = null;
+        try {
+            file = open(name);
+            FileLock lock = file.getChannel().lock();
+            try {
+                long now = System.currentTimeMillis();
+                String[] lease = read(file);
+                if (lease != null && Long.parseLong(lease[1]) > now && !lease[0].equals(owner)) {
+                    return false;
+                }
+
+                file.setLength(0);
+                file.write((owner + "\n" + (now + durationMillis)).getBytes(UTF8));
+                return true;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw ObjectHelper.wrapRuntimeCamelException(e);
+        } finally {
+            close(file);
+        }
+    }
+
+    public synchronized void release(String name, String owner) {
+        RandomAccessFile file = null;
+        try {
+            file = open(name);
+            FileLock lock = file.getChannel().lock();
+            try {
+                String[] lease = read(file);
+                if (lease != null && lease[0].equals(owner)) {
+                    file.setLength(0);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw ObjectHelper.wrapRuntimeCamelException(e);
+        } finally {
+            close(file);
+        }
+    }
+
+    public synchronized Map<String, String> getLeases() {
+        Map<String, String> answer = new HashMap<String, String>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return answer;
+        }
+
+        long now = System.currentTimeMillis();
+        for (File leaseFile : files) {
+            String fileName = leaseFile.getName();
+            if (!fileName.endsWith(SUFFIX)) {
+                continue;
+            }
+
+            RandomAccessFile file = null;
+            try {
+                file = new RandomAccessFile(leaseFile, "rw");
+                FileLock lock = file.getChannel().lock(0, Long.MAX_VALUE, true);
+                try {
+                    String[] lease = read(file);
+                    if (lease != null && Long.parseLong(lease[1]) > now) {
+                        answer.put(URLDecoder.decode(fileName.substring(0, fileName.length() - SUFFIX.length()), UTF8), lease[0]);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                LOG.warn("Cannot read lease file " + leaseFile, e);
+            } finally {
+                close(file);
+            }
+        }
+        return answer;
+    }
+
+    private RandomAccessFile open(String name) throws IOException {
+        directory.mkdirs();
+        return new RandomAccessFile(new File(directory, encode(name) + SUFFIX), "rw");
+    }
+
+    /**
+     * Reads the owner and the expiry time of the lease, or <tt>null</tt> if the lease is free
+     */
+    private String[] read(RandomAccessFile file) throws IOException {
+        if (file.length() == 0) {
+            return null;
+        }
+
+        byte[] content = new byte[(int) file.length()];
+        file.seek(0);
+        file.readFully(content);
+        file.seek(0);
+
+        String[] lease = new String(content, UTF8).split("\n");
+        if (lease.length != 2) {
+            return null;
+        }
+        try {
+            Long.parseLong(lease[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return lease;
+    }
+
+    private String encode(String name) {
+        try {
+            return URLEncoder.encode(name, UTF8);
+        } catch (UnsupportedEncodingException e) {
+            throw ObjectHelper.wrapRuntimeCamelException(e);
+        }
+    }
+
+    private void close(RandomAccessFile file) {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                LOG.warn("Cannot close lease file", e);
+            }
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String toString() {
+        return "FileLeaseStore[" + directory + "]";
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.lease;
+
+import java.util.Map;
+
+/**
+ * A store of named, time limited leases shared between the nodes of a cluster.
+ * <p/>
+ * Implementations must make {@link #tryAcquire(String, String, long)} atomic across all nodes
+ * using the same store. Expiry times are absolute, so the clocks of the nodes should be synchronized.
+ */
+public interface LeaseStore {
+
+    /**
+     * Acquires the lease if it is free or expired, or renews it if the owner already holds it.
+     *
+     * @param name the name of the lease
+     * @param owner the node acquiring the lease
+     * @param durationMillis the time after which the lease expires unless renewed
+     * @return <tt>true</tt> if the owner holds the lease now
+     */
+    boolean tryAcquire(String name, String owner, long durationMillis);
+
+    /**
+     * Releases the lease if it is held by the given owner.
+     *
+     * @param name the name of the lease
+     * @param owner the node releasing the lease
+     */
+    void release(String name, String owner);
+
+    /**
+     * @return the owners of all leases which are not expired, keyed by lease name
+     */
+    Map<String, String> getLeases();
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.lease;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A {@link LeaseStore} which keeps the leases in memory.
+ * <p/>
+ * It only coordinates consumers within the same JVM, which makes it useful for testing.
+ */
+public class MemoryLeaseStore implements LeaseStore {
+
+    private final Map<String, Lease> leases = new HashMap<String, Lease>();
+
+    public synchronized boolean tryAcquire(String name, String owner, long durationMillis) {
+        long now = System.currentTimeMillis();
+        Lease lease = leases.get(name);
+        if (lease != null && lease.expires > now && !lease.owner.equals(owner)) {
+            return false;
+        }
+
+        leases.put(name, new Lease(owner, now + durationMillis));
+        return true;
+    }
+
+    public synchronized void release(String name, String owner) {
+        Lease lease = leases.get(name);
+        if (lease != null && lease.owner.equals(owner)) {
+            leases.remove(name);
+        }
+    }
+
+    public synchronized Map<String, String> getLeases() {
+        long now = System.currentTimeMillis();
+        Map<String, String> answer = new HashMap<String, String>();
+        for (Iterator<Map.Entry<String, Lease>> it = leases.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Lease> entry = it.next();
+            if (entry.getValue().expires > now) {
+                answer.put(entry.getKey(), entry.getValue().owner);
+            } else {
+                it.remove();
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryLeaseStore";
+    }
+
+    private static final class Lease {
+        private final String owner;
+        private final long expires;
+
+        Lease(String owner, long expires) {
+            this.owner = owner;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.s3.model.S3Object;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.component.aws.s3.support.S3BufferPool;
+import org.apache.camel.component.aws.s3.support.S3BufferedContent;
+import org.apache.camel.component.aws.s3.support.S3Compression;
+import org.apache.camel.component.aws.s3.support.S3Content;
+import org.apache.camel.component.aws.s3.support.S3ObjectStream;
+import org.apache.camel.component.aws.s3.support.S3SpooledContent;
+import org.apache.camel.spi.Synchronization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the content of S3 objects into a body which keeps the heap usage predictable.
+ * <p/>
+ * Depending on the <tt>bodyStrategy</tt> and the content length, the object is read into a buffer
+ * sized up front, optionally borrowed from a pool of direct buffers, or it's spooled to a
+ * temporary file which is read memory-mapped. The content is released when the exchange is done.
+ * Object streams kept as body are released as well, so a route which never reads or closes
+ * the stream doesn't keep the HTTP connection from the pool. With <tt>decompress</tt> enabled, objects
+ * with a gzip or deflate content encoding are decompressed while they're read.
+ */
+public class S3BodyMaterializer {
+
+    /** Keeps the object stream as body */
+    public static final String STREAM = "stream";
+    /** Reads every object into a buffer */
+    public static final String BUFFER = "buffer";
+    /** Spools every object to a temporary file */
+    public static final String SPOOL = "spool";
+    /** Buffers objects up to <tt>bodyBufferThreshold</tt> bytes and spools the larger ones */
+    public static final String AUTO = "auto";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3BodyMaterializer.class);
+
+    private final S3Configuration configuration;
+    private final S3BufferPool bufferPool;
+    private final AtomicLong leakedStreams = new AtomicLong();
+
+    public S3BodyMaterializer(S3Configuration configuration) {
+        String strategy = configuration.getBodyStrategy();
+        if (!STREAM.equals(strategy) && !BUFFER.equals(strategy) && !SPOOL.equals(strategy) && !AUTO.equals(strategy)) {
+            throw new IllegalArgumentException("Unknown bodyStrategy: " + strategy);
+        }
+
+        this.configuration = configuration;
+        if (configuration.isPooledBuffers() && configuration.getBodyBufferThreshold() <= Integer.MAX_VALUE) {
+            this.bufferPool = new S3BufferPool((int) configuration.getBodyBufferThreshold(), configuration.getBufferPoolSize());
+        } else {
+            this.bufferPool = null;
+        }
+    }
+
+    /**
+     * Replaces the object stream in the body of the exchange by the materialized content
+     */
+    public void materialize(Exchange exchange, S3Object s3Object) throws IOException {
+        InputStream in = s3Object.getObjectContent();
+        if (in == null) {
+            return;
+        }
+
+        String strategy = configuration.getBodyStrategy();
+        long length = s3Object.getObjectMetadata().getContentLength();
+        String contentEncoding = configuration.isDecompress() ? s3Object.getObjectMetadata().getContentEncoding() : null;
+        if (STREAM.equals(strategy)) {
+            S3ObjectStream stream = new S3ObjectStream(in, length);
+            guard(exchange, stream);
+            exchange.getIn().setBody(S3Compression.decompress(stream, contentEncoding));
+            if (S3Compression.isSupported(contentEncoding)) {
+                // the length of the decompressed stream isn't known up front
+                removeCompressionHeaders(exchange);
+                exchange.getIn().removeHeader(S3Constants.CONTENT_LENGTH);
+            }
+            return;
+        }
+
+        boolean buffered = BUFFER.equals(strategy) || (AUTO.equals(strategy) && length <= configuration.getBodyBufferThreshold());
+
+        final S3Content content;
+        try {
+            InputStream body = S3Compression.decompress(in, contentEncoding);
+            if (AUTO.equals(strategy) && S3Compression.isSupported(contentEncoding)
+                && configuration.getBodyBufferThreshold() < Integer.MAX_VALUE) {
+                // the content length is the compressed one, so it can't tell whether the body fits the threshold
+                content = readBounded(body, length);
+            } else if (buffered && length < Integer.MAX_VALUE) {
+                content = S3BufferedContent.read(Channels.newChannel(body), (int) length, bufferPool);
+            } else {
+                content = spool(Channels.newChannel(body));
+            }
+        } finally {
+            in.close();
+        }
+
+        LOG.trace("Materialized object [{}] as {}", s3Object.getKey(), content);
+
+        exchange.getIn().setBody(content);
+        if (S3Compression.isSupported(contentEncoding)) {
+            removeCompressionHeaders(exchange);
+            exchange.getIn().setHeader(S3Constants.CONTENT_LENGTH, content.getLength());
+        }
+        exchange.addOnCompletion(new Synchronization() {
+            public void onComplete(Exchange exchange) {
+                content.release();
+            }
+
+            public void onFailure(Exchange exchange) {
+                content.release();
+            }
+
+            @Override
+            public String toString() {
+                return "S3BodyMaterializerOnCompletion";
+            }
+        });
+    }
+
+    /**
+     * Buffers the body while it doesn't exceed <tt>bodyBufferThreshold</tt> bytes, and spools it once it does.
+     */
+    private S3Content readBounded(InputStream body, long length) throws IOException {
+        long threshold = configuration.getBodyBufferThreshold();
+        // one byte past the threshold tells whether the body exceeds it
+        InputStream head = new LimitedInputStream(body, threshold + 1);
+        S3BufferedContent buffered = S3BufferedContent.read(Channels.newChannel(head), (int) Math.min(length, threshold), bufferPool);
+        if (buffered.getLength() <= threshold) {
+            return buffered;
+        }
+
+        try {
+            return spool(Channels.newChannel(new SequenceInputStream(buffered.getInputStream(), body)));
+        } finally {
+            buffered.release();
+        }
+    }
+
+    private S3Content spool(ReadableByteChannel channel) throws IOException {
+        File directory = null;
+        if (configuration.getDownloadDirectory() != null) {
+            directory = new File(configuration.getDownloadDirectory());
+            directory.mkdirs();
+        }
+        return S3SpooledContent.spool(channel, directory);
+    }
+
+    /**
+     * The headers set from the object metadata describe the compressed object, so they're removed
+     * once the body is decompressed, as a producer would otherwise upload the body with the wrong length.
+     */
+    private void removeCompressionHeaders(Exchange exchange) {
+        exchange.getIn().removeHeader(S3Constants.CONTENT_ENCODING);
+        exchange.getIn().removeHeader(S3Constants.CONTENT_MD5);
+    }
+
+    /**
+     * Makes sure the connection held by the stream in the body is released when the exchange is done,
+     * even if the route never reads or closes the stream.
+     */
+    private void guard(Exchange exchange, final S3ObjectStream stream) {
+        exchange.getIn().setBody(stream);
+        exchange.addOnCompletion(new Synchronization() {
+            public void onComplete(Exchange exchange) {
+                release(stream);
+            }
+
+            public void onFailure(Exchange exchange) {
+                release(stream);
+            }
+
+            @Override
+            public String toString() {
+                return "S3ObjectStreamOnCompletion";
+            }
+        });
+    }
+
+    private void release(S3ObjectStream stream) {
+        if (stream.isReleased()) {
+            return;
+        }
+
+        leakedStreams.incrementAndGet();
+        try {
+            if (stream.getRemaining() > configuration.getAbortThreshold()) {
+                LOG.debug("Aborting unreleased stream {}", stream);
+                stream.abort();
+            } else {
+                LOG.debug("Closing unreleased stream {}", stream);
+                stream.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot release stream " + stream, e);
+        }
+    }
+
+    /**
+     * Reads at most the given number of bytes from the stream, without closing it
+     */
+    private static final class LimitedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read();
+            if (read >= 0) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(bytes, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * @return the number of object streams the routes left open, which had to be released when the exchange was done
+     */
+    public long getLeakedStreams() {
+        return leakedStreams.get();
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+
+import org.apache.camel.component.aws.s3.support.S3Compression;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uploads the files of a directory or a collection concurrently, each file as an object of its own.
+ * <p/>
+ * The files are uploaded on a bounded pool, small files with a single PUT and files above the multipart
+ * threshold in parts. With <tt>compression</tt>, each file is compressed while it's uploaded in chunks.
+ * The key of a file is its path relative to the uploaded directory below the prefix.
+ */
+public class S3CollectionUploader {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3CollectionUploader.class);
+
+    private final S3Endpoint endpoint;
+    private final S3MultipartUploader uploader;
+    private final ExecutorService executorService;
+
+    /**
+     * @param uploader the uploader of the files above the multipart threshold
+     * @param executorService the executor service uploading the files
+     */
+    public S3CollectionUploader(S3Endpoint endpoint, S3MultipartUploader uploader, ExecutorService executorService) {
+        this.endpoint = endpoint;
+        this.uploader = uploader;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Maps the files to their keys, a directory to the keys of all files below it.
+     *
+     * @param prefix the prefix of the keys, or <tt>null</tt>
+     * @param directory the uploaded directory, whose files are keyed by their relative path
+     * @return the files by key
+     */
+    public static Map<String, File> listFiles(String prefix, File directory) {
+        Map<String, File> answer = new LinkedHashMap<String, File>();
+        addFiles(answer, prefix != null ? prefix : "", directory);
+        return answer;
+    }
+
+    /**
+     * Maps the files to their keys, a file to its name and a directory to its name and the relative paths below.
+     *
+     * @param prefix the prefix of the keys, or <tt>null</tt>
+     * @param files the uploaded files and directories
+     * @return the files by key
+     */
+    public static Map<String, File> listFiles(String prefix, List<File> files) {
+        Map<String, File> answer = new LinkedHashMap<String, File>();
+        for (File file : files) {
+            String key = (prefix != null ? prefix : "") + file.getName();
+            if (file.isDirectory()) {
+                addFiles(answer, key + "/", file);
+            } else {
+                answer.put(key, file);
+            }
+        }
+        return answer;
+    }
+
+    private static void addFiles(Map<String, File> files, String prefix, File directory) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addFiles(files, prefix + child.getName() + "/", child);
+            } else {
+                files.put(prefix + child.getName(), child);
+            }
+        }
+    }
+
+    /**
+     * Uploads the files, failing as soon as one of them fails for good.
+     *
+     * @param files the files by key
+     * @return the ETags of the uploaded objects by key, in the order of the files
+     */
+    public Map<String, String> upload(Map<String, File> files) throws Exception {
+        LOG.trace("Uploading {} files...", files.size());
+
+        Map<String, Future<PutObjectResult>> futures = new LinkedHashMap<String, Future<PutObjectResult>>();
+        for (Map.Entry<String, File> entry : files.entrySet()) {
+            final String key = entry.getKey();
+            final File file = entry.getValue();
+            futures.put(key, executorService.submit(new Callable<PutObjectResult>() {
+                public PutObjectResult call() throws Exception {
+                    return upload(key, file);
+                }
+            }));
+        }
+
+        Map<String, String> answer = new LinkedHashMap<String, String>();
+        try {
+            for (Map.Entry<String, Future<PutObjectResult>> entry : futures.entrySet()) {
+                answer.put(entry.getKey(), entry.getValue().get().getETag());
+            }
+        } catch (ExecutionException e) {
+            cancel(new ArrayList<Future<PutObjectResult>>(futures.values()));
+            throw ObjectHelper.wrapRuntimeCamelException(e.getCause());
+        } catch (InterruptedException e) {
+            cancel(new ArrayList<Future<PutObjectResult>>(futures.values()));
+            throw e;
+        }
+
+        LOG.trace("Uploaded {} files", files.size());
+        return answer;
+    }
+
+    protected PutObjectResult upload(String key, File file) throws Exception {
+        String compression = endpoint.getConfiguration().getCompression();
+        if (compression != null) {
+            LOG.trace("Uploading {} compressed file [{}] in parts as object [{}]...", new Object[]{compression, file, key});
+
+            ObjectMetadata objectMetadata = endpoint.createObjectMetadata(key);
+            objectMetadata.setContentEncoding(compression);
+            InputStream in = new FileInputStream(file);
+            try {
+                // the compressed length isn't known up front, so the file is uploaded in chunks
+                return uploader.upload(key, S3Compression.compress(in, compression), objectMetadata);
+            } finally {
+                in.close();
+            }
+        }
+
+        if (uploader.isMultipartUpload(file.length())) {
+            LOG.trace("Uploading file [{}] in parts as object [{}]...", file, key);
+
+            return uploader.upload(key, file, endpoint.createObjectMetadata(key));
+        }
+
+        LOG.trace("Uploading file [{}] as object [{}]...", file, key);
+
+        PutObjectRequest putObjectRequest = new PutObjectRequest(endpoint.getConfiguration().getBucketName(), key, file);
+        putObjectRequest.setMetadata(endpoint.createObjectMetadata(key));
+        return endpoint.getS3Client().putObject(putObjectRequest);
+    }
+
+    /**
+     * Deletes the directory and the directories below it which are empty, after their files have been uploaded
+     */
+    public static void deleteEmptyDirectories(File directory) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            deleteEmptyDirectories(child);
+        }
+        // fails if the directory isn't empty
+        directory.delete();
+    }
+
+    private void cancel(List<Future<PutObjectResult>> futures) {
+        for (Future<PutObjectResult> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
@@ -50,6 +50,18 @@ public class S3Component extends DefaultComponent {
             throw new IllegalArgumentException("AmazonS3Client or accessKey and secretKey must be specified");
         }
 
+        // the ETag of a compressed object is never the MD5 of the uncompressed body
+        if (configuration.isSkipUnchanged() && configuration.getCompression() != null) {
+            throw new IllegalArgumentException("skipUnchanged cannot be combined with compression");
+        }
+        // journaled and aggregated bodies are uploaded later, without being compared with the stored object
+        if (configuration.isSkipUnchanged() && configuration.getWriteBehindDirectory() != null) {
+            throw new IllegalArgumentException("skipUnchanged cannot be combined with writeBehindDirectory");
+        }
+        if (configuration.isSkipUnchanged() && configuration.getAggregationSize() > 0) {
+            throw new IllegalArgumentException("skipUnchanged cannot be combined with aggregationSize");
+        }
+
         S3Endpoint endpoint = new S3Endpoint(uri, getCamelContext(), configuration);
         return endpoint;
     }
@@ -17,6 +17,10 @@
 package org.apache.camel.component.aws.s3;
 
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+
+import org.apache.camel.component.aws.lease.LeaseStore;
+import org.apache.camel.spi.IdempotentRepository;
 
 /**
  * The AWS S3 component configuration properties
@@ -27,12 +31,93 @@ public class S3Configuration implements Cloneable {
     private String accessKey;
     private String secretKey;
     private AmazonS3Client amazonS3Client;
+    private AmazonSQSClient amazonSQSClient;
 
     private String bucketName;
     private String region;
     private boolean deleteAfterRead = true;
     private boolean deleteAfterUpload = false;
     private String amazonS3Endpoint;
+    private IdempotentRepository<String> idempotentRepository;
+    private String prefix;
+    private String delimiter;
+    private String prefixes;
+    private String suffix;
+    private Long minSize;
+    private Long maxSize;
+    private int listingPoolSize = 1;
+    private LeaseStore leaseStore;
+    private int partitions = 16;
+    private String nodeId;
+    private long leaseDuration = 30000;
+    private long multipartDownloadThreshold;
+    private long downloadPartSize = 8 * 1024 * 1024;
+    private int downloadPoolSize = 4;
+    private int downloadPartRetries = 3;
+    private String downloadDirectory;
+    private boolean downloadAsByteBuffer;
+    private String bodyStrategy = S3BodyMaterializer.STREAM;
+    private long bodyBufferThreshold = 1024 * 1024;
+    private boolean pooledBuffers;
+    private int bufferPoolSize = 16;
+    private boolean moveAfterRead;
+    private boolean metadataOnly;
+    private String archivePrefix;
+    private String archiveBucketName;
+    private long multipartUploadThreshold;
+    private long abortThreshold = 128 * 1024;
+    private int uploadPoolSize = 4;
+    private long uploadPartSize = 8 * 1024 * 1024;
+    private String writeBehindDirectory;
+    private int uploadPartRetries = 3;
+    private long writeBehindMaxDiskUsage = 1024L * 1024 * 1024;
+    private int writeBehindPoolSize = 2;
+    private long aggregationSize;
+    private long writeBehindRetryDelay = 5000;
+    private String aggregationKey = "${date:now:yyyy/MM/dd/HHmmssSSS}-${exchangeId}";
+    private long aggregationInterval = 60000;
+    private boolean aggregationGzip;
+    private String aggregationSeparator = "\n";
+    private String compression;
+    private long aggregationSpillThreshold = 8 * 1024 * 1024;
+    private boolean decompress;
+    private boolean skipUnchanged;
+    private int eTagCacheSize = 10000;
+    private String eTagCacheFile;
+    private String operation;
+    private boolean contentCache;
+    private long contentCacheTtl = 60000;
+    private long contentCacheMaxHeapSize = 16 * 1024 * 1024;
+    private long contentCacheMaxObjectHeapSize = 256 * 1024;
+    private String contentCacheDirectory;
+    private long contentCacheMaxDiskSize = 1024L * 1024 * 1024;
+    private boolean hedgedGets;
+    private double hedgePercentile = 95;
+    private double hedgeMaxRate = 0.05;
+    private String notificationQueueName;
+    private String notificationTopicArn;
+    private String recordMode;
+    private int recordLength;
+    private int recordReaderPoolSize = 1;
+    private String recordCheckpointFile;
+    private int recordCheckpointInterval = 1000;
+    private String syncDestinationBucketName;
+    private String syncDirectory;
+    private boolean syncDelete;
+    private int syncPoolSize = 4;
+    private String keyTemplate;
+    private long keyTemplateWindow = 86400000;
+    private long keyTemplateLateness = 300000;
+    private String keyTemplateTimeZone = "UTC";
+    private String inventoryManifestKey;
+    private String inventoryBucketName;
+    private int inventoryPoolSize = 4;
+    private String inventoryModifiedAfter;
+    private String inventoryModifiedBefore;
+    private String inventoryStorageClasses;
+    private int hashPrefixLength = 0;
+    private String hashPrefixExpression;
+    private int collectionUploadPoolSize = 8;
 
     public void setAmazonS3Endpoint(String amazonS3Endpoint) {
         this.amazonS3Endpoint = amazonS3Endpoint;
@@ -66,6 +151,17 @@ public class S3Configuration implements Cloneable {
         this.amazonS3Client = amazonS3Client;
     }
 
+    public AmazonSQSClient getAmazonSQSClient() {
+        return amazonSQSClient;
+    }
+
+    /**
+     * @param amazonSQSClient the client of the queue which receives the bucket notifications
+     */
+    public void setAmazonSQSClient(AmazonSQSClient amazonSQSClient) {
+        this.amazonSQSClient = amazonSQSClient;
+    }
+
     public String getBucketName() {
         return bucketName;
     }
@@ -104,16 +200,937 @@ public class S3Configuration implements Cloneable {
         this.deleteAfterUpload = deleteAfterUpload;
     }
 
+    /**
+     * @return the idempotentRepository
+     */
+    public IdempotentRepository<String> getIdempotentRepository() {
+        return idempotentRepository;
+    }
+
+    /**
+     * @param idempotentRepository the repository of already processed objects, keyed by <tt>key@eTag</tt>
+     */
+    public void setIdempotentRepository(IdempotentRepository<String> idempotentRepository) {
+        this.idempotentRepository = idempotentRepository;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @param prefix only objects with keys starting with this prefix are consumed
+     */
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * @param delimiter the delimiter used to derive one listing shard per common prefix below the prefix
+     */
+    public void setDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public String getPrefixes() {
+        return prefixes;
+    }
+
+    /**
+     * @param prefixes comma separated key prefixes, each of them is listed as a shard of its own
+     */
+    public void setPrefixes(String prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @param suffix only objects with keys ending with this suffix are consumed
+     */
+    public void setSuffix(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public Long getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @param minSize only objects with at least this size in bytes are consumed
+     */
+    public void setMinSize(Long minSize) {
+        this.minSize = minSize;
+    }
+
+    public Long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize only objects with at most this size in bytes are consumed
+     */
+    public void setMaxSize(Long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getListingPoolSize() {
+        return listingPoolSize;
+    }
+
+    /**
+     * @param listingPoolSize the number of threads listing the shards in parallel
+     */
+    public void setListingPoolSize(int listingPoolSize) {
+        this.listingPoolSize = listingPoolSize;
+    }
+
+    public LeaseStore getLeaseStore() {
+        return leaseStore;
+    }
+
+    /**
+     * @param leaseStore the store of partition leases shared by all consumers of the bucket
+     */
+    public void setLeaseStore(LeaseStore leaseStore) {
+        this.leaseStore = leaseStore;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @param partitions the number of key hash partitions divided between the consumers
+     */
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @param nodeId the unique name of this consumer in the cluster, generated if not set
+     */
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public long getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    /**
+     * @param leaseDuration the time in millis after which the leases of a failed node expire
+     */
+    public void setLeaseDuration(long leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    public long getMultipartDownloadThreshold() {
+        return multipartDownloadThreshold;
+    }
+
+    /**
+     * @param multipartDownloadThreshold the size in bytes from which objects are downloaded in parallel ranges, 0 to disable
+     */
+    public void setMultipartDownloadThreshold(long multipartDownloadThreshold) {
+        this.multipartDownloadThreshold = multipartDownloadThreshold;
+    }
+
+    public long getDownloadPartSize() {
+        return downloadPartSize;
+    }
+
+    /**
+     * @param downloadPartSize the size in bytes of the ranges of a parallel download
+     */
+    public void setDownloadPartSize(long downloadPartSize) {
+        this.downloadPartSize = downloadPartSize;
+    }
+
+    public int getDownloadPoolSize() {
+        return downloadPoolSize;
+    }
+
+    /**
+     * @param downloadPoolSize the number of ranges downloaded concurrently
+     */
+    public void setDownloadPoolSize(int downloadPoolSize) {
+        this.downloadPoolSize = downloadPoolSize;
+    }
+
+    public int getDownloadPartRetries() {
+        return downloadPartRetries;
+    }
+
+    /**
+     * @param downloadPartRetries how often a failed range is resumed before the download fails
+     */
+    public void setDownloadPartRetries(int downloadPartRetries) {
+        this.downloadPartRetries = downloadPartRetries;
+    }
+
+    public String getDownloadDirectory() {
+        return downloadDirectory;
+    }
+
+    /**
+     * @param downloadDirectory the directory of the temporary download files, the system temp directory by default
+     */
+    public void setDownloadDirectory(String downloadDirectory) {
+        this.downloadDirectory = downloadDirectory;
+    }
+
+    public boolean isDownloadAsByteBuffer() {
+        return downloadAsByteBuffer;
+    }
+
+    /**
+     * @param downloadAsByteBuffer whether the body of a ranged download is a memory-mapped ByteBuffer instead of a File
+     */
+    public void setDownloadAsByteBuffer(boolean downloadAsByteBuffer) {
+        this.downloadAsByteBuffer = downloadAsByteBuffer;
+    }
+
+    public String getBodyStrategy() {
+        return bodyStrategy;
+    }
+
+    /**
+     * @param bodyStrategy how the object content is put into the body: stream, buffer, spool or auto
+     */
+    public void setBodyStrategy(String bodyStrategy) {
+        this.bodyStrategy = bodyStrategy;
+    }
+
+    public long getBodyBufferThreshold() {
+        return bodyBufferThreshold;
+    }
+
+    /**
+     * @param bodyBufferThreshold the content length up to which the auto strategy buffers objects, and the size of pooled buffers
+     */
+    public void setBodyBufferThreshold(long bodyBufferThreshold) {
+        this.bodyBufferThreshold = bodyBufferThreshold;
+    }
+
+    public boolean isPooledBuffers() {
+        return pooledBuffers;
+    }
+
+    /**
+     * @param pooledBuffers whether buffered objects are read into pooled direct buffers
+     */
+    public void setPooledBuffers(boolean pooledBuffers) {
+        this.pooledBuffers = pooledBuffers;
+    }
+
+    public int getBufferPoolSize() {
+        return bufferPoolSize;
+    }
+
+    /**
+     * @param bufferPoolSize the number of pooled direct buffers
+     */
+    public void setBufferPoolSize(int bufferPoolSize) {
+        this.bufferPoolSize = bufferPoolSize;
+    }
+
+    public boolean isMetadataOnly() {
+        return metadataOnly;
+    }
+
+    /**
+     * @param metadataOnly whether the consumer builds exchanges from the listing alone and fetches the object content only when the body is read
+     */
+    public void setMetadataOnly(boolean metadataOnly) {
+        this.metadataOnly = metadataOnly;
+    }
+
+    public boolean isMoveAfterRead() {
+        return moveAfterRead;
+    }
+
+    /**
+     * @param moveAfterRead whether processed objects are moved server-side to the archive bucket and prefix instead of being deleted
+     */
+    public void setMoveAfterRead(boolean moveAfterRead) {
+        this.moveAfterRead = moveAfterRead;
+    }
+
+    public String getArchiveBucketName() {
+        return archiveBucketName;
+    }
+
+    /**
+     * @param archiveBucketName the bucket processed objects are moved to, the consumed bucket if not set
+     */
+    public void setArchiveBucketName(String archiveBucketName) {
+        this.archiveBucketName = archiveBucketName;
+    }
+
+    public String getArchivePrefix() {
+        return archivePrefix;
+    }
+
+    /**
+     * @param archivePrefix the prefix put in front of the key of moved objects
+     */
+    public void setArchivePrefix(String archivePrefix) {
+        this.archivePrefix = archivePrefix;
+    }
+
+    public long getAbortThreshold() {
+        return abortThreshold;
+    }
+
+    /**
+     * @param abortThreshold the number of unread bytes above which a stream left open by the route is aborted instead of drained
+     */
+    public void setAbortThreshold(long abortThreshold) {
+        this.abortThreshold = abortThreshold;
+    }
+
+    public long getMultipartUploadThreshold() {
+        return multipartUploadThreshold;
+    }
+
+    /**
+     * @param multipartUploadThreshold the length from which files and streams of known length are uploaded in parts, 0 disables it
+     */
+    public void setMultipartUploadThreshold(long multipartUploadThreshold) {
+        this.multipartUploadThreshold = multipartUploadThreshold;
+    }
+
+    public long getUploadPartSize() {
+        return uploadPartSize;
+    }
+
+    /**
+     * @param uploadPartSize the size of the uploaded parts and of the chunks streams of unknown length are cut into, at least 5MB
+     */
+    public void setUploadPartSize(long uploadPartSize) {
+        this.uploadPartSize = uploadPartSize;
+    }
+
+    public int getUploadPoolSize() {
+        return uploadPoolSize;
+    }
+
+    /**
+     * @param uploadPoolSize the number of parts uploaded in parallel, and held in memory while a stream is uploaded
+     */
+    public void setUploadPoolSize(int uploadPoolSize) {
+        this.uploadPoolSize = uploadPoolSize;
+    }
+
+    public int getUploadPartRetries() {
+        return uploadPartRetries;
+    }
+
+    /**
+     * @param uploadPartRetries the number of times a failed part is uploaded again
+     */
+    public void setUploadPartRetries(int uploadPartRetries) {
+        this.uploadPartRetries = uploadPartRetries;
+    }
+
+    public String getWriteBehindDirectory() {
+        return writeBehindDirectory;
+    }
+
+    /**
+     * @param writeBehindDirectory the journal directory of the write-behind producer, which completes exchanges once the body is journaled
+     */
+    public void setWriteBehindDirectory(String writeBehindDirectory) {
+        this.writeBehindDirectory = writeBehindDirectory;
+    }
+
+    public int getWriteBehindPoolSize() {
+        return writeBehindPoolSize;
+    }
+
+    /**
+     * @param writeBehindPoolSize the number of threads uploading the journaled bodies
+     */
+    public void setWriteBehindPoolSize(int writeBehindPoolSize) {
+        this.writeBehindPoolSize = writeBehindPoolSize;
+    }
+
+    public long getWriteBehindMaxDiskUsage() {
+        return writeBehindMaxDiskUsage;
+    }
+
+    /**
+     * @param writeBehindMaxDiskUsage the number of bytes in the journal above which the producer blocks, 0 for no limit
+     */
+    public void setWriteBehindMaxDiskUsage(long writeBehindMaxDiskUsage) {
+        this.writeBehindMaxDiskUsage = writeBehindMaxDiskUsage;
+    }
+
+    public long getWriteBehindRetryDelay() {
+        return writeBehindRetryDelay;
+    }
+
+    /**
+     * @param writeBehindRetryDelay the delay in milliseconds before a failed upload of a journaled body is retried
+     */
+    public void setWriteBehindRetryDelay(long writeBehindRetryDelay) {
+        this.writeBehindRetryDelay = writeBehindRetryDelay;
+    }
+
+    public long getAggregationSize() {
+        return aggregationSize;
+    }
+
+    /**
+     * @param aggregationSize the object size at which the producer uploads the aggregated bodies, 0 uploads every body as object of its own
+     */
+    public void setAggregationSize(long aggregationSize) {
+        this.aggregationSize = aggregationSize;
+    }
+
+    public long getAggregationInterval() {
+        return aggregationInterval;
+    }
+
+    /**
+     * @param aggregationInterval the age in milliseconds at which aggregated bodies are uploaded, whatever their size
+     */
+    public void setAggregationInterval(long aggregationInterval) {
+        this.aggregationInterval = aggregationInterval;
+    }
+
+    public String getAggregationKey() {
+        return aggregationKey;
+    }
+
+    /**
+     * @param aggregationKey the simple expression for the keys of aggregated objects
+     */
+    public void setAggregationKey(String aggregationKey) {
+        this.aggregationKey = aggregationKey;
+    }
+
+    public String getAggregationSeparator() {
+        return aggregationSeparator;
+    }
+
+    /**
+     * @param aggregationSeparator the separator appended to every aggregated body
+     */
+    public void setAggregationSeparator(String aggregationSeparator) {
+        this.aggregationSeparator = aggregationSeparator;
+    }
+
+    public boolean isAggregationGzip() {
+        return aggregationGzip;
+    }
+
+    /**
+     * @param aggregationGzip whether aggregated objects are gzip compressed
+     */
+    public void setAggregationGzip(boolean aggregationGzip) {
+        this.aggregationGzip = aggregationGzip;
+    }
+
+    public long getAggregationSpillThreshold() {
+        return aggregationSpillThreshold;
+    }
+
+    /**
+     * @param aggregationSpillThreshold the size above which an aggregated object is moved from the heap to a temporary file
+     */
+    public void setAggregationSpillThreshold(long aggregationSpillThreshold) {
+        this.aggregationSpillThreshold = aggregationSpillThreshold;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * @param compression the codec the producer compresses uploaded bodies with while streaming them: gzip or deflate
+     */
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public boolean isDecompress() {
+        return decompress;
+    }
+
+    /**
+     * @param decompress whether the consumer decompresses objects whose content encoding is gzip or deflate
+     */
+    public void setDecompress(boolean decompress) {
+        this.decompress = decompress;
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    /**
+     * @param skipUnchanged whether to skip the upload if the MD5 of the body equals the ETag of the object,
+     *                      which cannot be combined with <tt>compression</tt>, <tt>writeBehindDirectory</tt> or <tt>aggregationSize</tt>
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    public int getETagCacheSize() {
+        return eTagCacheSize;
+    }
+
+    /**
+     * @param eTagCacheSize the maximum number of ETags of uploaded objects kept to skip unchanged uploads without a request
+     */
+    public void setETagCacheSize(int eTagCacheSize) {
+        this.eTagCacheSize = eTagCacheSize;
+    }
+
+    public String getETagCacheFile() {
+        return eTagCacheFile;
+    }
+
+    /**
+     * @param eTagCacheFile the file the ETag cache is stored to on stop and loaded from on start
+     */
+    public void setETagCacheFile(String eTagCacheFile) {
+        this.eTagCacheFile = eTagCacheFile;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @param operation the operation of the producer, putObject by default, see {@link S3Operations}
+     */
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public boolean isContentCache() {
+        return contentCache;
+    }
+
+    /**
+     * @param contentCache whether the getObject operation reads through a local cache of the objects
+     */
+    public void setContentCache(boolean contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    public long getContentCacheTtl() {
+        return contentCacheTtl;
+    }
+
+    /**
+     * @param contentCacheTtl the time in milliseconds a cached object is served before it's revalidated by its ETag
+     */
+    public void setContentCacheTtl(long contentCacheTtl) {
+        this.contentCacheTtl = contentCacheTtl;
+    }
+
+    public long getContentCacheMaxHeapSize() {
+        return contentCacheMaxHeapSize;
+    }
+
+    /**
+     * @param contentCacheMaxHeapSize the maximum number of bytes of the objects cached in the heap
+     */
+    public void setContentCacheMaxHeapSize(long contentCacheMaxHeapSize) {
+        this.contentCacheMaxHeapSize = contentCacheMaxHeapSize;
+    }
+
+    public long getContentCacheMaxObjectHeapSize() {
+        return contentCacheMaxObjectHeapSize;
+    }
+
+    /**
+     * @param contentCacheMaxObjectHeapSize the maximum size of an object cached in the heap, larger objects are cached on disk
+     */
+    public void setContentCacheMaxObjectHeapSize(long contentCacheMaxObjectHeapSize) {
+        this.contentCacheMaxObjectHeapSize = contentCacheMaxObjectHeapSize;
+    }
+
+    public String getContentCacheDirectory() {
+        return contentCacheDirectory;
+    }
+
+    /**
+     * @param contentCacheDirectory the directory of the objects cached on disk, without a directory larger objects aren't cached
+     */
+    public void setContentCacheDirectory(String contentCacheDirectory) {
+        this.contentCacheDirectory = contentCacheDirectory;
+    }
+
+    public long getContentCacheMaxDiskSize() {
+        return contentCacheMaxDiskSize;
+    }
+
+    /**
+     * @param contentCacheMaxDiskSize the maximum number of bytes of the objects cached on disk
+     */
+    public void setContentCacheMaxDiskSize(long contentCacheMaxDiskSize) {
+        this.contentCacheMaxDiskSize = contentCacheMaxDiskSize;
+    }
+
+    public boolean isHedgedGets() {
+        return hedgedGets;
+    }
+
+    /**
+     * @param hedgedGets whether the consumer hedges GETs which take longer than usual with a second request
+     */
+    public void setHedgedGets(boolean hedgedGets) {
+        this.hedgedGets = hedgedGets;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * @param hedgePercentile the percentile of the recent GET latencies after which a GET is hedged
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public double getHedgeMaxRate() {
+        return hedgeMaxRate;
+    }
+
+    /**
+     * @param hedgeMaxRate the maximum share of GETs which are hedged
+     */
+    public void setHedgeMaxRate(double hedgeMaxRate) {
+        this.hedgeMaxRate = hedgeMaxRate;
+    }
+
+    public String getNotificationQueueName() {
+        return notificationQueueName;
+    }
+
+    /**
+     * @param notificationQueueName the queue the bucket notifications are received from, the consumer doesn't list the bucket if it's set
+     */
+    public void setNotificationQueueName(String notificationQueueName) {
+        this.notificationQueueName = notificationQueueName;
+    }
+
+    public String getNotificationTopicArn() {
+        return notificationTopicArn;
+    }
+
+    /**
+     * @param notificationTopicArn the topic the bucket is configured to publish its object-created events to on start
+     */
+    public void setNotificationTopicArn(String notificationTopicArn) {
+        this.notificationTopicArn = notificationTopicArn;
+    }
+
+    public String getRecordMode() {
+        return recordMode;
+    }
+
+    /**
+     * @param recordMode whether the consumer splits objects into records, either line or fixed
+     */
+    public void setRecordMode(String recordMode) {
+        this.recordMode = recordMode;
+    }
+
+    public int getRecordLength() {
+        return recordLength;
+    }
+
+    /**
+     * @param recordLength the length of the records in fixed mode
+     */
+    public void setRecordLength(int recordLength) {
+        this.recordLength = recordLength;
+    }
+
+    public int getRecordReaderPoolSize() {
+        return recordReaderPoolSize;
+    }
+
+    /**
+     * @param recordReaderPoolSize the number of byte ranges of an object which are split into records in parallel
+     */
+    public void setRecordReaderPoolSize(int recordReaderPoolSize) {
+        this.recordReaderPoolSize = recordReaderPoolSize;
+    }
+
+    public String getRecordCheckpointFile() {
+        return recordCheckpointFile;
+    }
+
+    /**
+     * @param recordCheckpointFile the file the offsets of the processed records are written to, so splitting resumes after a restart
+     */
+    public void setRecordCheckpointFile(String recordCheckpointFile) {
+        this.recordCheckpointFile = recordCheckpointFile;
+    }
+
+    public int getRecordCheckpointInterval() {
+        return recordCheckpointInterval;
+    }
+
+    /**
+     * @param recordCheckpointInterval the number of records after which the checkpoints are written
+     */
+    public void setRecordCheckpointInterval(int recordCheckpointInterval) {
+        this.recordCheckpointInterval = recordCheckpointInterval;
+    }
+
+    public String getSyncDestinationBucketName() {
+        return syncDestinationBucketName;
+    }
+
+    /**
+     * @param syncDestinationBucketName the bucket the sync operation copies the new and changed objects to
+     */
+    public void setSyncDestinationBucketName(String syncDestinationBucketName) {
+        this.syncDestinationBucketName = syncDestinationBucketName;
+    }
+
+    public String getSyncDirectory() {
+        return syncDirectory;
+    }
+
+    /**
+     * @param syncDirectory the directory the sync operation downloads the new and changed objects to, if no destination bucket is given
+     */
+    public void setSyncDirectory(String syncDirectory) {
+        this.syncDirectory = syncDirectory;
+    }
+
+    public boolean isSyncDelete() {
+        return syncDelete;
+    }
+
+    /**
+     * @param syncDelete whether the sync operation deletes the objects or files which are no longer in the bucket
+     */
+    public void setSyncDelete(boolean syncDelete) {
+        this.syncDelete = syncDelete;
+    }
+
+    public int getSyncPoolSize() {
+        return syncPoolSize;
+    }
+
+    /**
+     * @param syncPoolSize the number of objects copied in parallel by the sync operation
+     */
+    public void setSyncPoolSize(int syncPoolSize) {
+        this.syncPoolSize = syncPoolSize;
+    }
+
+    public String getKeyTemplate() {
+        return keyTemplate;
+    }
+
+    /**
+     * @param keyTemplate the time-partitioned key layout listed by the consumer, such as logs/{yyyy}/{MM}/{dd}/{HH}/, whose placeholders are date patterns
+     */
+    public void setKeyTemplate(String keyTemplate) {
+        this.keyTemplate = keyTemplate;
+    }
+
+    public long getKeyTemplateWindow() {
+        return keyTemplateWindow;
+    }
+
+    /**
+     * @param keyTemplateWindow how far back in milliseconds the partitions of the key template are listed
+     */
+    public void setKeyTemplateWindow(long keyTemplateWindow) {
+        this.keyTemplateWindow = keyTemplateWindow;
+    }
+
+    public long getKeyTemplateLateness() {
+        return keyTemplateLateness;
+    }
+
+    /**
+     * @param keyTemplateLateness how long in milliseconds objects may still arrive in a partition of the key template after its end
+     */
+    public void setKeyTemplateLateness(long keyTemplateLateness) {
+        this.keyTemplateLateness = keyTemplateLateness;
+    }
+
+    public String getKeyTemplateTimeZone() {
+        return keyTemplateTimeZone;
+    }
+
+    /**
+     * @param keyTemplateTimeZone the time zone of the partitions of the key template
+     */
+    public void setKeyTemplateTimeZone(String keyTemplateTimeZone) {
+        this.keyTemplateTimeZone = keyTemplateTimeZone;
+    }
+
+    public String getInventoryManifestKey() {
+        return inventoryManifestKey;
+    }
+
+    /**
+     * @param inventoryManifestKey the key of the manifest.json of an S3 inventory of the bucket, whose objects are consumed instead of listing the bucket
+     */
+    public void setInventoryManifestKey(String inventoryManifestKey) {
+        this.inventoryManifestKey = inventoryManifestKey;
+    }
+
+    public String getInventoryBucketName() {
+        return inventoryBucketName;
+    }
+
+    /**
+     * @param inventoryBucketName the bucket of the inventory manifest, by default the consumed bucket
+     */
+    public void setInventoryBucketName(String inventoryBucketName) {
+        this.inventoryBucketName = inventoryBucketName;
+    }
+
+    public int getInventoryPoolSize() {
+        return inventoryPoolSize;
+    }
+
+    /**
+     * @param inventoryPoolSize the number of inventory data files read in parallel
+     */
+    public void setInventoryPoolSize(int inventoryPoolSize) {
+        this.inventoryPoolSize = inventoryPoolSize;
+    }
+
+    public String getInventoryModifiedAfter() {
+        return inventoryModifiedAfter;
+    }
+
+    /**
+     * @param inventoryModifiedAfter the UTC date, as yyyy-MM-dd or yyyy-MM-ddTHH:mm:ssZ, after which the consumed objects of the inventory have been last modified
+     */
+    public void setInventoryModifiedAfter(String inventoryModifiedAfter) {
+        this.inventoryModifiedAfter = inventoryModifiedAfter;
+    }
+
+    public String getInventoryModifiedBefore() {
+        return inventoryModifiedBefore;
+    }
+
+    /**
+     * @param inventoryModifiedBefore the UTC date, as yyyy-MM-dd or yyyy-MM-ddTHH:mm:ssZ, before which the consumed objects of the inventory have been last modified
+     */
+    public void setInventoryModifiedBefore(String inventoryModifiedBefore) {
+        this.inventoryModifiedBefore = inventoryModifiedBefore;
+    }
+
+    public String getInventoryStorageClasses() {
+        return inventoryStorageClasses;
+    }
+
+    /**
+     * @param inventoryStorageClasses the comma-separated storage classes of the consumed objects of the inventory
+     */
+    public void setInventoryStorageClasses(String inventoryStorageClasses) {
+        this.inventoryStorageClasses = inventoryStorageClasses;
+    }
+
+    public int getHashPrefixLength() {
+        return hashPrefixLength;
+    }
+
+    /**
+     * @param hashPrefixLength the number of hexadecimal characters of the hash prefix of the keys, at most 4, or 0 for keys without prefix.
+     *                         It's applied to the destination key of a copy as well. A consumer lists at most 256 hash prefixes
+     */
+    public void setHashPrefixLength(int hashPrefixLength) {
+        this.hashPrefixLength = hashPrefixLength;
+    }
+
+    public String getHashPrefixExpression() {
+        return hashPrefixExpression;
+    }
+
+    /**
+     * @param hashPrefixExpression the simple expression the hash prefix of a key is derived from instead of the key
+     */
+    public void setHashPrefixExpression(String hashPrefixExpression) {
+        this.hashPrefixExpression = hashPrefixExpression;
+    }
+
+    public int getCollectionUploadPoolSize() {
+        return collectionUploadPoolSize;
+    }
+
+    /**
+     * @param collectionUploadPoolSize the number of files of a directory or collection body uploaded in parallel
+     */
+    public void setCollectionUploadPoolSize(int collectionUploadPoolSize) {
+        this.collectionUploadPoolSize = collectionUploadPoolSize;
+    }
 
     /* (non-Javadoc)
      * @see java.lang.Object#toString()
      */
     @Override
     public String toString() {
-        return "S3Configuration [accessKey=" + accessKey + ", secretKey=*****, amazonS3Client="
-                + amazonS3Client + ", bucketName=" + bucketName + ", region=" + region + ", deleteAfterRead="
-                + deleteAfterRead + ", deleteAfterUpload=" + deleteAfterUpload + ", amazonS3Endpoint="
-                + amazonS3Endpoint + "]";
+        return "S3Configuration [accessKey=" + accessKey + ", secretKey=*****, amazonS3Client=" + amazonS3Client
+                + ", amazonSQSClient=" + amazonSQSClient + ", bucketName=" + bucketName + ", region=" + region
+                + ", deleteAfterRead=" + deleteAfterRead + ", deleteAfterUpload=" + deleteAfterUpload
+                + ", amazonS3Endpoint=" + amazonS3Endpoint + ", idempotentRepository=" + idempotentRepository
+                + ", prefix=" + prefix + ", delimiter=" + delimiter + ", prefixes=" + prefixes + ", suffix=" + suffix
+                + ", minSize=" + minSize + ", maxSize=" + maxSize + ", listingPoolSize=" + listingPoolSize
+                + ", leaseStore=" + leaseStore + ", partitions=" + partitions + ", nodeId=" + nodeId
+                + ", leaseDuration=" + leaseDuration + ", multipartDownloadThreshold=" + multipartDownloadThreshold
+                + ", downloadPartSize=" + downloadPartSize + ", downloadPoolSize=" + downloadPoolSize
+                + ", downloadPartRetries=" + downloadPartRetries + ", downloadDirectory=" + downloadDirectory
+                + ", downloadAsByteBuffer=" + downloadAsByteBuffer + ", bodyStrategy=" + bodyStrategy
+                + ", bodyBufferThreshold=" + bodyBufferThreshold + ", pooledBuffers=" + pooledBuffers
+                + ", bufferPoolSize=" + bufferPoolSize + ", metadataOnly=" + metadataOnly + ", moveAfterRead="
+                + moveAfterRead + ", archiveBucketName=" + archiveBucketName + ", archivePrefix=" + archivePrefix
+                + ", abortThreshold=" + abortThreshold + ", multipartUploadThreshold=" + multipartUploadThreshold
+                + ", uploadPartSize=" + uploadPartSize + ", uploadPoolSize=" + uploadPoolSize + ", uploadPartRetries="
+                + uploadPartRetries + ", writeBehindDirectory=" + writeBehindDirectory + ", writeBehindPoolSize="
+                + writeBehindPoolSize + ", writeBehindMaxDiskUsage=" + writeBehindMaxDiskUsage
+                + ", writeBehindRetryDelay=" + writeBehindRetryDelay + ", aggregationSize=" + aggregationSize
+                + ", aggregationInterval=" + aggregationInterval + ", aggregationKey=" + aggregationKey
+                + ", aggregationSeparator=" + aggregationSeparator + ", aggregationGzip=" + aggregationGzip
+                + ", aggregationSpillThreshold=" + aggregationSpillThreshold + ", compression=" + compression
+                + ", decompress=" + decompress + ", skipUnchanged=" + skipUnchanged + ", eTagCacheSize=" + eTagCacheSize
+                + ", eTagCacheFile=" + eTagCacheFile + ", operation=" + operation + ", contentCache=" + contentCache
+                + ", contentCacheTtl=" + contentCacheTtl + ", contentCacheMaxHeapSize=" + contentCacheMaxHeapSize
+                + ", contentCacheMaxObjectHeapSize=" + contentCacheMaxObjectHeapSize + ", contentCacheDirectory="
+                + contentCacheDirectory + ", contentCacheMaxDiskSize=" + contentCacheMaxDiskSize + ", hedgedGets="
+                + hedgedGets + ", hedgePercentile=" + hedgePercentile + ", hedgeMaxRate=" + hedgeMaxRate
+                + ", notificationQueueName=" + notificationQueueName + ", notificationTopicArn=" + notificationTopicArn
+                + ", recordMode=" + recordMode + ", recordLength=" + recordLength + ", recordReaderPoolSize="
+                + recordReaderPoolSize + ", recordCheckpointFile=" + recordCheckpointFile
+                + ", recordCheckpointInterval=" + recordCheckpointInterval + ", syncDestinationBucketName="
+                + syncDestinationBucketName + ", syncDirectory=" + syncDirectory + ", syncDelete=" + syncDelete
+                + ", syncPoolSize=" + syncPoolSize + ", keyTemplate=" + keyTemplate + ", keyTemplateWindow="
+                + keyTemplateWindow + ", keyTemplateLateness=" + keyTemplateLateness + ", keyTemplateTimeZone="
+                + keyTemplateTimeZone + ", inventoryManifestKey=" + inventoryManifestKey + ", inventoryBucketName="
+                + inventoryBucketName + ", inventoryPoolSize=" + inventoryPoolSize + ", inventoryModifiedAfter="
+                + inventoryModifiedAfter + ", inventoryModifiedBefore=" + inventoryModifiedBefore
+                + ", inventoryStorageClasses=" + inventoryStorageClasses + ", hashPrefixLength=" + hashPrefixLength
+                + ", hashPrefixExpression=" + hashPrefixExpression + ", collectionUploadPoolSize="
+                + collectionUploadPoolSize + "]";
     }
 
     /* (non-Javadoc)
@@ -22,6 +22,7 @@ package org.apache.camel.component.aws.s3;
  */
 public interface S3Constants {
 
+    String AGGREGATED_SIZE = "CamelAwsS3AggregatedSize";
     String BUCKET_NAME = "CamelAwsS3BucketName";
     String CACHE_CONTROL = "CamelAwsS3ContentControl";
     String CONTENT_DISPOSITION = "CamelAwsS3ContentDisposition";
@@ -29,8 +30,18 @@ public interface S3Constants {
     String CONTENT_LENGTH = "CamelAwsS3ContentLength";
     String CONTENT_MD5 = "CamelAwsS3ContentMD5";
     String CONTENT_TYPE = "CamelAwsS3ContentType";
+    String DESTINATION_BUCKET_NAME = "CamelAwsS3DestinationBucketName";
+    String DESTINATION_KEY = "CamelAwsS3DestinationKey";
     String E_TAG = "CamelAwsS3ETag";
     String KEY = "CamelAwsS3Key";
     String LAST_MODIFIED = "CamelAwsS3LastModified";
+    String MARKER = "CamelAwsS3Marker";
+    String OPERATION = "CamelAwsS3Operation";
+    String ORIGINAL_KEY = "CamelAwsS3OriginalKey";
+    String PREFIX = "CamelAwsS3Prefix";
+    String RECORD_OFFSET = "CamelAwsS3RecordOffset";
+    String UNCHANGED = "CamelAwsS3Unchanged";
+    String UNCHANGED_OBJECTS = "CamelAwsS3UnchangedObjects";
+    String UPLOADED_OBJECTS = "CamelAwsS3UploadedObjects";
     String VERSION_ID = "CamelAwsS3VersionId";
 }
\ No newline at end of file
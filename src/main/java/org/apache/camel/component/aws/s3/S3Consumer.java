@@ -16,14 +16,21 @@
  */
 package org.apache.camel.component.aws.s3;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3Client;
-import com.amazonaws.services.s3.model.ListObjectsRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 
@@ -32,12 +39,17 @@ import org.apache.camel.Exchange;
 import org.apache.camel.NoFactoryAvailableException;
 import org.apache.camel.Processor;
 import org.apache.camel.ShutdownRunningTask;
+import org.apache.camel.component.aws.s3.S3NotificationReceiver.Notification;
+import org.apache.camel.component.aws.s3.support.S3HashPrefix;
+import org.apache.camel.component.aws.s3.support.S3LazyContent;
 import org.apache.camel.impl.DefaultEndpoint;
 import org.apache.camel.impl.ScheduledPollConsumer;
+import org.apache.camel.spi.IdempotentRepository;
 import org.apache.camel.spi.ShutdownAware;
 import org.apache.camel.spi.Synchronization;
 import org.apache.camel.util.CastUtils;
 import org.apache.camel.util.ObjectHelper;
+import org.apache.camel.util.ServiceHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,9 +61,25 @@ import org.slf4j.LoggerFactory;
 public class S3Consumer extends ScheduledPollConsumer implements BatchConsumer, ShutdownAware {
     
     private static final transient Logger LOG = LoggerFactory.getLogger(S3Consumer.class);
+    private static final String IDEMPOTENT_KEY = "CamelAwsS3IdempotentKey";
+    private static final String NOTIFICATION = "CamelAwsS3Notification";
     
     private volatile ShutdownRunningTask shutdownRunningTask;
     private volatile int pendingExchanges;
+    private S3ShardedLister lister;
+    private ExecutorService listingExecutorService;
+    private S3PartitionCoordinator partitionCoordinator;
+    private ScheduledExecutorService leaseExecutorService;
+    private S3RangedDownloader downloader;
+    private ExecutorService downloadExecutorService;
+    private S3BodyMaterializer bodyMaterializer;
+    private S3HedgedFetcher hedgedFetcher;
+    private ExecutorService hedgeExecutorService;
+    private S3NotificationReceiver notificationReceiver;
+    private S3RecordSplitter recordSplitter;
+    private ExecutorService recordExecutorService;
+    private S3InventoryReader inventoryReader;
+    private ExecutorService inventoryExecutorService;
 
     public S3Consumer(S3Endpoint endpoint, Processor processor) throws NoFactoryAvailableException {
         super(endpoint, processor);
@@ -63,34 +91,226 @@ public class S3Consumer extends ScheduledPollConsumer implements BatchConsumer,
         shutdownRunningTask = null;
         pendingExchanges = 0;
         
-        String bucketName = getConfiguration().getBucketName();
-        LOG.trace("Quering objects in bucket [{}]...", bucketName);
-        
-        ListObjectsRequest listObjectsRequest = new ListObjectsRequest();
-        listObjectsRequest.setBucketName(bucketName);
-        listObjectsRequest.setMaxKeys(getMaxMessagesPerPoll());
+        if (notificationReceiver != null) {
+            List<Notification> notifications = notificationReceiver.receive(getMaxMessagesPerPoll() > 0 ? getMaxMessagesPerPoll() : 10);
+            
+            LOG.trace("Received {} notifications from queue [{}]", notifications.size(), notificationReceiver.getQueueUrl());
+            
+            return processBatch(CastUtils.cast(createNotifiedExchanges(notifications)));
+        }
         
-        ObjectListing listObjects = getAmazonS3Client().listObjects(listObjectsRequest);
+        String bucketName = getConfiguration().getBucketName();
+        List<S3ObjectSummary> s3ObjectSummaries;
+        if (inventoryReader != null) {
+            s3ObjectSummaries = inventoryReader.poll(getMaxMessagesPerPoll());
+            
+            LOG.trace("Read {} objects of bucket [{}] from its inventory", s3ObjectSummaries.size(), bucketName);
+        } else {
+            LOG.trace("Quering objects in bucket [{}]...", bucketName);
+            
+            s3ObjectSummaries = lister.list(getMaxMessagesPerPoll());
+            
+            LOG.trace("Found {} objects in bucket [{}]...", s3ObjectSummaries.size(), bucketName);
+        }
         
-        LOG.trace("Found {} objects in bucket [{}]...", listObjects.getObjectSummaries().size(), bucketName);
+        if (recordSplitter != null) {
+            return splitRecords(s3ObjectSummaries);
+        }
         
-        Queue<Exchange> exchanges = createExchanges(listObjects.getObjectSummaries());
+        Queue<Exchange> exchanges = createExchanges(s3ObjectSummaries);
         return processBatch(CastUtils.cast(exchanges));
     }
     
-    protected Queue<Exchange> createExchanges(List<S3ObjectSummary> s3ObjectSummaries) {
+    protected Queue<Exchange> createExchanges(List<S3ObjectSummary> s3ObjectSummaries) throws Exception {
         LOG.trace("Received {} messages in this poll", s3ObjectSummaries.size());
         
+        IdempotentRepository<String> idempotentRepository = getConfiguration().getIdempotentRepository();
         Queue<Exchange> answer = new LinkedList<Exchange>();
         for (S3ObjectSummary s3ObjectSummary : s3ObjectSummaries) {
-            S3Object s3Object = getAmazonS3Client().getObject(s3ObjectSummary.getBucketName(), s3ObjectSummary.getKey());
-            Exchange exchange = getEndpoint().createExchange(s3Object);
+            String idempotentKey = null;
+            if (idempotentRepository != null) {
+                idempotentKey = createIdempotentKey(s3ObjectSummary);
+                if (idempotentRepository.contains(idempotentKey)) {
+                    LOG.trace("Skipping already processed object [{}]", idempotentKey);
+                    continue;
+                }
+            }
+            
+            Exchange exchange;
+            try {
+                exchange = createExchange(s3ObjectSummary);
+            } catch (AmazonServiceException e) {
+                if (e.getStatusCode() != 404) {
+                    release(answer);
+                    throw e;
+                }
+                LOG.debug("Skipping object [{}] which no longer exists", s3ObjectSummary.getKey());
+                continue;
+            } catch (Exception e) {
+                release(answer);
+                throw e;
+            }
+            if (idempotentKey != null) {
+                exchange.setProperty(IDEMPOTENT_KEY, idempotentKey);
+            }
             answer.add(exchange);
         }
 
         return answer;
     }
     
+    private Exchange createExchange(S3ObjectSummary s3ObjectSummary) throws Exception {
+        if (getConfiguration().isMetadataOnly()) {
+            return createLazyExchange(s3ObjectSummary);
+        } else if (downloader != null && downloader.isRangedDownload(s3ObjectSummary)) {
+            return downloader.download(s3ObjectSummary);
+        }
+        
+        S3Object s3Object = getObject(s3ObjectSummary);
+        Exchange exchange = getEndpoint().createExchange(s3Object);
+        bodyMaterializer.materialize(exchange, s3Object);
+        return exchange;
+    }
+    
+    /**
+     * Releases the content of exchanges which won't be processed, as the poll failed before they were handed over
+     */
+    private void release(Collection<Exchange> exchanges) {
+        for (Exchange exchange : exchanges) {
+            List<Synchronization> synchronizations = exchange.handoverCompletions();
+            if (synchronizations != null) {
+                for (Synchronization synchronization : synchronizations) {
+                    synchronization.onFailure(exchange);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Processes the records of the objects, committing an object once all its records are processed.
+     *
+     * @return the number of objects whose records have been processed
+     */
+    protected int splitRecords(List<S3ObjectSummary> s3ObjectSummaries) throws Exception {
+        IdempotentRepository<String> idempotentRepository = getConfiguration().getIdempotentRepository();
+        int answer = 0;
+        for (S3ObjectSummary s3ObjectSummary : s3ObjectSummaries) {
+            if (!isRunAllowed()) {
+                break;
+            }
+            
+            String idempotentKey = null;
+            if (idempotentRepository != null) {
+                idempotentKey = createIdempotentKey(s3ObjectSummary);
+                if (idempotentRepository.contains(idempotentKey)) {
+                    LOG.trace("Skipping already processed object [{}]", idempotentKey);
+                    continue;
+                }
+            }
+            
+            if (recordSplitter.split(s3ObjectSummary)) {
+                Exchange exchange = getEndpoint().createExchange(s3ObjectSummary, null);
+                if (idempotentKey != null) {
+                    exchange.setProperty(IDEMPOTENT_KEY, idempotentKey);
+                }
+                processCommit(exchange);
+            }
+            answer++;
+        }
+        
+        return answer;
+    }
+    
+    /**
+     * Creates the exchanges of the objects reported by the notifications. A notification which reports
+     * no objects to consume, or only objects which no longer exist, is deleted right away. Objects which
+     * no longer exist are skipped, while the other objects of the notification are still consumed.
+     */
+    protected Queue<Exchange> createNotifiedExchanges(Collection<Notification> notifications) throws Exception {
+        Queue<Exchange> answer = new LinkedList<Exchange>();
+        for (Notification notification : notifications) {
+            List<S3ObjectSummary> accepted = new ArrayList<S3ObjectSummary>();
+            for (S3ObjectSummary s3ObjectSummary : notification.getSummaries()) {
+                if (isNotified(s3ObjectSummary)) {
+                    accepted.add(s3ObjectSummary);
+                }
+            }
+            
+            Queue<Exchange> exchanges;
+            try {
+                exchanges = createExchanges(accepted);
+            } catch (Exception e) {
+                release(answer);
+                throw e;
+            }
+            
+            if (exchanges.isEmpty()) {
+                notification.discard();
+                continue;
+            }
+            // the objects which aren't consumed are done already
+            for (int skipped = notification.getSummaries().size() - exchanges.size(); skipped > 0; skipped--) {
+                notification.commit();
+            }
+            for (Exchange exchange : exchanges) {
+                exchange.setProperty(NOTIFICATION, notification);
+            }
+            answer.addAll(exchanges);
+        }
+        
+        return answer;
+    }
+    
+    /**
+     * Whether the notified object is in the bucket and passes the filters of the listing
+     */
+    private boolean isNotified(S3ObjectSummary s3ObjectSummary) {
+        String prefix = getConfiguration().getPrefix();
+        String key = S3HashPrefix.strip(s3ObjectSummary.getKey(), getConfiguration().getHashPrefixLength());
+        return getConfiguration().getBucketName().equals(s3ObjectSummary.getBucketName())
+            && (prefix == null || key.startsWith(prefix))
+            && lister.accept(s3ObjectSummary);
+    }
+    
+    private S3Object getObject(S3ObjectSummary s3ObjectSummary) throws Exception {
+        if (hedgedFetcher != null) {
+            return hedgedFetcher.getObject(s3ObjectSummary.getBucketName(), s3ObjectSummary.getKey());
+        }
+        return getAmazonS3Client().getObject(s3ObjectSummary.getBucketName(), s3ObjectSummary.getKey());
+    }
+    
+    /**
+     * Creates an exchange from the listing alone, the object is fetched only if the body is read.
+     *
+     * @param s3ObjectSummary the listed object
+     * @return the exchange
+     */
+    protected Exchange createLazyExchange(S3ObjectSummary s3ObjectSummary) {
+        File directory = null;
+        if (getConfiguration().getDownloadDirectory() != null) {
+            directory = new File(getConfiguration().getDownloadDirectory());
+            directory.mkdirs();
+        }
+        
+        final S3LazyContent content = new S3LazyContent(getAmazonS3Client(), s3ObjectSummary, directory);
+        Exchange exchange = getEndpoint().createExchange(s3ObjectSummary, content);
+        exchange.addOnCompletion(new Synchronization() {
+            public void onComplete(Exchange exchange) {
+                content.release();
+            }
+
+            public void onFailure(Exchange exchange) {
+                content.release();
+            }
+
+            @Override
+            public String toString() {
+                return "S3LazyContentOnCompletion";
+            }
+        });
+        return exchange;
+    }
+    
     public int processBatch(Queue<Object> exchanges) throws Exception {
         int total = exchanges.size();
 
@@ -130,27 +350,72 @@ public class S3Consumer extends ScheduledPollConsumer implements BatchConsumer,
     }
     
     /**
-     * Strategy to delete the message after being processed.
+     * Builds the key under which the object is tracked in the idempotent repository.
+     * The ETag is part of the key, so an overwritten object is consumed again.
+     *
+     * @param s3ObjectSummary the listed object
+     * @return the idempotent key
+     */
+    protected String createIdempotentKey(S3ObjectSummary s3ObjectSummary) {
+        if (s3ObjectSummary.getETag() == null) {
+            return s3ObjectSummary.getKey();
+        }
+        return s3ObjectSummary.getKey() + "@" + s3ObjectSummary.getETag();
+    }
+    
+    /**
+     * Strategy to delete or move the message after being processed.
      *
      * @param exchange the exchange
      */
     protected void processCommit(Exchange exchange) {
+        String idempotentKey = exchange.getProperty(IDEMPOTENT_KEY, String.class);
+        if (idempotentKey != null) {
+            getConfiguration().getIdempotentRepository().add(idempotentKey);
+        }
+        
         try {
-            if (getConfiguration().isDeleteAfterRead()) {
-                String bucketName = exchange.getIn().getHeader(S3Constants.BUCKET_NAME, String.class);
-                String key = exchange.getIn().getHeader(S3Constants.KEY, String.class);
+            String bucketName = exchange.getIn().getHeader(S3Constants.BUCKET_NAME, String.class);
+            String key = exchange.getIn().getHeader(S3Constants.KEY, String.class);
+            
+            if (getConfiguration().isMoveAfterRead()) {
+                String archiveBucketName = getArchiveBucketName();
+                String archiveKey = getArchiveKey(key);
+                
+                LOG.trace("Moving object from bucket {} with key {} to bucket {} with key {}...", new Object[]{bucketName, key, archiveBucketName, archiveKey});
+                
+                // the copy happens within S3, so no content passes through this host
+                getAmazonS3Client().copyObject(new CopyObjectRequest(bucketName, key, archiveBucketName, archiveKey));
+                getAmazonS3Client().deleteObject(bucketName, key);
                 
+                LOG.trace("Object moved");
+            } else if (getConfiguration().isDeleteAfterRead()) {
                 LOG.trace("Deleting object from bucket {} with key {}...", bucketName, key);
                 
                 getAmazonS3Client().deleteObject(bucketName, key);
                 
                 LOG.trace("Object deleted");
             }
+            
+            Notification notification = exchange.getProperty(NOTIFICATION, Notification.class);
+            if (notification != null) {
+                notification.commit();
+            }
         } catch (AmazonClientException e) {
             LOG.warn("Error occurred during deleting object", e);
             exchange.setException(e);
         }
     }
+    
+    private String getArchiveBucketName() {
+        String archiveBucketName = getConfiguration().getArchiveBucketName();
+        return archiveBucketName != null ? archiveBucketName : getConfiguration().getBucketName();
+    }
+    
+    private String getArchiveKey(String key) {
+        String archivePrefix = getConfiguration().getArchivePrefix();
+        return archivePrefix != null ? archivePrefix + key : key;
+    }
 
     /**
      * Strategy when processing the exchange failed.
@@ -202,6 +467,169 @@ public class S3Consumer extends ScheduledPollConsumer implements BatchConsumer,
      // noop
     }
     
+    @Override
+    protected void doStart() throws Exception {
+        if (getConfiguration().isMoveAfterRead() && getConfiguration().getBucketName().equals(getArchiveBucketName())
+            && ObjectHelper.isEmpty(getConfiguration().getArchivePrefix())) {
+            throw new IllegalArgumentException("Either archiveBucketName or archivePrefix must be set to move objects within bucket "
+                + getConfiguration().getBucketName());
+        }
+        
+        ServiceHelper.startService(getConfiguration().getIdempotentRepository());
+        
+        lister = new S3ShardedLister(getEndpoint());
+        bodyMaterializer = new S3BodyMaterializer(getConfiguration());
+        if (getConfiguration().getListingPoolSize() > 1) {
+            listingExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+                .newFixedThreadPool(this, "S3ShardedLister", getConfiguration().getListingPoolSize());
+            lister.setExecutorService(listingExecutorService);
+        }
+        
+        if (getConfiguration().getLeaseStore() != null) {
+            startPartitionCoordinator();
+        }
+        
+        if (getConfiguration().getMultipartDownloadThreshold() > 0) {
+            downloadExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+                .newFixedThreadPool(this, "S3RangedDownloader", getConfiguration().getDownloadPoolSize());
+            downloader = new S3RangedDownloader(getEndpoint(), downloadExecutorService);
+        }
+        
+        if (getConfiguration().getRecordMode() != null) {
+            startRecordSplitter();
+        }
+        
+        if (getConfiguration().getInventoryManifestKey() != null) {
+            inventoryExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+                .newFixedThreadPool(this, "S3InventoryReader", getConfiguration().getInventoryPoolSize());
+            inventoryReader = new S3InventoryReader(getEndpoint(), lister, inventoryExecutorService);
+            inventoryReader.start();
+        }
+        
+        if (getConfiguration().getNotificationQueueName() != null) {
+            notificationReceiver = new S3NotificationReceiver(getEndpoint());
+            notificationReceiver.start();
+        }
+        
+        if (getConfiguration().isHedgedGets()) {
+            // the slower request of a hedged GET may still be running when the next GET starts
+            hedgeExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+                .newCachedThreadPool(this, "S3HedgedFetcher");
+            hedgedFetcher = new S3HedgedFetcher(getEndpoint(), hedgeExecutorService);
+        }
+        
+        super.doStart();
+    }
+    
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        
+        if (listingExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(listingExecutorService);
+            listingExecutorService = null;
+        }
+        
+        if (downloadExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(downloadExecutorService);
+            downloadExecutorService = null;
+            downloader = null;
+        }
+        if (recordExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(recordExecutorService);
+            recordExecutorService = null;
+        }
+        recordSplitter = null;
+        if (inventoryReader != null) {
+            inventoryReader.stop();
+            inventoryReader = null;
+        }
+        if (inventoryExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(inventoryExecutorService);
+            inventoryExecutorService = null;
+        }
+        if (hedgeExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(hedgeExecutorService);
+            hedgeExecutorService = null;
+            hedgedFetcher = null;
+        }
+        if (leaseExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(leaseExecutorService);
+            leaseExecutorService = null;
+        }
+        if (partitionCoordinator != null) {
+            partitionCoordinator.releaseAll();
+            partitionCoordinator = null;
+        }
+        
+        ServiceHelper.stopService(getConfiguration().getIdempotentRepository());
+    }
+    
+    private void startRecordSplitter() throws Exception {
+        S3Configuration configuration = getConfiguration();
+        if (!S3RecordSplitter.LINE.equals(configuration.getRecordMode()) && !S3RecordSplitter.FIXED.equals(configuration.getRecordMode())) {
+            throw new IllegalArgumentException("Unsupported record mode: " + configuration.getRecordMode());
+        }
+        if (S3RecordSplitter.FIXED.equals(configuration.getRecordMode()) && configuration.getRecordLength() <= 0) {
+            throw new IllegalArgumentException("recordLength must be set to split objects into records of a fixed length");
+        }
+        
+        File checkpointFile = configuration.getRecordCheckpointFile() != null ? new File(configuration.getRecordCheckpointFile()) : null;
+        recordSplitter = new S3RecordSplitter(getEndpoint(), getProcessor(), new S3RecordCheckpoints(checkpointFile));
+        if (configuration.getRecordReaderPoolSize() > 1) {
+            recordExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+                .newFixedThreadPool(this, "S3RecordSplitter", configuration.getRecordReaderPoolSize());
+            recordSplitter.setExecutorService(recordExecutorService);
+        }
+    }
+    
+    private void startPartitionCoordinator() {
+        S3Configuration configuration = getConfiguration();
+        String nodeId = configuration.getNodeId() != null ? configuration.getNodeId() : UUID.randomUUID().toString();
+        
+        partitionCoordinator = new S3PartitionCoordinator(configuration.getLeaseStore(), configuration.getBucketName(),
+                nodeId, configuration.getPartitions(), configuration.getLeaseDuration());
+        partitionCoordinator.setHashPrefixLength(configuration.getHashPrefixLength());
+        partitionCoordinator.rebalance();
+        lister.setPartitionCoordinator(partitionCoordinator);
+        
+        // renew the leases well before they expire, independent of how long a batch takes
+        long period = Math.max(1, configuration.getLeaseDuration() / 3);
+        leaseExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+            .newScheduledThreadPool(this, "S3PartitionCoordinator", 1);
+        leaseExecutorService.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    partitionCoordinator.rebalance();
+                } catch (RuntimeException e) {
+                    LOG.warn("Error occurred during rebalancing partitions", e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * @return the number of object streams left open by the route, whose connections the consumer had to release
+     */
+    public long getLeakedConnections() {
+        return bodyMaterializer != null ? bodyMaterializer.getLeakedStreams() : 0;
+    }
+    
+    /**
+     * @return the number of GETs which were hedged with a second request
+     */
+    public long getHedgedRequests() {
+        return hedgedFetcher != null ? hedgedFetcher.getHedgedRequests() : 0;
+    }
+    
+    /**
+     * @return the number of rows read from the data files of the inventory, if the objects are read from an inventory
+     */
+    public long getInventoryRows() {
+        S3InventoryReader reader = inventoryReader;
+        return reader != null ? reader.getRows() : 0;
+    }
+    
     protected S3Configuration getConfiguration() {
         return getEndpoint().getConfiguration();
     }
@@ -0,0 +1,357 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+import org.apache.camel.impl.ServiceSupport;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-through cache of the objects of a bucket with two tiers: small objects are kept in the heap,
+ * larger objects in a size-capped directory. Both tiers evict the least recently used objects.
+ * <p/>
+ * A cached object is served without a request until its time to live has passed, then it's revalidated
+ * with a GET conditional on its ETag, which only transfers the content if the object has changed.
+ * Concurrent requests for the same key share one download or revalidation.
+ */
+public class S3ContentCache extends ServiceSupport {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3ContentCache.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final S3Endpoint endpoint;
+    private final ConcurrentMap<String, FutureTask<Entry>> inFlight = new ConcurrentHashMap<String, FutureTask<Entry>>();
+    private final Map<String, Entry> heap = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final Map<String, Entry> disk = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private File directory;
+    private long heapSize;
+    private long diskSize;
+
+    public S3ContentCache(S3Endpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Gets the object from the cache, downloading or revalidating it if needed.
+     *
+     * @param key the key of the object
+     * @return the object with a stream of its content
+     */
+    public S3Object getObject(final String key) throws Exception {
+        Entry entry = lookup(key);
+        S3Object cached = entry != null && !isExpired(entry) ? open(entry) : null;
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>() {
+            public Entry call() throws Exception {
+                try {
+                    return load(key, lookup(key));
+                } finally {
+                    inFlight.remove(key);
+                }
+            }
+        });
+        FutureTask<Entry> running = inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            task.run();
+        } else {
+            LOG.trace("Waiting for the download of object [{}] in flight", key);
+        }
+
+        try {
+            entry = running.get();
+        } catch (ExecutionException e) {
+            throw ObjectHelper.wrapRuntimeCamelException(e.getCause());
+        }
+
+        if (running == task && entry.s3Object != null) {
+            return entry.s3Object;
+        }
+        cached = entry.s3Object == null ? open(entry) : null;
+        if (cached == null) {
+            // too large to cache or already evicted, so the content can't be shared
+            return endpoint.getS3Client().getObject(getConfiguration().getBucketName(), key);
+        }
+        if (running != task) {
+            hits.incrementAndGet();
+        }
+        return cached;
+    }
+
+    /**
+     * Downloads the object, or revalidates the cached entry with a GET conditional on its ETag
+     */
+    protected Entry load(String key, Entry cached) throws IOException {
+        GetObjectRequest getObjectRequest = new GetObjectRequest(getConfiguration().getBucketName(), key);
+        if (cached != null) {
+            if (!isExpired(cached)) {
+                // validated while this request was waiting
+                hits.incrementAndGet();
+                return cached;
+            }
+            getObjectRequest.setNonmatchingETagConstraints(Collections.singletonList(cached.metadata.getETag()));
+        }
+
+        LOG.trace("Getting object [{}] for the cache...", key);
+
+        S3Object s3Object = endpoint.getS3Client().getObject(getObjectRequest);
+        if (s3Object == null) {
+            // the constraint wasn't met, so the cached content is still current
+            LOG.trace("Revalidated cached object [{}]", key);
+
+            revalidations.incrementAndGet();
+            hits.incrementAndGet();
+            cached.validated = System.currentTimeMillis();
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        if (cached != null) {
+            evict(key);
+        }
+
+        long length = s3Object.getObjectMetadata().getContentLength();
+        Entry entry = new Entry(key, s3Object.getObjectMetadata(), length);
+        if (length <= getConfiguration().getContentCacheMaxObjectHeapSize()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) length);
+            copy(s3Object.getObjectContent(), out);
+            entry.data = out.toByteArray();
+            entry.length = entry.data.length;
+        } else if (directory != null && length <= getConfiguration().getContentCacheMaxDiskSize()) {
+            entry.file = File.createTempFile("camel-aws-s3-cache-", ".data", directory);
+            copy(s3Object.getObjectContent(), new FileOutputStream(entry.file));
+            entry.length = entry.file.length();
+        } else {
+            entry.s3Object = s3Object;
+            return entry;
+        }
+
+        entry.validated = System.currentTimeMillis();
+        store(entry);
+        return entry;
+    }
+
+    /**
+     * Opens the content of the entry, or returns <tt>null</tt> if its file has been evicted
+     */
+    private synchronized S3Object open(Entry entry) throws IOException {
+        if (entry.file != null && !entry.file.exists()) {
+            return null;
+        }
+
+        S3Object answer = new S3Object();
+        answer.setBucketName(getConfiguration().getBucketName());
+        answer.setKey(entry.key);
+        answer.setObjectMetadata(entry.metadata);
+        answer.setObjectContent(entry.data != null ? new ByteArrayInputStream(entry.data) : new FileInputStream(entry.file));
+        return answer;
+    }
+
+    private synchronized Entry lookup(String key) {
+        Entry entry = heap.get(key);
+        return entry != null ? entry : disk.get(key);
+    }
+
+    private synchronized void store(Entry entry) {
+        if (entry.data != null) {
+            heap.put(entry.key, entry);
+            heapSize += entry.length;
+            heapSize -= evictEldest(heap, heapSize - getConfiguration().getContentCacheMaxHeapSize());
+        } else {
+            disk.put(entry.key, entry);
+            diskSize += entry.length;
+            diskSize -= evictEldest(disk, diskSize - getConfiguration().getContentCacheMaxDiskSize());
+        }
+    }
+
+    private synchronized void evict(String key) {
+        Entry entry = heap.remove(key);
+        if (entry != null) {
+            heapSize -= entry.length;
+        }
+        entry = disk.remove(key);
+        if (entry != null) {
+            diskSize -= entry.length;
+            entry.file.delete();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries of the tier until at least <tt>excess</tt> bytes are freed
+     *
+     * @return the number of bytes freed
+     */
+    private long evictEldest(Map<String, Entry> tier, long excess) {
+        long freed = 0;
+        for (Iterator<Entry> it = tier.values().iterator(); it.hasNext() && freed < excess;) {
+            Entry entry = it.next();
+            it.remove();
+            freed += entry.length;
+            if (entry.file != null) {
+                // a stream which is still reading the file keeps its content
+                entry.file.delete();
+            }
+
+            LOG.trace("Evicted cached object [{}]", entry.key);
+        }
+        return freed;
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.validated > getConfiguration().getContentCacheTtl();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    private S3Configuration getConfiguration() {
+        return endpoint.getConfiguration();
+    }
+
+    /**
+     * @return the number of requests served from the cache, including the revalidated objects and the
+     *         requests which shared the download of another request
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests which downloaded the object
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of expired objects which were still current
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return the ratio of the requests served from the cache
+     */
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total > 0 ? (double) hits.get() / total : 0;
+    }
+
+    /**
+     * @return the ratio of the requests which downloaded the object
+     */
+    public double getMissRatio() {
+        long total = hits.get() + misses.get();
+        return total > 0 ? (double) misses.get() / total : 0;
+    }
+
+    public synchronized long getHeapSize() {
+        return heapSize;
+    }
+
+    public synchronized long getDiskSize() {
+        return diskSize;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        if (getConfiguration().getContentCacheDirectory() != null) {
+            directory = new File(getConfiguration().getContentCacheDirectory());
+            directory.mkdirs();
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        synchronized (this) {
+            for (Entry entry : disk.values()) {
+                entry.file.delete();
+            }
+            heap.clear();
+            disk.clear();
+            heapSize = 0;
+            diskSize = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "S3ContentCache[" + getConfiguration().getBucketName() + "]";
+    }
+
+    /**
+     * A cached object, with its content either in the heap or in a file
+     */
+    protected static final class Entry {
+        private final String key;
+        private final ObjectMetadata metadata;
+        private long length;
+        private byte[] data;
+        private File file;
+        // the object which was too large to cache
+        private S3Object s3Object;
+        private volatile long validated;
+
+        Entry(String key, ObjectMetadata metadata, long length) {
+            this.key = key;
+            this.metadata = metadata;
+            this.length = length;
+        }
+    }
+}
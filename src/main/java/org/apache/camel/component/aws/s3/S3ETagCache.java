@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded LRU cache of the ETags of the objects a producer has uploaded, optionally persisted to a file.
+ */
+public class S3ETagCache {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3ETagCache.class);
+
+    private final Map<String, String> eTags;
+    private final File file;
+
+    /**
+     * @param maxSize the maximum number of cached ETags
+     * @param file the file the cache is loaded from and stored to, or <tt>null</tt>
+     */
+    public S3ETagCache(final int maxSize, File file) {
+        this.file = file;
+        this.eTags = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized String get(String bucketName, String key) {
+        return eTags.get(bucketName + "/" + key);
+    }
+
+    public synchronized void put(String bucketName, String key, String eTag) {
+        eTags.put(bucketName + "/" + key, eTag);
+    }
+
+    public synchronized void remove(String bucketName, String key) {
+        eTags.remove(bucketName + "/" + key);
+    }
+
+    public synchronized int size() {
+        return eTags.size();
+    }
+
+    /**
+     * Loads the ETags stored by a previous run, if there is a file
+     */
+    public synchronized void load() throws IOException {
+        if (file == null || !file.exists()) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        for (String name : properties.stringPropertyNames()) {
+            eTags.put(name, properties.getProperty(name));
+        }
+
+        LOG.debug("Loaded {} ETags from [{}]", eTags.size(), file);
+    }
+
+    /**
+     * Stores the ETags for the next run, if there is a file
+     */
+    public synchronized void store() throws IOException {
+        if (file == null) {
+            return;
+        }
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+
+        Properties properties = new Properties();
+        properties.putAll(eTags);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+
+        LOG.debug("Stored {} ETags to [{}]", eTags.size(), file);
+    }
+}
@@ -25,14 +25,19 @@ import com.amazonaws.services.s3.model.Bucket;
 import com.amazonaws.services.s3.model.CreateBucketRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.sqs.AmazonSQSClient;
 
 import org.apache.camel.CamelContext;
 import org.apache.camel.Consumer;
 import org.apache.camel.Exchange;
 import org.apache.camel.ExchangePattern;
+import org.apache.camel.Expression;
 import org.apache.camel.Message;
 import org.apache.camel.Processor;
 import org.apache.camel.Producer;
+import org.apache.camel.component.aws.s3.support.S3HashPrefix;
+import org.apache.camel.component.aws.s3.support.S3LazyContent;
 import org.apache.camel.impl.DefaultExchange;
 import org.apache.camel.impl.ScheduledPollEndpoint;
 import org.slf4j.Logger;
@@ -47,8 +52,10 @@ public class S3Endpoint extends ScheduledPollEndpoint {
     private static final Logger LOG = LoggerFactory.getLogger(S3Endpoint.class);
 
     private AmazonS3Client s3Client;
+    private AmazonSQSClient sqsClient;
     private S3Configuration configuration;
     private int maxMessagesPerPoll = 10;
+    private Expression hashPrefixExpression;
     
     public S3Endpoint(String uri, CamelContext context, S3Configuration configuration) {
         super(uri, context);
@@ -73,6 +80,14 @@ public class S3Endpoint extends ScheduledPollEndpoint {
     public void doStart() throws Exception {
         super.doStart();
         
+        int hashPrefixLength = getConfiguration().getHashPrefixLength();
+        if (hashPrefixLength < 0 || hashPrefixLength > S3HashPrefix.MAX_LENGTH) {
+            throw new IllegalArgumentException("hashPrefixLength must be between 0 and " + S3HashPrefix.MAX_LENGTH);
+        }
+        if (getConfiguration().getHashPrefixExpression() != null) {
+            hashPrefixExpression = getCamelContext().resolveLanguage("simple").createExpression(getConfiguration().getHashPrefixExpression());
+        }
+        
         String bucketName = getConfiguration().getBucketName();
         LOG.trace("Quering whether bucket [{}] already exists...", bucketName);
         
@@ -115,6 +130,16 @@ public class S3Endpoint extends ScheduledPollEndpoint {
         message.setBody(s3Object.getObjectContent());
         message.setHeader(S3Constants.KEY, s3Object.getKey());
         message.setHeader(S3Constants.BUCKET_NAME, s3Object.getBucketName());
+        setObjectMetadataHeaders(message, objectMetadata);
+        setOriginalKeyHeader(message, s3Object.getKey());
+        
+        return exchange;
+    }
+
+    /**
+     * Maps the metadata of an object to the message headers
+     */
+    public void setObjectMetadataHeaders(Message message, ObjectMetadata objectMetadata) {
         message.setHeader(S3Constants.E_TAG, objectMetadata.getETag());
         message.setHeader(S3Constants.LAST_MODIFIED, objectMetadata.getLastModified());
         message.setHeader(S3Constants.VERSION_ID, objectMetadata.getVersionId());
@@ -124,6 +149,59 @@ public class S3Endpoint extends ScheduledPollEndpoint {
         message.setHeader(S3Constants.CONTENT_ENCODING, objectMetadata.getContentEncoding());
         message.setHeader(S3Constants.CONTENT_DISPOSITION, objectMetadata.getContentDisposition());
         message.setHeader(S3Constants.CACHE_CONTROL, objectMetadata.getCacheControl());
+    }
+
+    /**
+     * Sets the key without the hash prefix as header, if the keys have hash prefixes
+     */
+    public void setOriginalKeyHeader(Message message, String key) {
+        if (getConfiguration().getHashPrefixLength() > 0) {
+            message.setHeader(S3Constants.ORIGINAL_KEY, S3HashPrefix.strip(key, getConfiguration().getHashPrefixLength()));
+        }
+    }
+
+    /**
+     * Prepends the hash prefix to the key, if configured, derived from the key or the <tt>hashPrefixExpression</tt>
+     */
+    public String applyHashPrefix(Exchange exchange, String key) {
+        int length = getConfiguration().getHashPrefixLength();
+        if (length == 0) {
+            return key;
+        }
+        String source = hashPrefixExpression != null ? hashPrefixExpression.evaluate(exchange, String.class) : key;
+        return S3HashPrefix.apply(key, source != null ? source : key, length);
+    }
+
+    /**
+     * Creates the metadata of an uploaded object, which records the key without its hash prefix
+     */
+    public ObjectMetadata createObjectMetadata(String key) {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        if (getConfiguration().getHashPrefixLength() > 0) {
+            objectMetadata.addUserMetadata(S3HashPrefix.ORIGINAL_KEY_METADATA, S3HashPrefix.strip(key, getConfiguration().getHashPrefixLength()));
+        }
+        return objectMetadata;
+    }
+
+    public Exchange createExchange(S3ObjectSummary s3ObjectSummary, S3LazyContent content) {
+        return createExchange(getExchangePattern(), s3ObjectSummary, content);
+    }
+
+    /**
+     * Creates an exchange from the listing of an object, with a body which fetches the object when it's read
+     */
+    public Exchange createExchange(ExchangePattern pattern, S3ObjectSummary s3ObjectSummary, S3LazyContent content) {
+        LOG.trace("Creating exchange for object with key [{}] from bucket [{}]...", s3ObjectSummary.getKey(), s3ObjectSummary.getBucketName());
+        
+        Exchange exchange = new DefaultExchange(this, pattern);
+        Message message = exchange.getIn();
+        message.setBody(content);
+        message.setHeader(S3Constants.KEY, s3ObjectSummary.getKey());
+        message.setHeader(S3Constants.BUCKET_NAME, s3ObjectSummary.getBucketName());
+        message.setHeader(S3Constants.E_TAG, s3ObjectSummary.getETag());
+        message.setHeader(S3Constants.LAST_MODIFIED, s3ObjectSummary.getLastModified());
+        message.setHeader(S3Constants.CONTENT_LENGTH, s3ObjectSummary.getSize());
+        setOriginalKeyHeader(message, s3ObjectSummary.getKey());
         
         return exchange;
     }
@@ -163,6 +241,32 @@ public class S3Endpoint extends ScheduledPollEndpoint {
         return client;
     }
     
+    public void setSQSClient(AmazonSQSClient sqsClient) {
+        this.sqsClient = sqsClient;
+    }
+    
+    /**
+     * @return the client of the queue which receives the bucket notifications
+     */
+    public AmazonSQSClient getSQSClient() {
+        if (sqsClient == null) {
+            sqsClient = configuration.getAmazonSQSClient() != null
+                ? configuration.getAmazonSQSClient() : createSQSClient();
+        }
+        
+        return sqsClient;
+    }
+
+    /**
+     * Provide the possibility to override this method for an mock implementation
+     *
+     * @return AmazonSQSClient
+     */
+    AmazonSQSClient createSQSClient() {
+        AWSCredentials credentials = new BasicAWSCredentials(configuration.getAccessKey(), configuration.getSecretKey());
+        return new AmazonSQSClient(credentials);
+    }
+    
     public int getMaxMessagesPerPoll() {
         return maxMessagesPerPoll;
     }
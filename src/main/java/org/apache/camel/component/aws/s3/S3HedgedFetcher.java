@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.s3.model.S3Object;
+
+import org.apache.camel.component.aws.s3.support.S3ObjectStream;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches objects with hedged requests to cut the latency tail.
+ * <p/>
+ * The fetcher tracks the time until the response of recent GETs has arrived. If a GET takes longer
+ * than the configured percentile of these latencies, an identical GET is issued and whichever answers
+ * first is used, the connection of the other one is aborted. The share of hedged requests is capped by
+ * the configured maximum rate, and no request is hedged until enough latencies have been tracked.
+ */
+public class S3HedgedFetcher {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3HedgedFetcher.class);
+    // the number of recent latencies the percentile is computed from
+    private static final int SAMPLES = 256;
+    // the number of latencies tracked before requests are hedged
+    private static final int MIN_SAMPLES = 20;
+
+    private final S3Endpoint endpoint;
+    private final ExecutorService executorService;
+    private final long[] latencies = new long[SAMPLES];
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedgedRequests = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private int samples;
+
+    public S3HedgedFetcher(S3Endpoint endpoint, ExecutorService executorService) {
+        this.endpoint = endpoint;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Gets the object, hedging the request if it's slower than usual.
+     *
+     * @param bucketName the bucket of the object
+     * @param key the key of the object
+     * @return the object of the request which answered first
+     */
+    public S3Object getObject(String bucketName, String key) throws Exception {
+        requests.incrementAndGet();
+
+        AtomicBoolean answered = new AtomicBoolean();
+        CompletionService<S3Object> completionService = new ExecutorCompletionService<S3Object>(executorService);
+        completionService.submit(new Fetch(bucketName, key, answered, false));
+        int pending = 1;
+
+        long threshold = getThreshold();
+        Future<S3Object> future = threshold >= 0 ? completionService.poll(threshold, TimeUnit.MILLISECONDS) : null;
+        if (future == null && threshold >= 0 && isHedgeAllowed()) {
+            LOG.trace("Hedging GET of object [{}] after {} ms", key, threshold);
+
+            hedgedRequests.incrementAndGet();
+            completionService.submit(new Fetch(bucketName, key, answered, true));
+            pending++;
+        }
+
+        Exception failure = null;
+        while (pending > 0) {
+            if (future == null) {
+                future = completionService.take();
+            }
+            pending--;
+            try {
+                S3Object answer = future.get();
+                if (answer != null) {
+                    return answer;
+                }
+            } catch (ExecutionException e) {
+                // the other request may still succeed
+                failure = e;
+            }
+            future = null;
+        }
+
+        // rethrow the failure unchanged, so callers can still tell a missing object by its status code
+        if (failure.getCause() instanceof Exception) {
+            throw (Exception) failure.getCause();
+        }
+        throw ObjectHelper.wrapRuntimeCamelException(failure.getCause());
+    }
+
+    /**
+     * @return the latency after which a request is hedged, or -1 if too few latencies have been tracked
+     */
+    protected synchronized long getThreshold() {
+        if (samples < MIN_SAMPLES) {
+            return -1;
+        }
+
+        int count = Math.min(samples, SAMPLES);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(endpoint.getConfiguration().getHedgePercentile() / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    private synchronized void track(long latency) {
+        latencies[samples++ % SAMPLES] = latency;
+    }
+
+    private boolean isHedgeAllowed() {
+        return hedgedRequests.get() < requests.get() * endpoint.getConfiguration().getHedgeMaxRate();
+    }
+
+    /**
+     * @return the number of requests which were hedged
+     */
+    public long getHedgedRequests() {
+        return hedgedRequests.get();
+    }
+
+    /**
+     * @return the number of hedged requests which answered before the original request
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * A GET which returns its object only if it answers first, otherwise the object is aborted
+     */
+    private final class Fetch implements Callable<S3Object> {
+        private final String bucketName;
+        private final String key;
+        private final AtomicBoolean answered;
+        private final boolean hedge;
+
+        Fetch(String bucketName, String key, AtomicBoolean answered, boolean hedge) {
+            this.bucketName = bucketName;
+            this.key = key;
+            this.answered = answered;
+            this.hedge = hedge;
+        }
+
+        public S3Object call() throws Exception {
+            long start = System.currentTimeMillis();
+            S3Object s3Object = endpoint.getS3Client().getObject(bucketName, key);
+            track(System.currentTimeMillis() - start);
+
+            if (!answered.compareAndSet(false, true)) {
+                LOG.trace("Aborting the slower GET of object [{}]", key);
+                abort(s3Object);
+                return null;
+            }
+            if (hedge) {
+                hedgeWins.incrementAndGet();
+            }
+            return s3Object;
+        }
+
+        private void abort(S3Object s3Object) {
+            if (s3Object == null || s3Object.getObjectContent() == null) {
+                return;
+            }
+            try {
+                new S3ObjectStream(s3Object.getObjectContent(), s3Object.getObjectMetadata().getContentLength()).abort();
+            } catch (IOException e) {
+                LOG.debug("Error aborting the slower GET of object [" + key + "]", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,390 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import org.apache.camel.component.aws.s3.support.S3HashPrefix;
+import org.apache.camel.component.aws.support.JsonReader;
+import org.apache.camel.converter.IOConverter;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the objects of a bucket from an S3 inventory instead of listing them.
+ * <p/>
+ * The <tt>manifest.json</tt> of the inventory names its CSV data files, which are read in parallel as
+ * streams, row by row. The rows are filtered on their columns before the objects are handed out, so
+ * filtered objects are never fetched. The accepted objects are buffered in a bounded queue, which holds
+ * back the readers while the consumer is busy.
+ */
+public class S3InventoryReader {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3InventoryReader.class);
+    // the maximum number of accepted objects buffered for the consumer
+    private static final int QUEUE_SIZE = 10000;
+    // how long a poll waits for the readers to find objects
+    private static final long POLL_TIMEOUT = 1000;
+    private static final String[] DATE_PATTERNS = {"yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", "yyyy-MM-dd'T'HH:mm:ss'Z'", "yyyy-MM-dd"};
+
+    private final S3Endpoint endpoint;
+    private final S3ShardedLister lister;
+    private final ExecutorService executorService;
+    private final BlockingQueue<S3ObjectSummary> queue = new LinkedBlockingQueue<S3ObjectSummary>(QUEUE_SIZE);
+    private final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong acceptedRows = new AtomicLong();
+    private Date modifiedAfter;
+    private Date modifiedBefore;
+    private Set<String> storageClasses;
+    private volatile boolean stopped;
+
+    /**
+     * @param lister the lister whose filters apply to the objects of the inventory too
+     * @param executorService the executor service reading the data files
+     */
+    public S3InventoryReader(S3Endpoint endpoint, S3ShardedLister lister, ExecutorService executorService) {
+        this.endpoint = endpoint;
+        this.lister = lister;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Reads the manifest and starts reading its data files.
+     */
+    @SuppressWarnings("unchecked")
+    public void start() throws Exception {
+        S3Configuration configuration = endpoint.getConfiguration();
+        if (configuration.getInventoryModifiedAfter() != null) {
+            modifiedAfter = parseDate(configuration.getInventoryModifiedAfter());
+        }
+        if (configuration.getInventoryModifiedBefore() != null) {
+            modifiedBefore = parseDate(configuration.getInventoryModifiedBefore());
+        }
+        if (configuration.getInventoryStorageClasses() != null) {
+            storageClasses = new HashSet<String>();
+            for (String storageClass : configuration.getInventoryStorageClasses().split(",")) {
+                storageClasses.add(storageClass.trim());
+            }
+        }
+
+        String bucketName = configuration.getInventoryBucketName() != null ? configuration.getInventoryBucketName() : configuration.getBucketName();
+        String manifestKey = configuration.getInventoryManifestKey();
+
+        LOG.debug("Reading inventory manifest [{}] in bucket [{}]...", manifestKey, bucketName);
+
+        S3Object manifestObject = endpoint.getS3Client().getObject(bucketName, manifestKey);
+        Map<String, Object> manifest;
+        try {
+            manifest = asMap(new JsonReader(IOConverter.toString(manifestObject.getObjectContent(), null)).readValue());
+        } finally {
+            manifestObject.getObjectContent().close();
+        }
+
+        if (manifest.get("fileFormat") != null && !"CSV".equals(manifest.get("fileFormat"))) {
+            throw new IllegalArgumentException("Unsupported inventory format: " + manifest.get("fileFormat"));
+        }
+        if (!(manifest.get("fileSchema") instanceof String) || !(manifest.get("files") instanceof List)) {
+            throw new IllegalArgumentException("Expected a fileSchema and files in the inventory manifest " + manifestKey);
+        }
+
+        final Map<String, Integer> columns = new HashMap<String, Integer>();
+        String[] names = ((String) manifest.get("fileSchema")).split(",");
+        for (int index = 0; index < names.length; index++) {
+            columns.put(names[index].trim(), index);
+        }
+        if (!columns.containsKey("Key")) {
+            throw new IllegalArgumentException("No Key column in the inventory manifest " + manifestKey);
+        }
+
+        // the data files are delivered to the destination bucket of the inventory, next to the manifest
+        String destinationBucket = (String) manifest.get("destinationBucket");
+        final String filesBucketName = destinationBucket != null ? destinationBucket.substring(destinationBucket.lastIndexOf(':') + 1) : bucketName;
+
+        for (Object file : (List<Object>) manifest.get("files")) {
+            final String fileKey = (String) asMap(file).get("key");
+            futures.add(executorService.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    readFile(filesBucketName, fileKey, columns);
+                    return null;
+                }
+            }));
+        }
+
+        LOG.debug("Reading {} data files of inventory manifest [{}]", futures.size(), manifestKey);
+    }
+
+    /**
+     * Takes the next accepted objects, waiting a moment for the readers if there are none yet.
+     *
+     * @param maxKeys the maximum number of returned objects, or 0 for no limit
+     * @return the accepted objects, empty once the inventory has been read completely
+     */
+    public List<S3ObjectSummary> poll(int maxKeys) throws Exception {
+        List<S3ObjectSummary> answer = new ArrayList<S3ObjectSummary>();
+        S3ObjectSummary first = queue.poll();
+        if (first == null && !isReadersDone()) {
+            first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        if (first == null) {
+            checkReaders();
+            return answer;
+        }
+
+        answer.add(first);
+        queue.drainTo(answer, maxKeys > 0 ? maxKeys - 1 : Integer.MAX_VALUE);
+        return answer;
+    }
+
+    /**
+     * @return whether all objects of the inventory have been handed out
+     */
+    public boolean isCompleted() {
+        return isReadersDone() && queue.isEmpty();
+    }
+
+    public void stop() {
+        stopped = true;
+        for (Future<Void> future : futures) {
+            future.cancel(true);
+        }
+        queue.clear();
+    }
+
+    private boolean isReadersDone() {
+        for (Future<Void> future : futures) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fails the poll if a reader failed
+     */
+    private void checkReaders() throws Exception {
+        for (Future<Void> future : futures) {
+            if (future.isDone() && !future.isCancelled()) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw ObjectHelper.wrapRuntimeCamelException(e.getCause());
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the rows of the data file into the queue
+     */
+    protected void readFile(String bucketName, String key, Map<String, Integer> columns) throws Exception {
+        LOG.trace("Reading inventory data file [{}]...", key);
+
+        S3Object s3Object = endpoint.getS3Client().getObject(bucketName, key);
+        InputStream in = s3Object.getObjectContent();
+        try {
+            if (key.endsWith(".gz")) {
+                in = new GZIPInputStream(in);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+
+            long accepted = 0;
+            String line;
+            while (!stopped && (line = reader.readLine()) != null) {
+                if (line.length() == 0) {
+                    continue;
+                }
+                rows.incrementAndGet();
+
+                S3ObjectSummary summary = createSummary(parseLine(line), columns);
+                if (summary != null && accept(summary)) {
+                    queue.put(summary);
+                    accepted++;
+                }
+            }
+
+            acceptedRows.addAndGet(accepted);
+            LOG.debug("Read inventory data file [{}] with {} accepted objects", key, accepted);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the object of the row, or <tt>null</tt> for delete markers and old versions
+     */
+    private S3ObjectSummary createSummary(List<String> values, Map<String, Integer> columns) throws ParseException {
+        if ("true".equals(column(values, columns, "IsDeleteMarker")) || "false".equals(column(values, columns, "IsLatest"))) {
+            return null;
+        }
+
+        S3ObjectSummary summary = new S3ObjectSummary();
+        String bucketName = column(values, columns, "Bucket");
+        summary.setBucketName(bucketName != null ? bucketName : endpoint.getConfiguration().getBucketName());
+        summary.setKey(decodeKey(column(values, columns, "Key")));
+        summary.setETag(column(values, columns, "ETag"));
+        summary.setStorageClass(column(values, columns, "StorageClass"));
+        String size = column(values, columns, "Size");
+        if (size != null && size.length() > 0) {
+            summary.setSize(Long.parseLong(size));
+        }
+        String lastModified = column(values, columns, "LastModifiedDate");
+        if (lastModified != null && lastModified.length() > 0) {
+            summary.setLastModified(parseDate(lastModified));
+        }
+        return summary;
+    }
+
+    /**
+     * Whether the object passes the filters of the inventory and of the listing
+     */
+    protected boolean accept(S3ObjectSummary summary) {
+        String prefix = endpoint.getConfiguration().getPrefix();
+        if (!endpoint.getConfiguration().getBucketName().equals(summary.getBucketName())) {
+            return false;
+        }
+        if (prefix != null && !S3HashPrefix.strip(summary.getKey(), endpoint.getConfiguration().getHashPrefixLength()).startsWith(prefix)) {
+            return false;
+        }
+        Date lastModified = summary.getLastModified();
+        if (modifiedAfter != null && (lastModified == null || !lastModified.after(modifiedAfter))) {
+            return false;
+        }
+        if (modifiedBefore != null && (lastModified == null || !lastModified.before(modifiedBefore))) {
+            return false;
+        }
+        if (storageClasses != null && !storageClasses.contains(summary.getStorageClass())) {
+            return false;
+        }
+        return lister.accept(summary);
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index != null && index < values.size() ? values.get(index) : null;
+    }
+
+    /**
+     * Splits a CSV line, whose values may be quoted with doubled quotes inside
+     */
+    static List<String> parseLine(String line) {
+        List<String> answer = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int index = 0; index < line.length(); index++) {
+            char c = line.charAt(index);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (index + 1 < line.length() && line.charAt(index + 1) == '"') {
+                    value.append(c);
+                    index++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                answer.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        answer.add(value.toString());
+        return answer;
+    }
+
+    /**
+     * The keys in inventories are URL encoded
+     */
+    private static String decodeKey(String key) {
+        try {
+            return URLDecoder.decode(key, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses the UTC dates of the inventory and of the filter options
+     */
+    static Date parseDate(String text) throws ParseException {
+        for (String pattern : DATE_PATTERNS) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            format.setLenient(false);
+            try {
+                return format.parse(text);
+            } catch (ParseException e) {
+                // try the next pattern
+            }
+        }
+        throw new ParseException("Unparseable date: " + text, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object in the inventory manifest, but was " + value);
+        }
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * @return the number of rows read from the data files
+     */
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * @return the number of rows which passed the filters, of the completely read data files
+     */
+    public long getAcceptedRows() {
+        return acceptedRows.get();
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * A key layout partitioned by time, such as <tt>logs/{yyyy}/{MM}/{dd}/{HH}/</tt>, in which each
+ * placeholder is a {@link SimpleDateFormat} pattern. The smallest unit of the placeholders is the
+ * length of a partition, the expanded template the prefix of its keys.
+ */
+public class S3KeyTemplate {
+
+    private final List<Object> parts = new ArrayList<Object>();
+    private final TimeZone timeZone;
+    private final int unit;
+
+    /**
+     * @param template the key template, with at least one placeholder
+     * @param timeZone the time zone of the partitions
+     */
+    public S3KeyTemplate(String template, TimeZone timeZone) {
+        this.timeZone = timeZone;
+
+        int unit = -1;
+        int index = 0;
+        while (index < template.length()) {
+            int start = template.indexOf('{', index);
+            if (start < 0) {
+                parts.add(template.substring(index));
+                break;
+            }
+            int end = template.indexOf('}', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in key template: " + template);
+            }
+
+            if (start > index) {
+                parts.add(template.substring(index, start));
+            }
+            String pattern = template.substring(start + 1, end);
+            SimpleDateFormat format = new SimpleDateFormat(pattern);
+            format.setTimeZone(timeZone);
+            parts.add(format);
+            unit = Math.max(unit, unitOf(pattern));
+            index = end + 1;
+        }
+
+        if (unit < 0) {
+            throw new IllegalArgumentException("No date placeholder in key template: " + template);
+        }
+        this.unit = unit;
+    }
+
+    /**
+     * The calendar field of the smallest unit in the pattern, the fields growing smaller with their value
+     */
+    private static int unitOf(String pattern) {
+        int unit = -1;
+        for (char letter : pattern.toCharArray()) {
+            switch (letter) {
+            case 'y':
+                unit = Math.max(unit, Calendar.YEAR);
+                break;
+            case 'M':
+                unit = Math.max(unit, Calendar.MONTH);
+                break;
+            case 'd':
+            case 'D':
+                unit = Math.max(unit, Calendar.DAY_OF_MONTH);
+                break;
+            case 'H':
+            case 'k':
+                unit = Math.max(unit, Calendar.HOUR_OF_DAY);
+                break;
+            case 'm':
+                unit = Math.max(unit, Calendar.MINUTE);
+                break;
+            default:
+                break;
+            }
+        }
+        return unit;
+    }
+
+    /**
+     * @return the start of the partition the time falls in
+     */
+    public long partitionStart(long time) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.set(Calendar.SECOND, 0);
+        if (unit < Calendar.MINUTE) {
+            calendar.set(Calendar.MINUTE, 0);
+        }
+        if (unit < Calendar.HOUR_OF_DAY) {
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+        }
+        if (unit < Calendar.DAY_OF_MONTH) {
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+        }
+        if (unit < Calendar.MONTH) {
+            calendar.set(Calendar.MONTH, Calendar.JANUARY);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @return the start of the partition following the one starting at the given time
+     */
+    public long nextPartitionStart(long partitionStart) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(partitionStart);
+        calendar.add(unit, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @return the key prefix of the partition the time falls in
+     */
+    public String expand(long time) {
+        Date date = new Date(time);
+        StringBuilder answer = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof SimpleDateFormat) {
+                // the formats are not thread-safe
+                synchronized (part) {
+                    answer.append(((SimpleDateFormat) part).format(date));
+                }
+            } else {
+                answer.append(part);
+            }
+        }
+        return answer.toString();
+    }
+}
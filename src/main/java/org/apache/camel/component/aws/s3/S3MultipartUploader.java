@@ -0,0 +1,330 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uploads large bodies as a multipart upload whose parts are sent in parallel.
+ * <p/>
+ * Streams of unknown length are cut into parts of a fixed size, so they are never held in
+ * memory as a whole.
+ * <p/>
+ * Every part is retried on its own, so a failure near the end of a large upload doesn't
+ * restart the transfer. If a part fails for good, the multipart upload is aborted, so no
+ * incomplete parts are left behind in the bucket.
+ * <p/>
+ * S3 accepts at most {@link #MAX_PARTS} parts of at least {@link #MIN_PART_SIZE} bytes, except the last one.
+ */
+public class S3MultipartUploader {
+
+    /** The minimum size of all parts but the last one */
+    public static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+    /** The maximum number of parts of an upload */
+    public static final int MAX_PARTS = 10000;
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3MultipartUploader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final S3Endpoint endpoint;
+    private final ExecutorService executorService;
+
+    public S3MultipartUploader(S3Endpoint endpoint, ExecutorService executorService) {
+        this.endpoint = endpoint;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Whether a body of the given length is large enough to be uploaded in parts
+     */
+    public boolean isMultipartUpload(long length) {
+        long threshold = getConfiguration().getMultipartUploadThreshold();
+        return threshold > 0 && length >= threshold;
+    }
+
+    /**
+     * Uploads the file in parts read directly from the file. The parts are made larger than
+     * <tt>uploadPartSize</tt> if the file would need more than {@link #MAX_PARTS} parts otherwise.
+     *
+     * @param key the key of the object
+     * @param file the file to upload
+     * @param objectMetadata the metadata of the object
+     * @return the result with the ETag and version id of the object
+     */
+    public PutObjectResult upload(final String key, final File file, ObjectMetadata objectMetadata) throws Exception {
+        final String bucketName = getConfiguration().getBucketName();
+        final String uploadId = initiate(key, objectMetadata);
+        long length = file.length();
+        long partSize = Math.max(getConfiguration().getUploadPartSize(), (length + MAX_PARTS - 1) / MAX_PARTS);
+
+        LOG.trace("Uploading file [{}] with {} bytes in parts of {} bytes...", new Object[]{file, length, partSize});
+
+        try {
+            List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+            int partNumber = 1;
+            for (long offset = 0; offset < length || partNumber == 1; offset += partSize) {
+                final UploadPartRequest uploadPartRequest = new UploadPartRequest()
+                    .withBucketName(bucketName)
+                    .withKey(key)
+                    .withUploadId(uploadId)
+                    .withPartNumber(partNumber++)
+                    .withFile(file)
+                    .withFileOffset(offset)
+                    .withPartSize(Math.min(partSize, length - offset));
+                futures.add(executorService.submit(new Callable<PartETag>() {
+                    public PartETag call() throws Exception {
+                        return uploadPart(uploadPartRequest);
+                    }
+                }));
+            }
+
+            List<PartETag> partETags = await(futures);
+            return complete(key, uploadId, partETags);
+        } catch (Exception e) {
+            abort(key, uploadId);
+            throw e;
+        }
+    }
+
+    /**
+     * Uploads the stream in parts of <tt>uploadPartSize</tt> bytes, without knowing its length up front.
+     * A stream which fits into one part is uploaded with a single put instead.
+     * <p/>
+     * At most <tt>uploadPoolSize</tt> parts are held in memory at any time, the reading of the
+     * stream waits until a part has been uploaded. So the heap used by an upload is bounded by
+     * <tt>uploadPartSize * uploadPoolSize</tt>, whatever the length of the stream. The upload fails
+     * as soon as the stream has more bytes than fit into {@link #MAX_PARTS} parts.
+     *
+     * @param key the key of the object
+     * @param in the stream to upload
+     * @param objectMetadata the metadata of the object
+     * @return the result with the ETag and version id of the object
+     */
+    public PutObjectResult upload(final String key, InputStream in, ObjectMetadata objectMetadata) throws Exception {
+        final String bucketName = getConfiguration().getBucketName();
+        long partSize = getConfiguration().getUploadPartSize();
+        if (partSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("uploadPartSize must not exceed " + Integer.MAX_VALUE + " bytes to upload streams");
+        }
+
+        byte[] chunk = readChunk(in, (int) partSize);
+        if (chunk.length < partSize) {
+            LOG.trace("Stream fits into one part, putting object [{}] with {} bytes", key, chunk.length);
+
+            objectMetadata.setContentLength(chunk.length);
+            return endpoint.getS3Client().putObject(new PutObjectRequest(bucketName, key, new ByteArrayInputStream(chunk), objectMetadata));
+        }
+
+        final String uploadId = initiate(key, objectMetadata);
+        final Semaphore buffers = new Semaphore(Math.max(1, getConfiguration().getUploadPoolSize()));
+        buffers.acquire();
+
+        List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+        try {
+            int partNumber = 1;
+            while (chunk.length > 0) {
+                final UploadPartRequest uploadPartRequest = new UploadPartRequest()
+                    .withBucketName(bucketName)
+                    .withKey(key)
+                    .withUploadId(uploadId)
+                    .withPartNumber(partNumber++)
+                    .withInputStream(new ByteArrayInputStream(chunk))
+                    .withPartSize(chunk.length);
+                futures.add(executorService.submit(new Callable<PartETag>() {
+                    public PartETag call() throws Exception {
+                        try {
+                            return uploadPart(uploadPartRequest);
+                        } finally {
+                            buffers.release();
+                        }
+                    }
+                }));
+
+                if (chunk.length < partSize) {
+                    break;
+                }
+
+                // wait for a free buffer, but stop reading as soon as a part failed for good
+                buffers.acquire();
+                checkFailures(futures);
+                chunk = readChunk(in, (int) partSize);
+                if (chunk.length == 0) {
+                    buffers.release();
+                } else if (partNumber > MAX_PARTS) {
+                    throw new IllegalStateException("The stream uploaded to " + key + " exceeds " + MAX_PARTS
+                        + " parts of " + partSize + " bytes, increase uploadPartSize");
+                }
+            }
+
+            List<PartETag> partETags = await(futures);
+            return complete(key, uploadId, partETags);
+        } catch (Exception e) {
+            for (Future<PartETag> future : futures) {
+                future.cancel(true);
+            }
+            abort(key, uploadId);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads up to <tt>size</tt> bytes, the buffer only grows to the full size if the stream has enough bytes
+     */
+    protected byte[] readChunk(InputStream in, int size) throws IOException {
+        byte[] buffer = new byte[Math.min(size, BUFFER_SIZE)];
+        int count = 0;
+        while (count < size) {
+            if (count == buffer.length) {
+                buffer = copyOf(buffer, (int) Math.min((long) buffer.length * 2, size));
+            }
+            int read = in.read(buffer, count, buffer.length - count);
+            if (read < 0) {
+                break;
+            }
+            count += read;
+        }
+        return count == buffer.length ? buffer : copyOf(buffer, count);
+    }
+
+    private static byte[] copyOf(byte[] buffer, int length) {
+        byte[] answer = new byte[length];
+        System.arraycopy(buffer, 0, answer, 0, Math.min(buffer.length, length));
+        return answer;
+    }
+
+    private void checkFailures(List<Future<PartETag>> futures) throws InterruptedException {
+        for (Future<PartETag> future : futures) {
+            if (future.isDone()) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw ObjectHelper.wrapRuntimeCamelException(e.getCause());
+                }
+            }
+        }
+    }
+
+    protected String initiate(String key, ObjectMetadata objectMetadata) {
+        InitiateMultipartUploadRequest initiateRequest = new InitiateMultipartUploadRequest(getConfiguration().getBucketName(), key);
+        initiateRequest.setObjectMetadata(objectMetadata);
+
+        String uploadId = endpoint.getS3Client().initiateMultipartUpload(initiateRequest).getUploadId();
+        LOG.trace("Initiated multipart upload [{}] of object [{}]", uploadId, key);
+        return uploadId;
+    }
+
+    /**
+     * Uploads one part, retrying it on its own when it fails
+     */
+    protected PartETag uploadPart(UploadPartRequest uploadPartRequest) throws IOException {
+        int attempts = 0;
+        while (true) {
+            try {
+                if (attempts > 0 && uploadPartRequest.getInputStream() != null) {
+                    // parts read from a stream are held in memory and sent again from their start
+                    uploadPartRequest.getInputStream().reset();
+                }
+                PartETag partETag = endpoint.getS3Client().uploadPart(uploadPartRequest).getPartETag();
+                LOG.trace("Uploaded part {} of object [{}]", uploadPartRequest.getPartNumber(), uploadPartRequest.getKey());
+                return partETag;
+            } catch (AmazonClientException e) {
+                if (attempts++ >= getConfiguration().getUploadPartRetries()) {
+                    throw e;
+                }
+                LOG.debug("Retrying part " + uploadPartRequest.getPartNumber() + " of object [" + uploadPartRequest.getKey() + "] after failure", e);
+            }
+        }
+    }
+
+    protected List<PartETag> await(List<Future<PartETag>> futures) throws InterruptedException {
+        List<PartETag> partETags = new ArrayList<PartETag>(futures.size());
+        try {
+            for (Future<PartETag> future : futures) {
+                partETags.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            for (Future<PartETag> future : futures) {
+                future.cancel(true);
+            }
+            throw ObjectHelper.wrapRuntimeCamelException(e.getCause());
+        }
+        return partETags;
+    }
+
+    protected PutObjectResult complete(String key, String uploadId, List<PartETag> partETags) {
+        String bucketName = getConfiguration().getBucketName();
+        Collections.sort(partETags, new Comparator<PartETag>() {
+            public int compare(PartETag partETag1, PartETag partETag2) {
+                return partETag1.getPartNumber() - partETag2.getPartNumber();
+            }
+        });
+
+        CompleteMultipartUploadResult completeResult = endpoint.getS3Client().completeMultipartUpload(
+                new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+
+        LOG.trace("Completed multipart upload [{}] of object [{}] with {} parts", new Object[]{uploadId, key, partETags.size()});
+
+        PutObjectResult putObjectResult = new PutObjectResult();
+        putObjectResult.setETag(completeResult.getETag());
+        // the completion doesn't return the version id, so it's taken from the object if it's still the uploaded one
+        ObjectMetadata objectMetadata = endpoint.getS3Client().getObjectMetadata(bucketName, key);
+        if (objectMetadata != null && ObjectHelper.equal(completeResult.getETag(), objectMetadata.getETag())) {
+            putObjectResult.setVersionId(objectMetadata.getVersionId());
+        }
+        return putObjectResult;
+    }
+
+    protected void abort(String key, String uploadId) {
+        LOG.debug("Aborting multipart upload [{}] of object [{}]", uploadId, key);
+        try {
+            endpoint.getS3Client().abortMultipartUpload(new AbortMultipartUploadRequest(getConfiguration().getBucketName(), key, uploadId));
+        } catch (AmazonClientException e) {
+            LOG.warn("Cannot abort multipart upload [" + uploadId + "] of object [" + key + "]", e);
+        }
+    }
+
+    private S3Configuration getConfiguration() {
+        return endpoint.getConfiguration();
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.services.s3.model.BucketNotificationConfiguration;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.sqs.model.CreateQueueRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+
+import org.apache.camel.component.aws.s3.support.S3EventParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives the objects created in a bucket from the notifications delivered to a queue, so new objects
+ * are found without listing the bucket.
+ * <p/>
+ * A message is deleted from the queue once all the objects it reports are committed. If an object is
+ * rolled back, its message becomes visible again after the visibility timeout of the queue.
+ */
+public class S3NotificationReceiver {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3NotificationReceiver.class);
+    // the maximum number of messages SQS returns with one receive
+    private static final int MAX_MESSAGES = 10;
+    private static final String OBJECT_CREATED_EVENT = "s3:ObjectCreated:*";
+
+    private final S3Endpoint endpoint;
+    private String queueUrl;
+
+    public S3NotificationReceiver(S3Endpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Creates the queue if it doesn't exist yet, and configures the bucket to publish its
+     * object-created events to the configured topic, if there is one.
+     */
+    public void start() {
+        S3Configuration configuration = endpoint.getConfiguration();
+
+        // creates a new queue, or returns the URL of an existing one
+        queueUrl = endpoint.getSQSClient().createQueue(new CreateQueueRequest(configuration.getNotificationQueueName())).getQueueUrl();
+
+        LOG.trace("Receiving notifications of bucket [{}] from queue [{}]", configuration.getBucketName(), queueUrl);
+
+        if (configuration.getNotificationTopicArn() != null) {
+            configureBucket(configuration.getBucketName(), configuration.getNotificationTopicArn());
+        }
+    }
+
+    /**
+     * Adds the topic to the notification configuration of the bucket, keeping the topics which are configured already,
+     * as the configuration is replaced as a whole.
+     */
+    private void configureBucket(String bucketName, String topicArn) {
+        List<BucketNotificationConfiguration.TopicConfiguration> topicConfigurations = new ArrayList<BucketNotificationConfiguration.TopicConfiguration>();
+        BucketNotificationConfiguration existing = endpoint.getS3Client().getBucketNotificationConfiguration(bucketName);
+        if (existing != null && existing.getTopicConfigurations() != null) {
+            topicConfigurations.addAll(existing.getTopicConfigurations());
+        }
+
+        for (BucketNotificationConfiguration.TopicConfiguration topicConfiguration : topicConfigurations) {
+            if (topicArn.equals(topicConfiguration.getTopicARN()) && OBJECT_CREATED_EVENT.equals(topicConfiguration.getEvent())) {
+                LOG.trace("Bucket [{}] already publishes to topic [{}]", bucketName, topicArn);
+                return;
+            }
+        }
+
+        LOG.trace("Configuring bucket [{}] to publish to topic [{}]...", bucketName, topicArn);
+
+        topicConfigurations.add(new BucketNotificationConfiguration.TopicConfiguration(topicArn, OBJECT_CREATED_EVENT));
+        endpoint.getS3Client().setBucketNotificationConfiguration(bucketName, new BucketNotificationConfiguration(topicConfigurations));
+    }
+
+    /**
+     * Receives the notifications of created objects.
+     *
+     * @param maxMessages the maximum number of messages received
+     * @return the notifications, each with the objects one message reports
+     */
+    public List<Notification> receive(int maxMessages) {
+        List<Notification> answer = new ArrayList<Notification>();
+        boolean more = true;
+        while (more && answer.size() < maxMessages) {
+            ReceiveMessageRequest receiveMessageRequest = new ReceiveMessageRequest(queueUrl);
+            receiveMessageRequest.setMaxNumberOfMessages(Math.min(MAX_MESSAGES, maxMessages - answer.size()));
+
+            List<Message> messages = endpoint.getSQSClient().receiveMessage(receiveMessageRequest).getMessages();
+            for (Message message : messages) {
+                List<S3ObjectSummary> summaries;
+                try {
+                    summaries = S3EventParser.parseCreatedObjects(message.getBody());
+                } catch (IllegalArgumentException e) {
+                    // it would be received over and over again
+                    LOG.warn("Deleting message [" + message.getMessageId() + "] which isn't a bucket notification", e);
+                    delete(message.getReceiptHandle());
+                    continue;
+                }
+                answer.add(new Notification(message.getReceiptHandle(), summaries));
+            }
+            more = messages.size() == MAX_MESSAGES;
+        }
+        return answer;
+    }
+
+    private void delete(String receiptHandle) {
+        endpoint.getSQSClient().deleteMessage(new DeleteMessageRequest(queueUrl, receiptHandle));
+    }
+
+    public String getQueueUrl() {
+        return queueUrl;
+    }
+
+    /**
+     * The objects reported by one message, which is deleted when all of them are committed
+     */
+    public final class Notification {
+        private final String receiptHandle;
+        private final List<S3ObjectSummary> summaries;
+        private final AtomicInteger pending;
+
+        Notification(String receiptHandle, List<S3ObjectSummary> summaries) {
+            this.receiptHandle = receiptHandle;
+            this.summaries = summaries;
+            this.pending = new AtomicInteger(summaries.size());
+        }
+
+        public List<S3ObjectSummary> getSummaries() {
+            return summaries;
+        }
+
+        /**
+         * Marks one of the objects as done, deleting the message after the last one
+         */
+        public void commit() {
+            if (pending.decrementAndGet() <= 0) {
+                delete(receiptHandle);
+            }
+        }
+
+        /**
+         * Deletes the message regardless of its objects
+         */
+        public void discard() {
+            pending.set(0);
+            delete(receiptHandle);
+        }
+
+        @Override
+        public String toString() {
+            return "Notification[" + summaries + "]";
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+/**
+ * The operations of the Camel AWS S3 producer, selected by the <tt>operation</tt> option or the
+ * {@link S3Constants#OPERATION} header
+ */
+public interface S3Operations {
+
+    String COPY_OBJECT = "copyObject";
+    String DELETE_OBJECT = "deleteObject";
+    String GET_OBJECT = "getObject";
+    String GET_OBJECT_METADATA = "getObjectMetadata";
+    String LIST_OBJECTS = "listObjects";
+    String PUT_OBJECT = "putObject";
+    String SYNC = "sync";
+}
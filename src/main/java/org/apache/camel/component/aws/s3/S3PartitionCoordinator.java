@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.camel.component.aws.lease.LeaseStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Divides the key space of a bucket into hash partitions and coordinates their ownership
+ * between the consumers of a cluster using leases.
+ * <p/>
+ * Every node holds a membership lease and takes its fair share of the partitions. When a node
+ * joins, the others release the partitions above their new fair share at their next rebalance;
+ * when a node leaves or dies, its partition leases are released or expire and are taken over.
+ * <p/>
+ * If the keys carry a hash prefix, a key belongs to the partition of its hash prefix. A node then
+ * only lists the hash prefixes of its own partitions, so the listing cost is divided between the
+ * nodes. Otherwise a key belongs to the partition of its hash code, and every node lists the whole
+ * key space and skips the keys of the other nodes.
+ */
+public class S3PartitionCoordinator {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3PartitionCoordinator.class);
+
+    private final LeaseStore leaseStore;
+    private final String bucketName;
+    private final String nodeId;
+    private final int partitions;
+    private final long leaseDuration;
+    private int hashPrefixLength;
+    private volatile Set<Integer> ownedPartitions = Collections.emptySet();
+
+    public S3PartitionCoordinator(LeaseStore leaseStore, String bucketName, String nodeId, int partitions, long leaseDuration) {
+        this.leaseStore = leaseStore;
+        this.bucketName = bucketName;
+        this.nodeId = nodeId;
+        this.partitions = partitions;
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * Renews the leases of this node and acquires or releases partitions to match its fair share.
+     */
+    public synchronized void rebalance() {
+        leaseStore.tryAcquire(memberLease(), nodeId, leaseDuration);
+
+        Map<String, String> leases = leaseStore.getLeases();
+        int members = 0;
+        for (String name : leases.keySet()) {
+            if (name.startsWith(bucketName + "/member-")) {
+                members++;
+            }
+        }
+        int fairShare = (partitions + Math.max(1, members) - 1) / Math.max(1, members);
+
+        TreeSet<Integer> owned = new TreeSet<Integer>();
+        for (int partition = 0; partition < partitions; partition++) {
+            if (nodeId.equals(leases.get(partitionLease(partition))) && leaseStore.tryAcquire(partitionLease(partition), nodeId, leaseDuration)) {
+                owned.add(partition);
+            }
+        }
+
+        // hand over the partitions above the fair share to the nodes which joined
+        while (owned.size() > fairShare) {
+            Integer partition = owned.pollLast();
+            leaseStore.release(partitionLease(partition), nodeId);
+        }
+
+        for (int partition = 0; partition < partitions && owned.size() < fairShare; partition++) {
+            if (!leases.containsKey(partitionLease(partition)) && leaseStore.tryAcquire(partitionLease(partition), nodeId, leaseDuration)) {
+                owned.add(partition);
+            }
+        }
+
+        if (!owned.equals(ownedPartitions)) {
+            LOG.debug("Node [{}] owns partitions {} of bucket [{}]", new Object[]{nodeId, owned, bucketName});
+        }
+        ownedPartitions = Collections.unmodifiableSet(owned);
+    }
+
+    /**
+     * Releases all leases of this node, so the other nodes can take over its partitions.
+     */
+    public synchronized void releaseAll() {
+        for (Integer partition : ownedPartitions) {
+            leaseStore.release(partitionLease(partition), nodeId);
+        }
+        leaseStore.release(memberLease(), nodeId);
+        ownedPartitions = Collections.emptySet();
+    }
+
+    /**
+     * Whether the object with the given key belongs to a partition owned by this node
+     */
+    public boolean isOwned(String key) {
+        return ownedPartitions.contains(partitionOf(key));
+    }
+
+    /**
+     * Whether the keys with the given hash prefix belong to a partition owned by this node
+     */
+    public boolean isOwnedHashPrefix(String hashPrefix) {
+        return ownedPartitions.contains(Integer.parseInt(hashPrefix.substring(0, hashPrefixLength), 16) % partitions);
+    }
+
+    public int partitionOf(String key) {
+        if (hashPrefixLength > 0 && key.length() > hashPrefixLength && key.charAt(hashPrefixLength) == '/') {
+            try {
+                return Integer.parseInt(key.substring(0, hashPrefixLength), 16) % partitions;
+            } catch (NumberFormatException e) {
+                // not a hash prefix, so the key was written without one
+            }
+        }
+        // String.hashCode is specified, so all nodes agree on the partition
+        return (key.hashCode() & Integer.MAX_VALUE) % partitions;
+    }
+
+    public int getHashPrefixLength() {
+        return hashPrefixLength;
+    }
+
+    /**
+     * Sets the length of the hash prefix of the keys, which assigns the keys to the partitions by their hash prefix
+     */
+    public void setHashPrefixLength(int hashPrefixLength) {
+        this.hashPrefixLength = hashPrefixLength;
+    }
+
+    public Set<Integer> getOwnedPartitions() {
+        return ownedPartitions;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private String memberLease() {
+        return bucketName + "/member-" + nodeId;
+    }
+
+    private String partitionLease(int partition) {
+        return bucketName + "/partition-" + partition;
+    }
+}
@@ -17,18 +17,40 @@
 package org.apache.camel.component.aws.s3;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
 
 import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
 import org.apache.camel.InvalidPayloadException;
 import org.apache.camel.Message;
+import org.apache.camel.component.aws.s3.support.S3Compression;
 import org.apache.camel.impl.DefaultEndpoint;
 import org.apache.camel.impl.DefaultProducer;
+import org.apache.camel.spi.Synchronization;
+import org.apache.camel.util.ServiceHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,37 +61,131 @@ import org.slf4j.LoggerFactory;
 public class S3Producer extends DefaultProducer {
 
     private static final Logger LOG = LoggerFactory.getLogger(S3Producer.class);
+    // the maximum number of keys S3 returns with one listing
+    private static final int MAX_KEYS = 1000;
+
+    private S3MultipartUploader uploader;
+    private ExecutorService uploadExecutorService;
+    private S3CollectionUploader collectionUploader;
+    private ExecutorService collectionUploadExecutorService;
+    private S3WriteBehindQueue writeBehindQueue;
+    private ScheduledExecutorService writeBehindExecutorService;
+    private S3RollingAggregator aggregator;
+    private ScheduledExecutorService aggregationExecutorService;
+    private S3ETagCache eTagCache;
+    private S3ContentCache contentCache;
+    private S3SyncEngine syncEngine;
+    private ExecutorService syncExecutorService;
+    private ExecutorService syncDownloadExecutorService;
 
     public S3Producer(Endpoint endpoint) {
         super(endpoint);
     }
 
     public void process(Exchange exchange) throws Exception {
+        String operation = determineOperation(exchange);
+        if (S3Operations.COPY_OBJECT.equals(operation)) {
+            copyObject(exchange);
+            return;
+        } else if (S3Operations.DELETE_OBJECT.equals(operation)) {
+            deleteObject(exchange);
+            return;
+        } else if (S3Operations.GET_OBJECT.equals(operation)) {
+            getObject(exchange);
+            return;
+        } else if (S3Operations.GET_OBJECT_METADATA.equals(operation)) {
+            getObjectMetadata(exchange);
+            return;
+        } else if (S3Operations.LIST_OBJECTS.equals(operation)) {
+            listObjects(exchange);
+            return;
+        } else if (S3Operations.SYNC.equals(operation)) {
+            sync(exchange);
+            return;
+        } else if (!S3Operations.PUT_OBJECT.equals(operation)) {
+            throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
+
+        if (isCollectionUpload(exchange)) {
+            uploadCollection(exchange);
+            return;
+        }
+
+        if (aggregator != null) {
+            aggregate(exchange);
+            return;
+        }
+        if (writeBehindQueue != null) {
+            journal(exchange);
+            return;
+        }
+        if (eTagCache != null && skipUnchanged(exchange)) {
+            return;
+        }
+
         File sourceFile = exchange.getIn().getBody(File.class);
-        InputStream sourceStream = exchange.getIn().getBody(InputStream.class);
+        InputStream sourceStream = null;
+        if (sourceFile == null) {
+            sourceStream = exchange.getIn().getBody(InputStream.class);
+        }
 
-        final PutObjectRequest putObjectRequest;
+        PutObjectResult putObjectResult;
+        String compression = getConfiguration().getCompression();
 
-        if (sourceFile != null) {
-            putObjectRequest = new PutObjectRequest(
-                    getConfiguration().getBucketName(),
-                    determineKey(exchange),
-                    sourceFile
-            );
-        } else if (sourceStream != null) {
-            putObjectRequest = new PutObjectRequest(
-                    getConfiguration().getBucketName(),
-                    determineKey(exchange),
-                    sourceStream,
-                    new ObjectMetadata()
-            );
+        if (compression != null) {
+            LOG.trace("Upload {} compressed body in parts from exchange [{}]...", compression, exchange);
+
+            InputStream body = sourceFile != null ? new FileInputStream(sourceFile) : sourceStream;
+            if (body == null) {
+                throw new InvalidPayloadException(exchange, InputStream.class);
+            }
+            ObjectMetadata objectMetadata = getEndpoint().createObjectMetadata(determineKey(exchange));
+            objectMetadata.setContentEncoding(compression);
+            try {
+                // the compressed length isn't known up front, so the body is uploaded in chunks
+                putObjectResult = uploader.upload(determineKey(exchange), S3Compression.compress(body, compression), objectMetadata);
+            } finally {
+                body.close();
+            }
+        } else if (sourceFile != null && uploader.isMultipartUpload(sourceFile.length())) {
+            LOG.trace("Upload file [{}] in parts from exchange [{}]...", sourceFile, exchange);
+
+            String key = determineKey(exchange);
+            putObjectResult = uploader.upload(key, sourceFile, getEndpoint().createObjectMetadata(key));
+        } else if (sourceStream != null && !isStreamedPut(exchange)) {
+            LOG.trace("Upload stream in parts from exchange [{}]...", exchange);
+
+            String key = determineKey(exchange);
+            putObjectResult = uploader.upload(key, sourceStream, getEndpoint().createObjectMetadata(key));
         } else {
-            throw new InvalidPayloadException(exchange, InputStream.class);
-        }
+            final PutObjectRequest putObjectRequest;
+
+            if (sourceFile != null) {
+                putObjectRequest = new PutObjectRequest(
+                        getConfiguration().getBucketName(),
+                        determineKey(exchange),
+                        sourceFile
+                );
+                putObjectRequest.setMetadata(getEndpoint().createObjectMetadata(putObjectRequest.getKey()));
+            } else if (sourceStream != null) {
+                // with the content length known up front the stream isn't buffered by the client
+                ObjectMetadata objectMetadata = getEndpoint().createObjectMetadata(determineKey(exchange));
+                objectMetadata.setContentLength(exchange.getIn().getHeader(S3Constants.CONTENT_LENGTH, Long.class));
+
+                putObjectRequest = new PutObjectRequest(
+                        getConfiguration().getBucketName(),
+                        determineKey(exchange),
+                        sourceStream,
+                        objectMetadata
+                );
+            } else {
+                throw new InvalidPayloadException(exchange, InputStream.class);
+            }
 
-        LOG.trace("Put object [{}] from exchange [{}]...", putObjectRequest, exchange);
+            LOG.trace("Put object [{}] from exchange [{}]...", putObjectRequest, exchange);
 
-        PutObjectResult putObjectResult = getEndpoint().getS3Client().putObject(putObjectRequest);
+            putObjectResult = getEndpoint().getS3Client().putObject(putObjectRequest);
+        }
 
         LOG.trace("Received result [{}]", putObjectResult);
 
@@ -81,6 +197,14 @@ public class S3Producer extends DefaultProducer {
             message.setHeader(S3Constants.VERSION_ID, putObjectResult.getVersionId());
         }
 
+        if (compression != null) {
+            message.setHeader(S3Constants.CONTENT_ENCODING, compression);
+        }
+
+        if (eTagCache != null) {
+            eTagCache.put(getConfiguration().getBucketName(), determineKey(exchange), putObjectResult.getETag());
+        }
+
         if (getConfiguration().isDeleteAfterUpload() && (sourceFile != null)) {
             sourceFile.delete();
 
@@ -90,12 +214,420 @@ public class S3Producer extends DefaultProducer {
         }
     }
 
+    /**
+     * Whether the body is a directory or a collection of files, which are uploaded as objects of their own.
+     * Other collections, such as lines of text, are uploaded as the content of one object.
+     */
+    private boolean isCollectionUpload(Exchange exchange) {
+        Object body = exchange.getIn().getBody();
+        if (body instanceof File) {
+            return ((File) body).isDirectory();
+        }
+        if (!(body instanceof Collection) || ((Collection<?>) body).isEmpty()) {
+            return false;
+        }
+        for (Object element : (Collection<?>) body) {
+            if (!(element instanceof File)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Uploads the files of the directory or the collection concurrently, keyed by their relative paths below
+     * the prefix, and sets the ETags of the uploaded objects by key as header. With <tt>skipUnchanged</tt>,
+     * the files which the objects already hold aren't uploaded, and their ETags are set by key as another header.
+     */
+    private void uploadCollection(Exchange exchange) throws Exception {
+        String prefix = exchange.getIn().getHeader(S3Constants.PREFIX, String.class);
+        if (prefix == null) {
+            prefix = getConfiguration().getPrefix();
+        }
+
+        Object body = exchange.getIn().getBody();
+        List<File> roots = new ArrayList<File>();
+        if (body instanceof File) {
+            roots.add((File) body);
+        } else {
+            for (Object element : (Collection<?>) body) {
+                roots.add((File) element);
+            }
+        }
+        Map<String, File> files = body instanceof File
+            ? S3CollectionUploader.listFiles(prefix, (File) body) : S3CollectionUploader.listFiles(prefix, roots);
+
+        Map<String, File> keyedFiles = new LinkedHashMap<String, File>();
+        for (Map.Entry<String, File> entry : files.entrySet()) {
+            keyedFiles.put(getEndpoint().applyHashPrefix(exchange, entry.getKey()), entry.getValue());
+        }
+
+        Map<String, String> unchanged = new LinkedHashMap<String, String>();
+        if (eTagCache != null) {
+            for (Iterator<Map.Entry<String, File>> it = keyedFiles.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, File> entry = it.next();
+                String eTag = getUnchangedETag(entry.getKey(), digest(new FileInputStream(entry.getValue()), null));
+                if (eTag != null) {
+                    LOG.trace("Skip upload of unchanged file [{}]", entry.getValue());
+                    unchanged.put(entry.getKey(), eTag);
+                    it.remove();
+                }
+            }
+        }
+
+        LOG.trace("Upload {} files from exchange [{}]...", keyedFiles.size(), exchange);
+
+        Map<String, String> eTags = collectionUploader.upload(keyedFiles);
+
+        if (eTagCache != null) {
+            for (Map.Entry<String, String> entry : eTags.entrySet()) {
+                eTagCache.put(getConfiguration().getBucketName(), entry.getKey(), entry.getValue());
+            }
+        }
+
+        Message message = getMessageForResponse(exchange);
+        message.setHeader(S3Constants.UPLOADED_OBJECTS, eTags);
+        if (eTagCache != null) {
+            message.setHeader(S3Constants.UNCHANGED_OBJECTS, unchanged);
+        }
+
+        if (getConfiguration().isDeleteAfterUpload()) {
+            for (File file : files.values()) {
+                file.delete();
+            }
+            // the directories are left behind if files have been added to them in the meantime
+            for (File root : roots) {
+                S3CollectionUploader.deleteEmptyDirectories(root);
+            }
+        }
+    }
+
+    /**
+     * Copies the object to the destination key, which may be in another bucket, without transferring its content
+     */
+    private void copyObject(Exchange exchange) {
+        String destinationKey = exchange.getIn().getHeader(S3Constants.DESTINATION_KEY, String.class);
+        if (destinationKey == null) {
+            throw new IllegalArgumentException("AWS S3 Destination Key header missing.");
+        }
+        String destinationBucketName = exchange.getIn().getHeader(S3Constants.DESTINATION_BUCKET_NAME, String.class);
+        if (destinationBucketName == null) {
+            destinationBucketName = getConfiguration().getBucketName();
+        }
+
+        // the destination key gets a hash prefix of its own, so the copy is found where the endpoint expects it
+        CopyObjectRequest copyObjectRequest = new CopyObjectRequest(
+                getConfiguration().getBucketName(),
+                determineKey(exchange),
+                destinationBucketName,
+                getEndpoint().applyHashPrefix(exchange, destinationKey)
+        );
+
+        LOG.trace("Copy object [{}] from exchange [{}]...", copyObjectRequest, exchange);
+
+        CopyObjectResult copyObjectResult = getEndpoint().getS3Client().copyObject(copyObjectRequest);
+
+        LOG.trace("Received result [{}]", copyObjectResult);
+
+        Message message = getMessageForResponse(exchange);
+        message.setHeader(S3Constants.E_TAG, copyObjectResult.getETag());
+        message.setHeader(S3Constants.LAST_MODIFIED, copyObjectResult.getLastModified());
+        if (copyObjectResult.getVersionId() != null) {
+            message.setHeader(S3Constants.VERSION_ID, copyObjectResult.getVersionId());
+        }
+    }
+
+    private void deleteObject(Exchange exchange) {
+        String key = determineKey(exchange);
+
+        LOG.trace("Delete object [{}] from exchange [{}]...", key, exchange);
+
+        getEndpoint().getS3Client().deleteObject(getConfiguration().getBucketName(), key);
+    }
+
+    /**
+     * Syncs the objects below the prefix to the destination bucket or directory, copying only the new and
+     * changed objects, and sets the {@link S3SyncResult} as body
+     */
+    private void sync(Exchange exchange) throws Exception {
+        String prefix = exchange.getIn().getHeader(S3Constants.PREFIX, String.class);
+        if (prefix == null) {
+            prefix = getConfiguration().getPrefix();
+        }
+        String destinationBucketName = exchange.getIn().getHeader(S3Constants.DESTINATION_BUCKET_NAME, String.class);
+        if (destinationBucketName == null) {
+            destinationBucketName = getConfiguration().getSyncDestinationBucketName();
+        }
+        File destinationDirectory = null;
+        if (destinationBucketName == null) {
+            if (getConfiguration().getSyncDirectory() == null) {
+                throw new IllegalArgumentException("The sync operation needs a syncDestinationBucketName or a syncDirectory");
+            }
+            destinationDirectory = new File(getConfiguration().getSyncDirectory());
+        }
+
+        LOG.trace("Sync objects with prefix [{}] from exchange [{}]...", prefix, exchange);
+
+        S3SyncResult result = getSyncEngine().sync(prefix, destinationBucketName, destinationDirectory);
+
+        getMessageForResponse(exchange).setBody(result);
+    }
+
+    private synchronized S3SyncEngine getSyncEngine() {
+        if (syncEngine == null) {
+            // the downloads of the ranges get their own pool, as the sync pool waits for them
+            syncExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+                .newFixedThreadPool(this, "S3SyncEngine", getConfiguration().getSyncPoolSize());
+            syncDownloadExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+                .newFixedThreadPool(this, "S3RangedDownloader", getConfiguration().getDownloadPoolSize());
+            syncEngine = new S3SyncEngine(getEndpoint(), syncExecutorService, new S3RangedDownloader(getEndpoint(), syncDownloadExecutorService));
+        }
+        return syncEngine;
+    }
+
+    /**
+     * Sets the content of the object as body and its metadata as headers, reading through the cache if enabled
+     */
+    private void getObject(Exchange exchange) throws Exception {
+        String key = determineKey(exchange);
+
+        LOG.trace("Get object [{}] from exchange [{}]...", key, exchange);
+
+        S3Object s3Object;
+        if (contentCache != null) {
+            s3Object = contentCache.getObject(key);
+        } else {
+            s3Object = getEndpoint().getS3Client().getObject(getConfiguration().getBucketName(), key);
+        }
+
+        Message message = getMessageForResponse(exchange);
+        message.setBody(s3Object.getObjectContent());
+        getEndpoint().setObjectMetadataHeaders(message, s3Object.getObjectMetadata());
+    }
+
+    /**
+     * Sets the metadata of the object as headers, leaving the body as it is
+     */
+    private void getObjectMetadata(Exchange exchange) {
+        String key = determineKey(exchange);
+
+        LOG.trace("Get metadata of object [{}] from exchange [{}]...", key, exchange);
+
+        ObjectMetadata objectMetadata = getEndpoint().getS3Client().getObjectMetadata(getConfiguration().getBucketName(), key);
+
+        getEndpoint().setObjectMetadataHeaders(getMessageForResponse(exchange), objectMetadata);
+    }
+
+    /**
+     * Sets the summaries of the objects below the prefix as body. If the listing is truncated the marker
+     * header is set to continue the listing with the next exchange, otherwise it's removed.
+     */
+    private void listObjects(Exchange exchange) {
+        String prefix = exchange.getIn().getHeader(S3Constants.PREFIX, String.class);
+
+        ListObjectsRequest listObjectsRequest = new ListObjectsRequest();
+        listObjectsRequest.setBucketName(getConfiguration().getBucketName());
+        listObjectsRequest.setPrefix(prefix != null ? prefix : getConfiguration().getPrefix());
+        listObjectsRequest.setDelimiter(getConfiguration().getDelimiter());
+        listObjectsRequest.setMarker(exchange.getIn().getHeader(S3Constants.MARKER, String.class));
+        listObjectsRequest.setMaxKeys(MAX_KEYS);
+
+        LOG.trace("List objects [{}] from exchange [{}]...", listObjectsRequest, exchange);
+
+        ObjectListing listing = getEndpoint().getS3Client().listObjects(listObjectsRequest);
+
+        Message message = getMessageForResponse(exchange);
+        message.setBody(listing.getObjectSummaries());
+        if (listing.isTruncated() && !listing.getObjectSummaries().isEmpty()) {
+            // the next marker is only returned with a delimiter
+            String marker = listing.getNextMarker();
+            if (marker == null) {
+                marker = listing.getObjectSummaries().get(listing.getObjectSummaries().size() - 1).getKey();
+            }
+            message.setHeader(S3Constants.MARKER, marker);
+        } else {
+            message.removeHeader(S3Constants.MARKER);
+        }
+    }
+
+    /**
+     * Appends the body to the rolling aggregated object
+     */
+    private void aggregate(Exchange exchange) throws Exception {
+        InputStream body = exchange.getIn().getMandatoryBody(InputStream.class);
+        try {
+            aggregator.add(body);
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * Journals the body for the upload in the background, the exchange is done once the body is on disk
+     */
+    private void journal(Exchange exchange) throws Exception {
+        // the journal reserves the space before writing if the length is known
+        Long length = exchange.getIn().getHeader(S3Constants.CONTENT_LENGTH, Long.class);
+        if (length == null && exchange.getIn().getBody() instanceof File) {
+            length = exchange.getIn().getBody(File.class).length();
+        }
+        InputStream body = exchange.getIn().getMandatoryBody(InputStream.class);
+        try {
+            String compression = getConfiguration().getCompression();
+            if (compression != null) {
+                // the body is compressed while it's journaled, so the compressed length isn't known up front
+                writeBehindQueue.add(determineKey(exchange), S3Compression.compress(body, compression), -1, compression);
+            } else {
+                writeBehindQueue.add(determineKey(exchange), body, length != null ? length : -1);
+            }
+        } finally {
+            body.close();
+        }
+
+        File sourceFile = exchange.getIn().getBody(File.class);
+        if (getConfiguration().isDeleteAfterUpload() && (sourceFile != null)) {
+            sourceFile.delete();
+        }
+    }
+
+    /**
+     * Whether the object already holds the body, comparing the MD5 of the body with the cached ETag of the
+     * key, or otherwise with the ETag of the stored object. A stream body is spooled to a temporary file in
+     * the <tt>downloadDirectory</tt> while its MD5 is computed, and the file becomes the body which is uploaded
+     * if the object differs.
+     */
+    private boolean skipUnchanged(Exchange exchange) throws Exception {
+        String key = determineKey(exchange);
+
+        File sourceFile = exchange.getIn().getBody(File.class);
+        String md5;
+        if (sourceFile != null) {
+            md5 = digest(new FileInputStream(sourceFile), null);
+        } else {
+            InputStream body = exchange.getIn().getMandatoryBody(InputStream.class);
+            File directory = null;
+            if (getConfiguration().getDownloadDirectory() != null) {
+                directory = new File(getConfiguration().getDownloadDirectory());
+                directory.mkdirs();
+            }
+            final File spooled = File.createTempFile("camel-aws-s3-upload-", ".tmp", directory);
+            exchange.addOnCompletion(new Synchronization() {
+                public void onComplete(Exchange exchange) {
+                    spooled.delete();
+                }
+
+                public void onFailure(Exchange exchange) {
+                    spooled.delete();
+                }
+            });
+
+            md5 = digest(body, new FileOutputStream(spooled));
+            exchange.getIn().setBody(spooled);
+        }
+
+        String eTag = getUnchangedETag(key, md5);
+        if (eTag == null) {
+            return false;
+        }
+
+        LOG.trace("Skip upload of unchanged object [{}] from exchange [{}]", key, exchange);
+
+        Message message = getMessageForResponse(exchange);
+        message.setHeader(S3Constants.E_TAG, eTag);
+        message.setHeader(S3Constants.UNCHANGED, Boolean.TRUE);
+
+        if (getConfiguration().isDeleteAfterUpload() && (sourceFile != null)) {
+            sourceFile.delete();
+        }
+        return true;
+    }
+
+    /**
+     * Compares the MD5 of a body with the cached ETag of the key, or otherwise with the ETag of the stored object
+     *
+     * @return the ETag of the object if it holds the body, otherwise <tt>null</tt>
+     */
+    private String getUnchangedETag(String key, String md5) {
+        String bucketName = getConfiguration().getBucketName();
+        String eTag = eTagCache.get(bucketName, key);
+        if (eTag == null) {
+            eTag = headETag(bucketName, key);
+        }
+        if (!md5.equals(eTag)) {
+            return null;
+        }
+
+        eTagCache.put(bucketName, key, eTag);
+        return eTag;
+    }
+
+    /**
+     * @return the ETag of the stored object, or <tt>null</tt> if there is no such object
+     */
+    private String headETag(String bucketName, String key) {
+        try {
+            ObjectMetadata objectMetadata = getEndpoint().getS3Client().getObjectMetadata(bucketName, key);
+            return objectMetadata != null ? objectMetadata.getETag() : null;
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Computes the hex encoded MD5 of the stream, copying it to the output stream if there is one.
+     * Both streams are closed.
+     */
+    private static String digest(InputStream in, OutputStream out) throws Exception {
+        MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+                if (out != null) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        } finally {
+            in.close();
+            if (out != null) {
+                out.close();
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : messageDigest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Whether the stream body can be put in one request, which requires its length to be known
+     * and below the multipart threshold. Otherwise the stream is uploaded in parts of a fixed size.
+     */
+    private boolean isStreamedPut(Exchange exchange) {
+        Long contentLength = exchange.getIn().getHeader(S3Constants.CONTENT_LENGTH, Long.class);
+        return contentLength != null && !uploader.isMultipartUpload(contentLength);
+    }
+
+    private String determineOperation(Exchange exchange) {
+        String operation = exchange.getIn().getHeader(S3Constants.OPERATION, String.class);
+        if (operation == null) {
+            operation = getConfiguration().getOperation();
+        }
+        return operation != null ? operation : S3Operations.PUT_OBJECT;
+    }
+
     private String determineKey(Exchange exchange) {
         String key = exchange.getIn().getHeader(S3Constants.KEY, String.class);
         if (key == null) {
             throw new IllegalArgumentException("AWS S3 Key header missing.");
         }
-        return key;
+        return getEndpoint().applyHashPrefix(exchange, key);
     }
 
     private Message getMessageForResponse(Exchange exchange) {
@@ -108,6 +640,137 @@ public class S3Producer extends DefaultProducer {
         return exchange.getIn();
     }
 
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+
+        if (getConfiguration().getCompression() != null && !S3Compression.isSupported(getConfiguration().getCompression())) {
+            throw new IllegalArgumentException("Unsupported compression: " + getConfiguration().getCompression());
+        }
+        if (getConfiguration().getUploadPartSize() < S3MultipartUploader.MIN_PART_SIZE) {
+            throw new IllegalArgumentException("uploadPartSize must be at least " + S3MultipartUploader.MIN_PART_SIZE + " bytes");
+        }
+
+        // the pool threads are only created once parts are uploaded
+        uploadExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+            .newFixedThreadPool(this, "S3MultipartUploader", getConfiguration().getUploadPoolSize());
+        uploader = new S3MultipartUploader(getEndpoint(), uploadExecutorService);
+        collectionUploadExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+            .newFixedThreadPool(this, "S3CollectionUploader", getConfiguration().getCollectionUploadPoolSize());
+        collectionUploader = new S3CollectionUploader(getEndpoint(), uploader, collectionUploadExecutorService);
+
+        if (getConfiguration().getWriteBehindDirectory() != null) {
+            writeBehindExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+                .newScheduledThreadPool(this, "S3WriteBehindQueue", getConfiguration().getWriteBehindPoolSize());
+            writeBehindQueue = new S3WriteBehindQueue(getEndpoint(), uploader, writeBehindExecutorService);
+            ServiceHelper.startService(writeBehindQueue);
+        }
+
+        if (getConfiguration().getAggregationSize() > 0) {
+            aggregationExecutorService = getEndpoint().getCamelContext().getExecutorServiceStrategy()
+                .newScheduledThreadPool(this, "S3RollingAggregator", 1);
+            aggregator = new S3RollingAggregator(getEndpoint(), uploader, writeBehindQueue, aggregationExecutorService);
+            ServiceHelper.startService(aggregator);
+        }
+
+        if (getConfiguration().isContentCache()) {
+            contentCache = new S3ContentCache(getEndpoint());
+            ServiceHelper.startService(contentCache);
+        }
+
+        if (getConfiguration().isSkipUnchanged()) {
+            String eTagCacheFile = getConfiguration().getETagCacheFile();
+            eTagCache = new S3ETagCache(getConfiguration().getETagCacheSize(), eTagCacheFile != null ? new File(eTagCacheFile) : null);
+            eTagCache.load();
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        synchronized (this) {
+            if (syncExecutorService != null) {
+                getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(syncExecutorService);
+                syncExecutorService = null;
+            }
+            if (syncDownloadExecutorService != null) {
+                getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(syncDownloadExecutorService);
+                syncDownloadExecutorService = null;
+            }
+            syncEngine = null;
+        }
+        if (contentCache != null) {
+            ServiceHelper.stopService(contentCache);
+            contentCache = null;
+        }
+        if (eTagCache != null) {
+            try {
+                eTagCache.store();
+            } catch (IOException e) {
+                LOG.warn("Cannot store the ETag cache, the next run has to check the stored objects", e);
+            }
+            eTagCache = null;
+        }
+
+        // uploads the last aggregated object, which may still go through the write-behind queue
+        if (aggregator != null) {
+            ServiceHelper.stopService(aggregator);
+            aggregator = null;
+        }
+        if (aggregationExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(aggregationExecutorService);
+            aggregationExecutorService = null;
+        }
+        if (writeBehindExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(writeBehindExecutorService);
+            writeBehindExecutorService = null;
+        }
+        if (writeBehindQueue != null) {
+            ServiceHelper.stopService(writeBehindQueue);
+            writeBehindQueue = null;
+        }
+
+        if (collectionUploadExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(collectionUploadExecutorService);
+            collectionUploadExecutorService = null;
+            collectionUploader = null;
+        }
+        if (uploadExecutorService != null) {
+            getEndpoint().getCamelContext().getExecutorServiceStrategy().shutdownNow(uploadExecutorService);
+            uploadExecutorService = null;
+            uploader = null;
+        }
+
+        super.doStop();
+    }
+
+    /**
+     * @return the number of journaled bodies waiting for their upload, 0 if the producer doesn't write behind
+     */
+    public int getWriteBehindQueueDepth() {
+        return writeBehindQueue != null ? writeBehindQueue.getQueueDepth() : 0;
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest journaled body waiting for its upload
+     */
+    public long getWriteBehindUploadLag() {
+        return writeBehindQueue != null ? writeBehindQueue.getUploadLag() : 0;
+    }
+
+    /**
+     * @return the ratio of the get operations served from the content cache
+     */
+    public double getContentCacheHitRatio() {
+        return contentCache != null ? contentCache.getHitRatio() : 0;
+    }
+
+    /**
+     * @return the ratio of the get operations which downloaded the object
+     */
+    public double getContentCacheMissRatio() {
+        return contentCache != null ? contentCache.getMissRatio() : 0;
+    }
+
     protected S3Configuration getConfiguration() {
         return getEndpoint().getConfiguration();
     }
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.spi.Synchronization;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads large objects as byte ranges fetched in parallel into a preallocated temporary file.
+ * <p/>
+ * All ranges are requested with the ETag of the object as matching constraint, so the parts
+ * can't mix two versions of an object. A failed range is resumed at the last byte written
+ * instead of restarting the download. The body of the exchange is the temporary file, or a
+ * memory-mapped {@link ByteBuffer} of it, and the file is deleted when the exchange is done.
+ */
+public class S3RangedDownloader {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3RangedDownloader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final S3Endpoint endpoint;
+    private final ExecutorService executorService;
+
+    public S3RangedDownloader(S3Endpoint endpoint, ExecutorService executorService) {
+        this.endpoint = endpoint;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Whether the object is large enough to be downloaded in ranges
+     */
+    public boolean isRangedDownload(S3ObjectSummary s3ObjectSummary) {
+        long threshold = getConfiguration().getMultipartDownloadThreshold();
+        return threshold > 0 && s3ObjectSummary.getSize() >= threshold;
+    }
+
+    public Exchange download(S3ObjectSummary s3ObjectSummary) throws Exception {
+        String bucketName = s3ObjectSummary.getBucketName();
+        String key = s3ObjectSummary.getKey();
+
+        ObjectMetadata objectMetadata = endpoint.getS3Client().getObjectMetadata(bucketName, key);
+        String eTag = objectMetadata.getETag();
+        long size = objectMetadata.getContentLength();
+
+        final File file = createTempFile();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        boolean done = false;
+        try {
+            randomAccessFile.setLength(size);
+            FileChannel channel = randomAccessFile.getChannel();
+            downloadRanges(bucketName, key, eTag, size, channel);
+
+            Object body = file;
+            if (getConfiguration().isDownloadAsByteBuffer()) {
+                if (size <= Integer.MAX_VALUE) {
+                    body = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                } else {
+                    LOG.warn("Object [{}] is too large to be mapped, using the file as body", key);
+                }
+            }
+
+            S3Object s3Object = new S3Object();
+            s3Object.setBucketName(bucketName);
+            s3Object.setKey(key);
+            s3Object.setObjectMetadata(objectMetadata);
+
+            Exchange exchange = endpoint.createExchange(s3Object);
+            exchange.getIn().setBody(body);
+            exchange.addOnCompletion(new Synchronization() {
+                public void onComplete(Exchange exchange) {
+                    deleteTempFile(file);
+                }
+
+                public void onFailure(Exchange exchange) {
+                    deleteTempFile(file);
+                }
+
+                @Override
+                public String toString() {
+                    return "S3RangedDownloadOnCompletion";
+                }
+            });
+
+            LOG.trace("Downloaded object [{}] into [{}]", key, file);
+            done = true;
+            return exchange;
+        } finally {
+            // a mapping stays valid after the channel is closed
+            randomAccessFile.close();
+            if (!done) {
+                deleteTempFile(file);
+            }
+        }
+    }
+
+    /**
+     * Downloads the object into the file in parallel ranges, replacing the content of the file.
+     *
+     * @param eTag the ETag of the object, or <tt>null</tt> to accept any version
+     * @param size the size of the object
+     */
+    public void download(String bucketName, String key, String eTag, long size, File file) throws Exception {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(size);
+            downloadRanges(bucketName, key, eTag, size, randomAccessFile.getChannel());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void downloadRanges(final String bucketName, final String key, final String eTag, long size, final FileChannel channel) throws Exception {
+        long partSize = getConfiguration().getDownloadPartSize();
+        LOG.trace("Downloading object [{}] with {} bytes in parts of {} bytes...", new Object[]{key, size, partSize});
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (long start = 0; start < size; start += partSize) {
+            final long first = start;
+            final long last = Math.min(start + partSize, size) - 1;
+            futures.add(executorService.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    downloadRange(bucketName, key, eTag, first, last, channel);
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+            throw ObjectHelper.wrapRuntimeCamelException(e.getCause());
+        }
+    }
+
+    /**
+     * Fetches the bytes <tt>first</tt> to <tt>last</tt> into the channel, resuming after failures
+     */
+    protected void downloadRange(String bucketName, String key, String eTag, long first, long last, FileChannel channel) throws Exception {
+        long position = first;
+        int attempts = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        while (position <= last) {
+            try {
+                GetObjectRequest getObjectRequest = new GetObjectRequest(bucketName, key);
+                getObjectRequest.setRange(position, last);
+                if (eTag != null) {
+                    getObjectRequest.setMatchingETagConstraints(Collections.singletonList(eTag));
+                }
+
+                S3Object s3Object = endpoint.getS3Client().getObject(getObjectRequest);
+                if (s3Object == null) {
+                    // the ETag constraint wasn't met, resuming would mix two versions
+                    throw new IllegalStateException("Object [" + key + "] changed during the download");
+                }
+
+                InputStream in = s3Object.getObjectContent();
+                try {
+                    int read;
+                    while (position <= last && (read = in.read(buffer, 0, (int) Math.min(buffer.length, last - position + 1))) != -1) {
+                        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                        while (bytes.hasRemaining()) {
+                            position += channel.write(bytes, position);
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+
+                if (position <= last) {
+                    throw new IOException("Premature end of range " + first + "-" + last + " of object [" + key + "] at " + position);
+                }
+            } catch (IOException e) {
+                attempts = retryOrFail(key, position, attempts, e);
+            } catch (AmazonClientException e) {
+                attempts = retryOrFail(key, position, attempts, e);
+            }
+        }
+    }
+
+    private int retryOrFail(String key, long position, int attempts, Exception cause) throws Exception {
+        if (attempts >= getConfiguration().getDownloadPartRetries()) {
+            throw cause;
+        }
+        LOG.debug("Resuming download of object [" + key + "] at byte " + position + " after failure", cause);
+        return attempts + 1;
+    }
+
+    private File createTempFile() throws IOException {
+        File directory = null;
+        if (getConfiguration().getDownloadDirectory() != null) {
+            directory = new File(getConfiguration().getDownloadDirectory());
+            directory.mkdirs();
+        }
+        return File.createTempFile("camel-aws-s3-", ".tmp", directory);
+    }
+
+    private void deleteTempFile(File file) {
+        if (!file.delete() && file.exists()) {
+            LOG.warn("Cannot delete temporary file [{}]", file);
+            file.deleteOnExit();
+        }
+    }
+
+    private S3Configuration getConfiguration() {
+        return endpoint.getConfiguration();
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The offsets up to which the records of objects have been processed, so splitting an object resumes
+ * where it stopped. The checkpoints are kept in memory and, if a file is given, written to it with
+ * every flush, so they survive a restart.
+ * <p/>
+ * A checkpoint is identified by the key of the object and the start of the range it belongs to, and
+ * holds the ETag of the object, so the checkpoint is ignored once the object has been replaced.
+ */
+public class S3RecordCheckpoints {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3RecordCheckpoints.class);
+
+    private final Properties checkpoints = new Properties();
+    private final File file;
+
+    /**
+     * @param file the file the checkpoints are written to, or <tt>null</tt> to keep them in memory
+     */
+    public S3RecordCheckpoints(File file) throws IOException {
+        this.file = file;
+        if (file != null && file.exists()) {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                checkpoints.load(in);
+            } finally {
+                in.close();
+            }
+
+            LOG.debug("Loaded {} record checkpoints from [{}]", checkpoints.size(), file);
+        }
+    }
+
+    /**
+     * @return the checkpointed offset of the range, or its start if there is no checkpoint for this version of the object
+     */
+    public synchronized long get(String key, String eTag, long start) {
+        String checkpoint = checkpoints.getProperty(key + "@" + start);
+        if (checkpoint == null) {
+            return start;
+        }
+
+        int separator = checkpoint.lastIndexOf(':');
+        if (!checkpoint.substring(0, separator).equals(String.valueOf(eTag))) {
+            return start;
+        }
+        return Long.parseLong(checkpoint.substring(separator + 1));
+    }
+
+    public synchronized void put(String key, String eTag, long start, long offset) {
+        checkpoints.setProperty(key + "@" + start, eTag + ":" + offset);
+    }
+
+    /**
+     * Removes the checkpoints of all ranges of the object
+     */
+    public synchronized void remove(String key) {
+        String prefix = key + "@";
+        for (String name : checkpoints.stringPropertyNames()) {
+            if (name.startsWith(prefix) && name.substring(prefix.length()).matches("\\d+")) {
+                checkpoints.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Writes the checkpoints to the file, replacing it only once they are completely written
+     */
+    public synchronized void flush() throws IOException {
+        if (file == null) {
+            return;
+        }
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            checkpoints.store(out, null);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            // the rename doesn't replace an existing file on all platforms
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot replace record checkpoints " + file);
+            }
+        }
+    }
+}
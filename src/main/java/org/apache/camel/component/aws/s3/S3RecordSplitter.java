@@ -0,0 +1,364 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.component.aws.s3.support.S3ObjectStream;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits objects into records, either lines or records of a fixed length, and processes one exchange
+ * per record while streaming through the object, so the object is never held in memory.
+ * <p/>
+ * If an executor service is given, the object is split into aligned byte ranges which are read in
+ * parallel. A line belongs to the range it starts in, so a reader skips the partial line at the start
+ * of its range and reads past the end of its range to complete its last line. Each reader only requests
+ * its own range and a tail past its end, and requests further tails as long as the line continues, so the
+ * readers don't request the rest of the object.
+ * <p/>
+ * The offset of the next record of each range is checkpointed, so if a record fails, or the consumer
+ * is restarted, the object is split again from that record on.
+ */
+public class S3RecordSplitter {
+
+    public static final String LINE = "line";
+    public static final String FIXED = "fixed";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3RecordSplitter.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int TAIL_SIZE = 64 * 1024;
+
+    private final S3Endpoint endpoint;
+    private final Processor processor;
+    private final S3RecordCheckpoints checkpoints;
+    private ExecutorService executorService;
+
+    public S3RecordSplitter(S3Endpoint endpoint, Processor processor, S3RecordCheckpoints checkpoints) {
+        this.endpoint = endpoint;
+        this.processor = processor;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Processes the records of the object which haven't been processed yet.
+     *
+     * @param s3ObjectSummary the object
+     * @return whether all records have been processed, otherwise the object is resumed with the next call
+     */
+    public boolean split(final S3ObjectSummary s3ObjectSummary) throws Exception {
+        long size = s3ObjectSummary.getSize();
+        int ranges = executorService != null ? getConfiguration().getRecordReaderPoolSize() : 1;
+        long rangeSize = alignRange((size + ranges - 1) / ranges);
+
+        List<long[]> bounds = new ArrayList<long[]>();
+        for (long start = 0; start < size; start += rangeSize) {
+            bounds.add(new long[]{start, Math.min(start + rangeSize, size)});
+        }
+
+        LOG.trace("Splitting object [{}] with {} bytes into records in {} ranges...", new Object[]{s3ObjectSummary.getKey(), size, bounds.size()});
+
+        boolean completed = false;
+        try {
+            if (bounds.size() <= 1) {
+                completed = bounds.isEmpty() || readRange(s3ObjectSummary, 0, size);
+                return completed;
+            }
+
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (final long[] range : bounds) {
+                futures.add(executorService.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        return readRange(s3ObjectSummary, range[0], range[1]);
+                    }
+                }));
+            }
+            completed = true;
+            for (Future<Boolean> future : futures) {
+                completed &= future.get();
+            }
+            return completed;
+        } catch (ExecutionException e) {
+            completed = false;
+            throw ObjectHelper.wrapRuntimeCamelException(e.getCause());
+        } finally {
+            if (completed) {
+                checkpoints.remove(s3ObjectSummary.getKey());
+            }
+            checkpoints.flush();
+        }
+    }
+
+    /**
+     * Processes the records which start within the range, resuming at its checkpoint.
+     *
+     * @return whether all records of the range have been processed
+     */
+    protected boolean readRange(S3ObjectSummary s3ObjectSummary, long start, long end) throws Exception {
+        String key = s3ObjectSummary.getKey();
+        String eTag = s3ObjectSummary.getETag();
+        long position = checkpoints.get(key, eTag, start);
+        if (position >= end) {
+            return true;
+        }
+
+        // a line starting right at the range has to follow a line break, which is checked by reading the byte before
+        boolean skipPartialLine = isLineMode() && position == start && start > 0;
+        long first = skipPartialLine ? start - 1 : position;
+
+        // fixed length records end with the range, while the last line may continue past it
+        RangeStream stream = new RangeStream(s3ObjectSummary, first, end, isLineMode() ? s3ObjectSummary.getSize() : end);
+        InputStream in = new BufferedInputStream(stream, BUFFER_SIZE);
+        try {
+            position = first;
+            if (skipPartialLine) {
+                int b;
+                while ((b = in.read()) != -1) {
+                    position++;
+                    if (b == '\n') {
+                        break;
+                    }
+                }
+            }
+
+            int count = 0;
+            while (position < end) {
+                long offset = position;
+                byte[] record;
+                if (isLineMode()) {
+                    ByteArrayOutputStream line = new ByteArrayOutputStream();
+                    position += readLine(in, line);
+                    record = line.toByteArray();
+                } else {
+                    record = readFixed(in);
+                    position += record.length;
+                }
+                if (position == offset) {
+                    break;
+                }
+
+                Exchange exchange = createExchange(s3ObjectSummary, record, offset);
+                processor.process(exchange);
+                if (exchange.getException() != null) {
+                    LOG.warn("Error processing record at offset " + offset + " of object " + key
+                        + ", resuming at this record with the next poll", exchange.getException());
+                    checkpoints.put(key, eTag, start, offset);
+                    return false;
+                }
+
+                checkpoints.put(key, eTag, start, position);
+                if (++count % getConfiguration().getRecordCheckpointInterval() == 0) {
+                    checkpoints.flush();
+                }
+            }
+            checkpoints.put(key, eTag, start, end);
+            return true;
+        } finally {
+            // the rest of the object belongs to other ranges
+            stream.abort();
+        }
+    }
+
+    /**
+     * Gets the bytes of the object within the range, which have to match the listed ETag
+     */
+    private S3ObjectStream getRange(S3ObjectSummary s3ObjectSummary, long first, long last) {
+        GetObjectRequest getObjectRequest = new GetObjectRequest(s3ObjectSummary.getBucketName(), s3ObjectSummary.getKey());
+        getObjectRequest.setRange(first, last);
+        if (s3ObjectSummary.getETag() != null) {
+            getObjectRequest.setMatchingETagConstraints(Collections.singletonList(s3ObjectSummary.getETag()));
+        }
+        S3Object s3Object = endpoint.getS3Client().getObject(getObjectRequest);
+        if (s3Object == null) {
+            throw new IllegalStateException("Object " + s3ObjectSummary.getKey() + " has changed while splitting it into records");
+        }
+        return new S3ObjectStream(s3Object.getObjectContent(), last - first + 1);
+    }
+
+    /**
+     * Reads a line without its line break
+     *
+     * @return the number of bytes consumed, including the line break
+     */
+    private int readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        int consumed = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            consumed++;
+            if (b == '\n') {
+                break;
+            }
+            line.write(b);
+        }
+
+        byte[] bytes = line.toByteArray();
+        if (bytes.length > 0 && bytes[bytes.length - 1] == '\r') {
+            line.reset();
+            line.write(bytes, 0, bytes.length - 1);
+        }
+        return consumed;
+    }
+
+    /**
+     * Reads a record of the fixed length, the last record of an object may be shorter
+     */
+    private byte[] readFixed(InputStream in) throws IOException {
+        byte[] record = new byte[getConfiguration().getRecordLength()];
+        int length = 0;
+        int read;
+        while (length < record.length && (read = in.read(record, length, record.length - length)) != -1) {
+            length += read;
+        }
+        if (length == record.length) {
+            return record;
+        }
+
+        byte[] answer = new byte[length];
+        System.arraycopy(record, 0, answer, 0, length);
+        return answer;
+    }
+
+    private Exchange createExchange(S3ObjectSummary s3ObjectSummary, byte[] record, long offset) {
+        Exchange exchange = new DefaultExchange(endpoint, endpoint.getExchangePattern());
+        Message message = exchange.getIn();
+        message.setBody(record);
+        message.setHeader(S3Constants.KEY, s3ObjectSummary.getKey());
+        message.setHeader(S3Constants.BUCKET_NAME, s3ObjectSummary.getBucketName());
+        message.setHeader(S3Constants.E_TAG, s3ObjectSummary.getETag());
+        message.setHeader(S3Constants.RECORD_OFFSET, offset);
+        endpoint.setOriginalKeyHeader(message, s3ObjectSummary.getKey());
+        return exchange;
+    }
+
+    /**
+     * Fixed length records mustn't cross ranges
+     */
+    private long alignRange(long rangeSize) {
+        if (isLineMode()) {
+            return Math.max(1, rangeSize);
+        }
+        int recordLength = getConfiguration().getRecordLength();
+        return Math.max(1, (rangeSize + recordLength - 1) / recordLength) * recordLength;
+    }
+
+    /**
+     * Reads the range and a tail past its end with one request, and requests the next tail once the
+     * bytes of the previous request have been read, up to the limit.
+     */
+    private final class RangeStream extends InputStream {
+        private final S3ObjectSummary s3ObjectSummary;
+        private final long limit;
+        private long position;
+        private long requestEnd;
+        private S3ObjectStream stream;
+
+        RangeStream(S3ObjectSummary s3ObjectSummary, long first, long end, long limit) {
+            this.s3ObjectSummary = s3ObjectSummary;
+            this.limit = limit;
+            this.position = first;
+            this.requestEnd = Math.min(end + TAIL_SIZE, limit);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (true) {
+                if (stream == null) {
+                    if (position >= limit) {
+                        return -1;
+                    }
+                    requestEnd = Math.max(requestEnd, Math.min(position + TAIL_SIZE, limit));
+                    stream = getRange(s3ObjectSummary, position, requestEnd - 1);
+                }
+
+                int read = stream.read(b, off, len);
+                if (read != -1) {
+                    position += read;
+                    return read;
+                }
+                stream.close();
+                stream = null;
+                if (position < requestEnd) {
+                    // the object is shorter than listed
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * Aborts the pending request instead of reading the rest of its bytes
+         */
+        public void abort() throws IOException {
+            if (stream != null && !stream.isReleased()) {
+                stream.abort();
+            }
+            stream = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (stream != null) {
+                stream.close();
+                stream = null;
+            }
+        }
+    }
+
+    private boolean isLineMode() {
+        return LINE.equals(getConfiguration().getRecordMode());
+    }
+
+    private S3Configuration getConfiguration() {
+        return endpoint.getConfiguration();
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Reads the ranges of an object in parallel
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+}
@@ -0,0 +1,385 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.impl.ServiceSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends the bodies of many exchanges to a rolling buffer, which is uploaded as one object.
+ * <p/>
+ * The buffer is flushed when it reaches <tt>aggregationSize</tt> bytes, when it's older than
+ * <tt>aggregationInterval</tt> milliseconds, and when the producer is stopped. It's optionally
+ * gzip compressed while the bodies are appended, and it moves from the heap to a temporary file
+ * once it exceeds <tt>aggregationSpillThreshold</tt> bytes. The key of each object is evaluated
+ * from the <tt>aggregationKey</tt> simple expression.
+ * <p/>
+ * The exchanges are done once their body is in the buffer, so the bodies of a buffer which
+ * hasn't been flushed are lost if the process dies. Combined with a write-behind directory,
+ * the flushed objects are journaled before they're uploaded.
+ * <p/>
+ * A buffer which fails to upload is kept and retried before the next buffer is uploaded, and at
+ * every check of the interval. If it still fails when the producer is stopped, it's left in a
+ * temporary file, whose name is logged.
+ */
+public class S3RollingAggregator extends ServiceSupport {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3RollingAggregator.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final S3Endpoint endpoint;
+    private final S3MultipartUploader uploader;
+    private final S3WriteBehindQueue writeBehindQueue;
+    private final ScheduledExecutorService executorService;
+    private Expression keyExpression;
+    private byte[] separator;
+    private ScheduledFuture<?> timer;
+
+    private RollingBuffer buffer;
+    // the buffers which failed to upload, in the order they were flushed
+    private final LinkedList<RollingBuffer> failed = new LinkedList<RollingBuffer>();
+
+    public S3RollingAggregator(S3Endpoint endpoint, S3MultipartUploader uploader, S3WriteBehindQueue writeBehindQueue,
+                               ScheduledExecutorService executorService) {
+        this.endpoint = endpoint;
+        this.uploader = uploader;
+        this.writeBehindQueue = writeBehindQueue;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Appends the body to the current buffer, flushing the buffer if it's full.
+     */
+    public void add(InputStream body) throws Exception {
+        RollingBuffer full = null;
+        synchronized (this) {
+            if (buffer == null) {
+                buffer = new RollingBuffer();
+            }
+
+            byte[] bytes = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = body.read(bytes)) != -1) {
+                buffer.write(bytes, 0, read);
+            }
+            if (separator != null) {
+                buffer.write(separator, 0, separator.length);
+            }
+            buffer.count++;
+
+            if (buffer.getLength() >= getConfiguration().getAggregationSize()) {
+                full = buffer;
+                buffer = null;
+            }
+        }
+
+        // the upload happens outside the lock, so other exchanges already fill the next buffer
+        if (full != null) {
+            retryFailed();
+            uploadOrKeep(full);
+        }
+    }
+
+    /**
+     * Uploads the buffers which failed before and the current buffer, if there is one
+     */
+    public void flush() throws Exception {
+        RollingBuffer current;
+        synchronized (this) {
+            current = buffer;
+            buffer = null;
+        }
+        retryFailed();
+        if (current != null) {
+            uploadOrKeep(current);
+        }
+    }
+
+    private void flushIfExpired() {
+        RollingBuffer expired = null;
+        synchronized (this) {
+            if (buffer != null && System.currentTimeMillis() - buffer.created >= getConfiguration().getAggregationInterval()) {
+                expired = buffer;
+                buffer = null;
+            }
+        }
+
+        retryFailed();
+        if (expired != null) {
+            uploadOrKeep(expired);
+        }
+    }
+
+    /**
+     * Uploads the buffer, keeping it for a retry if the upload fails, as its exchanges are done already
+     */
+    private void uploadOrKeep(RollingBuffer rollingBuffer) {
+        try {
+            upload(rollingBuffer);
+        } catch (Exception e) {
+            LOG.warn("Error occurred during uploading aggregated object [" + rollingBuffer.key + "], retrying later", e);
+            synchronized (failed) {
+                failed.add(rollingBuffer);
+            }
+        }
+    }
+
+    /**
+     * Uploads the buffers which failed before in their order, until one fails again
+     */
+    private void retryFailed() {
+        while (true) {
+            RollingBuffer rollingBuffer;
+            synchronized (failed) {
+                if (failed.isEmpty()) {
+                    return;
+                }
+                rollingBuffer = failed.removeFirst();
+            }
+
+            try {
+                upload(rollingBuffer);
+            } catch (Exception e) {
+                LOG.warn("Error occurred during retrying aggregated object [" + rollingBuffer.key + "]", e);
+                synchronized (failed) {
+                    failed.addFirst(rollingBuffer);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Uploads the buffer and deletes it once it's uploaded.
+     */
+    protected void upload(RollingBuffer rollingBuffer) throws Exception {
+        rollingBuffer.close();
+        if (rollingBuffer.key == null) {
+            // evaluated once, so a retry uploads to the same key
+            Exchange exchange = new DefaultExchange(endpoint);
+            exchange.getIn().setHeader(S3Constants.AGGREGATED_SIZE, rollingBuffer.count);
+            rollingBuffer.key = endpoint.applyHashPrefix(exchange, keyExpression.evaluate(exchange, String.class));
+        }
+        String key = rollingBuffer.key;
+        long length = rollingBuffer.getLength();
+
+        LOG.debug("Uploading {} aggregated exchanges with {} bytes as object [{}]", new Object[]{rollingBuffer.count, length, key});
+
+        if (writeBehindQueue != null) {
+            InputStream in = rollingBuffer.getInputStream();
+            try {
+                writeBehindQueue.add(key, in, length);
+            } finally {
+                in.close();
+            }
+        } else if (rollingBuffer.file != null && uploader.isMultipartUpload(length)) {
+            uploader.upload(key, rollingBuffer.file, endpoint.createObjectMetadata(key));
+        } else if (rollingBuffer.file != null) {
+            PutObjectRequest putObjectRequest = new PutObjectRequest(getConfiguration().getBucketName(), key, rollingBuffer.file);
+            putObjectRequest.setMetadata(endpoint.createObjectMetadata(key));
+            endpoint.getS3Client().putObject(putObjectRequest);
+        } else {
+            ObjectMetadata objectMetadata = endpoint.createObjectMetadata(key);
+            objectMetadata.setContentLength(length);
+            endpoint.getS3Client().putObject(new PutObjectRequest(getConfiguration().getBucketName(), key,
+                    rollingBuffer.getInputStream(), objectMetadata));
+        }
+
+        // only deleted once uploaded, a failed buffer is retried
+        rollingBuffer.delete();
+    }
+
+    /**
+     * @return the number of aggregated objects which failed to upload and wait for a retry
+     */
+    public int getFailedUploads() {
+        synchronized (failed) {
+            return failed.size();
+        }
+    }
+
+    private S3Configuration getConfiguration() {
+        return endpoint.getConfiguration();
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        keyExpression = endpoint.getCamelContext().resolveLanguage("simple").createExpression(getConfiguration().getAggregationKey());
+        String aggregationSeparator = getConfiguration().getAggregationSeparator();
+        separator = aggregationSeparator != null && aggregationSeparator.length() > 0 ? aggregationSeparator.getBytes("UTF-8") : null;
+
+        long interval = getConfiguration().getAggregationInterval();
+        if (interval > 0) {
+            // check a few times per interval, so no buffer gets much older than the interval
+            long period = Math.max(1, interval / 4);
+            timer = executorService.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    flushIfExpired();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        flush();
+
+        synchronized (failed) {
+            for (RollingBuffer rollingBuffer : failed) {
+                LOG.error("Cannot upload aggregated object [{}] with {} exchanges, its content is kept in file [{}]",
+                        new Object[]{rollingBuffer.key, rollingBuffer.count, rollingBuffer.keep()});
+            }
+            failed.clear();
+        }
+    }
+
+    /**
+     * A buffer which keeps its content on the heap until it exceeds the spill threshold, and in a temporary file afterwards
+     */
+    protected final class RollingBuffer extends OutputStream {
+        private final long created = System.currentTimeMillis();
+        private final OutputStream out;
+        private OutputStream target;
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private File file;
+        private long length;
+        private int count;
+        private String key;
+        private boolean closed;
+
+        RollingBuffer() throws IOException {
+            target = bytes;
+            // counts the bytes after compression, which make up the size of the object
+            OutputStream counting = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    spillIfNeeded(len);
+                    target.write(b, off, len);
+                    length += len;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    target.close();
+                }
+            };
+            out = getConfiguration().isAggregationGzip() ? new GZIPOutputStream(counting, BUFFER_SIZE) : counting;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        InputStream getInputStream() throws IOException {
+            return file != null ? new FileInputStream(file) : new ByteArrayInputStream(bytes.toByteArray());
+        }
+
+        /**
+         * Moves the content to a file, if it's still on the heap, so it survives the producer
+         *
+         * @return the file with the content
+         */
+        File keep() {
+            if (file == null) {
+                try {
+                    file = File.createTempFile("camel-aws-s3-aggregate-", ".tmp");
+                    OutputStream fileOut = new FileOutputStream(file);
+                    try {
+                        bytes.writeTo(fileOut);
+                    } finally {
+                        fileOut.close();
+                    }
+                    bytes = null;
+                } catch (IOException e) {
+                    LOG.error("Cannot keep aggregated object [" + key + "] in a file", e);
+                }
+            }
+            return file;
+        }
+
+        void delete() {
+            bytes = null;
+            if (file != null && !file.delete() && file.exists()) {
+                LOG.warn("Cannot delete spilled file [{}]", file);
+                file.deleteOnExit();
+            }
+        }
+
+        private void spillIfNeeded(int len) throws IOException {
+            if (file != null || length + len <= getConfiguration().getAggregationSpillThreshold()) {
+                return;
+            }
+
+            file = File.createTempFile("camel-aws-s3-aggregate-", ".tmp");
+            LOG.trace("Spilling aggregated object with {} bytes to [{}]", length, file);
+
+            OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+            bytes.writeTo(fileOut);
+            bytes = null;
+            target = fileOut;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import org.apache.camel.component.aws.s3.support.S3HashPrefix;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists the objects of a bucket as a set of key-space shards, each of them with its own cursor.
+ * <p/>
+ * The shards are the partitions of the <tt>keyTemplate</tt> within the sliding window, the configured
+ * <tt>prefixes</tt>, the common prefixes found below <tt>prefix</tt> using the configured <tt>delimiter</tt>,
+ * or otherwise the single <tt>prefix</tt>. With hash prefixes every shard is split once more per hash
+ * prefix, so the listing covers the whole key space, and in a cluster only the hash prefixes of the
+ * partitions owned by this node are listed. If an executor service is given, the shards are listed in
+ * parallel. The <tt>suffix</tt>, <tt>minSize</tt> and <tt>maxSize</tt> filters, the partition ownership
+ * in a cluster and the archive prefix of moved objects are applied to the listing, so filtered objects
+ * are never fetched.
+ * <p/>
+ * Partitions of the key template are listed until they have been closed for longer than the lateness
+ * of their objects at the start of a completed pass. The watermark then moves past them, so closed
+ * partitions are never listed again and the cost of a pass only depends on the open partitions.
+ */
+public class S3ShardedLister {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3ShardedLister.class);
+    // the maximum number of keys S3 returns with one listing
+    private static final int MAX_KEYS = 1000;
+
+    private final S3Endpoint endpoint;
+    private final Map<String, Shard> shards = new LinkedHashMap<String, Shard>();
+    private ExecutorService executorService;
+    private S3PartitionCoordinator partitionCoordinator;
+    // the partitions owned by this node when the shards were determined
+    private Set<Integer> listedPartitions;
+    private final S3KeyTemplate keyTemplate;
+    // the start of the oldest partition which may still get objects, -1 until the first pass
+    private long watermark = -1;
+    private long passStarted;
+    // the shard the next poll starts with
+    private int nextShard;
+
+    public S3ShardedLister(S3Endpoint endpoint) {
+        this.endpoint = endpoint;
+
+        S3Configuration configuration = endpoint.getConfiguration();
+        if (configuration.getKeyTemplate() != null) {
+            keyTemplate = new S3KeyTemplate(configuration.getKeyTemplate(), TimeZone.getTimeZone(configuration.getKeyTemplateTimeZone()));
+        } else {
+            keyTemplate = null;
+        }
+    }
+
+    /**
+     * Lists the next objects of the shards. If there are more shards than objects to return, a poll only
+     * lists some of them, and the next poll continues with the shards which follow, so a poll never
+     * returns more than <tt>maxKeys</tt> objects.
+     *
+     * @param maxKeys the maximum number of accepted objects returned, shared between the shards
+     * @return the accepted objects
+     */
+    public List<S3ObjectSummary> list(int maxKeys) throws Exception {
+        if (shards.isEmpty() || isPassCompleted() || isOwnershipChanged()) {
+            discoverShards();
+        }
+
+        int limit = maxKeys > 0 ? maxKeys : MAX_KEYS;
+        List<Shard> all = new ArrayList<Shard>(shards.values());
+        if (all.isEmpty()) {
+            // this node doesn't own any partition yet
+            return new ArrayList<S3ObjectSummary>();
+        }
+        List<Shard> current = new ArrayList<Shard>();
+        int visited = 0;
+        for (; visited < all.size() && current.size() < limit; visited++) {
+            Shard shard = all.get((nextShard + visited) % all.size());
+            // the shards which have already been listed to their end wait for the next pass
+            if (!shard.exhausted) {
+                current.add(shard);
+            }
+        }
+        nextShard = (nextShard + visited) % all.size();
+
+        List<S3ObjectSummary> answer = new ArrayList<S3ObjectSummary>();
+        if (executorService == null || current.size() == 1) {
+            for (int index = 0; index < current.size(); index++) {
+                // the shards listed later get what the earlier ones left over
+                answer.addAll(listShard(current.get(index), (limit - answer.size()) / (current.size() - index)));
+            }
+            return answer;
+        }
+
+        final int quota = limit / current.size();
+        List<Future<List<S3ObjectSummary>>> futures = new ArrayList<Future<List<S3ObjectSummary>>>(current.size());
+        for (final Shard shard : current) {
+            futures.add(executorService.submit(new Callable<List<S3ObjectSummary>>() {
+                public List<S3ObjectSummary> call() throws Exception {
+                    return listShard(shard, quota);
+                }
+            }));
+        }
+
+        for (Future<List<S3ObjectSummary>> future : futures) {
+            try {
+                answer.addAll(future.get());
+            } catch (ExecutionException e) {
+                throw ObjectHelper.wrapRuntimeCamelException(e.getCause());
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Lists up to <tt>quota</tt> accepted objects of the shard, continuing at its cursor.
+     */
+    protected List<S3ObjectSummary> listShard(Shard shard, int quota) {
+        List<S3ObjectSummary> answer = new ArrayList<S3ObjectSummary>();
+        String marker = shard.marker;
+        boolean truncated = true;
+
+        while (answer.size() < quota && truncated) {
+            ListObjectsRequest listObjectsRequest = new ListObjectsRequest();
+            listObjectsRequest.setBucketName(getConfiguration().getBucketName());
+            listObjectsRequest.setPrefix(shard.prefix);
+            listObjectsRequest.setDelimiter(shard.delimiter);
+            listObjectsRequest.setMarker(marker);
+            listObjectsRequest.setMaxKeys(quota - answer.size());
+
+            LOG.trace("Listing shard [{}] after marker [{}]...", shard.prefix, marker);
+
+            ObjectListing listing = endpoint.getS3Client().listObjects(listObjectsRequest);
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                marker = summary.getKey();
+                if (shard.keyPrefix != null
+                    && !S3HashPrefix.strip(summary.getKey(), getConfiguration().getHashPrefixLength()).startsWith(shard.keyPrefix)) {
+                    continue;
+                }
+                if (accept(summary)) {
+                    answer.add(summary);
+                }
+            }
+
+            truncated = listing.isTruncated() && !listing.getObjectSummaries().isEmpty();
+        }
+
+        // start over with the next pass when the shard is exhausted
+        shard.marker = truncated ? marker : null;
+        shard.exhausted = !truncated;
+        return answer;
+    }
+
+    /**
+     * Whether the listed object passes the configured filters.
+     */
+    protected boolean accept(S3ObjectSummary summary) {
+        S3Configuration configuration = getConfiguration();
+        if (configuration.getSuffix() != null && !summary.getKey().endsWith(configuration.getSuffix())) {
+            return false;
+        }
+        if (configuration.getMinSize() != null && summary.getSize() < configuration.getMinSize()) {
+            return false;
+        }
+        if (configuration.getMaxSize() != null && summary.getSize() > configuration.getMaxSize()) {
+            return false;
+        }
+        if (partitionCoordinator != null && !partitionCoordinator.isOwned(summary.getKey())) {
+            return false;
+        }
+        if (isArchived(summary.getKey())) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the object has already been moved to the archive prefix of the listed bucket
+     */
+    private boolean isArchived(String key) {
+        S3Configuration configuration = getConfiguration();
+        return configuration.isMoveAfterRead() && configuration.getArchivePrefix() != null
+            && (configuration.getArchiveBucketName() == null || configuration.getArchiveBucketName().equals(configuration.getBucketName()))
+            && key.startsWith(configuration.getArchivePrefix());
+    }
+
+    /**
+     * Determines the shards, keeping the cursors of the shards which still exist.
+     */
+    protected void discoverShards() {
+        S3Configuration configuration = getConfiguration();
+        Map<String, Shard> discovered = new LinkedHashMap<String, Shard>();
+
+        if (keyTemplate != null) {
+            for (String prefix : listPartitions()) {
+                addHashedShards(discovered, prefix);
+            }
+        } else if (configuration.getPrefixes() != null) {
+            for (String prefix : configuration.getPrefixes().split(",")) {
+                addHashedShards(discovered, prefix.trim());
+            }
+        } else if (configuration.getDelimiter() != null) {
+            // the objects directly below the prefix form a shard of their own
+            addShard(discovered, configuration.getPrefix(), configuration.getDelimiter(), null);
+            for (String commonPrefix : listCommonPrefixes(configuration.getPrefix(), configuration.getDelimiter())) {
+                addShard(discovered, commonPrefix, null, null);
+            }
+        } else {
+            addHashedShards(discovered, configuration.getPrefix());
+        }
+
+        LOG.trace("Listing bucket [{}] in shards {}", configuration.getBucketName(), discovered.keySet());
+
+        if (partitionCoordinator != null) {
+            listedPartitions = partitionCoordinator.getOwnedPartitions();
+        }
+        shards.clear();
+        shards.putAll(discovered);
+        for (Shard shard : shards.values()) {
+            shard.exhausted = false;
+        }
+    }
+
+    /**
+     * Adds the shard of the prefix, or a shard for each hash prefix in front of it.
+     * <p/>
+     * Longer hash prefixes than {@link S3HashPrefix#MAX_LISTED_LENGTH} would need a listing per hash prefix
+     * and pass, most of them empty, so the keys are listed by the leading characters of their hash prefix
+     * instead, and the prefix is checked for each listed key.
+     */
+    private void addHashedShards(Map<String, Shard> discovered, String prefix) {
+        int hashPrefixLength = getConfiguration().getHashPrefixLength();
+        if (hashPrefixLength == 0) {
+            addShard(discovered, prefix, null, null);
+            return;
+        }
+        if (hashPrefixLength > S3HashPrefix.MAX_LISTED_LENGTH) {
+            // the partitions of the keys differ within such a shard, so each node lists all of them
+            for (String hashPrefix : S3HashPrefix.prefixes(S3HashPrefix.MAX_LISTED_LENGTH)) {
+                addShard(discovered, hashPrefix.substring(0, S3HashPrefix.MAX_LISTED_LENGTH), null, prefix);
+            }
+            return;
+        }
+        for (String hashPrefix : S3HashPrefix.prefixes(hashPrefixLength)) {
+            // the other nodes of the cluster list the hash prefixes of their partitions
+            if (partitionCoordinator == null || partitionCoordinator.isOwnedHashPrefix(hashPrefix)) {
+                addShard(discovered, prefix != null ? hashPrefix + prefix : hashPrefix, null, null);
+            }
+        }
+    }
+
+    private void addShard(Map<String, Shard> discovered, String prefix, String delimiter, String keyPrefix) {
+        String id = (prefix != null ? prefix : "") + (delimiter != null ? delimiter : "") + (keyPrefix != null ? "*" + keyPrefix : "");
+        Shard shard = shards.get(id);
+        discovered.put(id, shard != null ? shard : new Shard(prefix != null && prefix.length() > 0 ? prefix : null, delimiter,
+            keyPrefix != null && keyPrefix.length() > 0 ? keyPrefix : null));
+    }
+
+    /**
+     * Expands the key template into the prefixes of the partitions from the watermark up to now,
+     * moving the watermark past the partitions which the completed pass has listed for the last time
+     */
+    private List<String> listPartitions() {
+        S3Configuration configuration = getConfiguration();
+        long now = currentTimeMillis();
+        long windowStart = keyTemplate.partitionStart(now - configuration.getKeyTemplateWindow());
+        if (watermark >= 0) {
+            // the pass which just completed started after these partitions had closed
+            while (keyTemplate.nextPartitionStart(watermark) + configuration.getKeyTemplateLateness() <= passStarted) {
+                watermark = keyTemplate.nextPartitionStart(watermark);
+            }
+        }
+        watermark = Math.max(watermark, windowStart);
+        passStarted = now;
+
+        List<String> answer = new ArrayList<String>();
+        for (long start = watermark; start <= now; start = keyTemplate.nextPartitionStart(start)) {
+            answer.add(keyTemplate.expand(start));
+        }
+        return answer;
+    }
+
+    /**
+     * @return the current time, which the partitions of the key template are determined with
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private List<String> listCommonPrefixes(String prefix, String delimiter) {
+        List<String> answer = new ArrayList<String>();
+        String marker = null;
+        ObjectListing listing;
+        do {
+            ListObjectsRequest listObjectsRequest = new ListObjectsRequest();
+            listObjectsRequest.setBucketName(getConfiguration().getBucketName());
+            listObjectsRequest.setPrefix(prefix);
+            listObjectsRequest.setDelimiter(delimiter);
+            listObjectsRequest.setMarker(marker);
+            listObjectsRequest.setMaxKeys(MAX_KEYS);
+
+            listing = endpoint.getS3Client().listObjects(listObjectsRequest);
+            answer.addAll(listing.getCommonPrefixes());
+            marker = listing.getNextMarker();
+        } while (listing.isTruncated() && marker != null);
+
+        return answer;
+    }
+
+    private boolean isPassCompleted() {
+        for (Shard shard : shards.values()) {
+            if (!shard.exhausted) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether this node got or lost partitions since the shards were determined
+     */
+    private boolean isOwnershipChanged() {
+        return partitionCoordinator != null && getConfiguration().getHashPrefixLength() > 0
+            && !partitionCoordinator.getOwnedPartitions().equals(listedPartitions);
+    }
+
+    private S3Configuration getConfiguration() {
+        return endpoint.getConfiguration();
+    }
+
+    /**
+     * @return the start of the oldest partition of the key template which is still listed, or -1 before the first pass
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    public S3PartitionCoordinator getPartitionCoordinator() {
+        return partitionCoordinator;
+    }
+
+    /**
+     * Restricts the listing to the objects in the partitions owned by this node
+     */
+    public void setPartitionCoordinator(S3PartitionCoordinator partitionCoordinator) {
+        this.partitionCoordinator = partitionCoordinator;
+    }
+
+    /**
+     * A key-space shard with its own listing cursor
+     */
+    protected static final class Shard {
+        private final String prefix;
+        private final String delimiter;
+        // the prefix of the keys behind their hash prefix, if the shard only lists the leading characters of it
+        private final String keyPrefix;
+        private volatile String marker;
+        // whether the shard has been listed to its end in the current pass
+        private volatile boolean exhausted;
+
+        Shard(String prefix, String delimiter, String keyPrefix) {
+            this.prefix = prefix;
+            this.delimiter = delimiter;
+            this.keyPrefix = keyPrefix;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        @Override
+        public String toString() {
+            return "Shard[prefix=" + prefix + ", delimiter=" + delimiter + ", keyPrefix=" + keyPrefix + ", marker=" + marker + "]";
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Syncs the objects of the endpoint's bucket to another bucket or to a local directory, copying only
+ * the objects which are new or changed.
+ * <p/>
+ * The source and the target are listed in key order and merged, so only a page of each listing is held
+ * in memory. Objects are compared by size and ETag, or for multipart ETags and local files, which have
+ * no comparable ETag, by size and last modification. Copies between buckets happen server-side, copies
+ * to a directory are downloaded in parallel ranges into a temporary file which then replaces the target.
+ */
+public class S3SyncEngine {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3SyncEngine.class);
+    // the maximum number of keys S3 returns with one listing
+    private static final int MAX_KEYS = 1000;
+    // the number of compared objects after which the progress is logged
+    private static final int PROGRESS_INTERVAL = 10000;
+
+    private final S3Endpoint endpoint;
+    private final ExecutorService executorService;
+    private final S3RangedDownloader downloader;
+
+    /**
+     * @param executorService the executor service copying the objects
+     * @param downloader the downloader of objects synced to a directory
+     */
+    public S3SyncEngine(S3Endpoint endpoint, ExecutorService executorService, S3RangedDownloader downloader) {
+        this.endpoint = endpoint;
+        this.executorService = executorService;
+        this.downloader = downloader;
+    }
+
+    /**
+     * Syncs the objects below the prefix to the target bucket or directory.
+     *
+     * @param prefix the prefix of the synced keys, or <tt>null</tt> for all keys
+     * @param destinationBucketName the target bucket, or <tt>null</tt> if the target is a directory
+     * @param destinationDirectory the target directory, in which the keys are relative paths
+     * @return the outcome of the sync
+     */
+    public S3SyncResult sync(String prefix, final String destinationBucketName, final File destinationDirectory) throws Exception {
+        final String bucketName = endpoint.getConfiguration().getBucketName();
+        final S3SyncResult result = new S3SyncResult();
+
+        Iterator<Entry> source = new BucketIterator(bucketName, prefix);
+        Iterator<Entry> target = destinationBucketName != null
+            ? new BucketIterator(destinationBucketName, prefix) : new DirectoryIterator(destinationDirectory, prefix);
+
+        LOG.debug("Syncing bucket [{}] to [{}]...", bucketName, destinationBucketName != null ? destinationBucketName : destinationDirectory);
+
+        // bounds the copies in flight, so the merge doesn't run ahead of them
+        final Semaphore permits = new Semaphore(endpoint.getConfiguration().getSyncPoolSize());
+        LinkedList<Future<Void>> futures = new LinkedList<Future<Void>>();
+
+        try {
+            Entry sourceEntry = next(source);
+            Entry targetEntry = next(target);
+            while (sourceEntry != null || targetEntry != null) {
+                int comparison = sourceEntry == null ? 1 : targetEntry == null ? -1 : sourceEntry.key.compareTo(targetEntry.key);
+
+                if (comparison > 0) {
+                    if (endpoint.getConfiguration().isSyncDelete()) {
+                        delete(targetEntry, destinationBucketName, destinationDirectory);
+                        result.deleted();
+                    }
+                    targetEntry = next(target);
+                    continue;
+                }
+
+                if (destinationBucketName == null && resolve(destinationDirectory, sourceEntry.key) == null) {
+                    // the directory iterator never returns such a key, so the target entry is left for the next source entry
+                    sourceEntry = next(source);
+                    continue;
+                }
+
+                result.compared();
+                if (comparison < 0 || isChanged(sourceEntry, targetEntry, destinationBucketName != null)) {
+                    final Entry entry = sourceEntry;
+                    permits.acquire();
+                    futures.add(executorService.submit(new Callable<Void>() {
+                        public Void call() throws Exception {
+                            try {
+                                copy(bucketName, entry, destinationBucketName, destinationDirectory);
+                                result.copied(entry.size);
+                                return null;
+                            } finally {
+                                permits.release();
+                            }
+                        }
+                    }));
+                    awaitCompleted(futures);
+                } else {
+                    result.unchanged(sourceEntry.size);
+                }
+
+                if (result.getCompared() % PROGRESS_INTERVAL == 0) {
+                    LOG.info("Syncing bucket [{}]: {}", bucketName, result);
+                }
+
+                sourceEntry = next(source);
+                if (comparison == 0) {
+                    targetEntry = next(target);
+                }
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+            throw ObjectHelper.wrapRuntimeCamelException(e.getCause());
+        }
+
+        LOG.debug("Synced bucket [{}]: {}", bucketName, result);
+        return result;
+    }
+
+    /**
+     * Removes the completed copies, failing if one of them failed
+     */
+    private void awaitCompleted(LinkedList<Future<Void>> futures) throws Exception {
+        for (Iterator<Future<Void>> it = futures.iterator(); it.hasNext();) {
+            Future<Void> future = it.next();
+            if (future.isDone()) {
+                future.get();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Whether the target entry differs from the source object
+     */
+    protected boolean isChanged(Entry source, Entry target, boolean bucketTarget) {
+        if (source.size != target.size) {
+            return true;
+        }
+        if (bucketTarget && isPlainETag(source.eTag) && isPlainETag(target.eTag)) {
+            return !source.eTag.equals(target.eTag);
+        }
+        if (bucketTarget) {
+            // a copy gets a new ETag and a later modification
+            return target.lastModified < source.lastModified;
+        }
+        // the files get the modification of the objects, file systems may only keep seconds
+        return source.lastModified / 1000 != target.lastModified / 1000;
+    }
+
+    /**
+     * Whether the ETag is the MD5 of the content, which isn't the case for multipart uploads
+     */
+    private static boolean isPlainETag(String eTag) {
+        return eTag != null && eTag.indexOf('-') < 0;
+    }
+
+    private void copy(String bucketName, Entry entry, String destinationBucketName, File destinationDirectory) throws Exception {
+        if (destinationBucketName != null) {
+            LOG.trace("Copying object [{}] to bucket [{}]...", entry.key, destinationBucketName);
+
+            endpoint.getS3Client().copyObject(new CopyObjectRequest(bucketName, entry.key, destinationBucketName, entry.key));
+            return;
+        }
+
+        File file = resolve(destinationDirectory, entry.key);
+        file.getParentFile().mkdirs();
+        File tmp = File.createTempFile("camel-aws-s3-sync-", ".tmp", file.getParentFile());
+
+        LOG.trace("Downloading object [{}] to [{}]...", entry.key, file);
+
+        boolean done = false;
+        try {
+            downloader.download(bucketName, entry.key, entry.eTag, entry.size, tmp);
+            tmp.setLastModified(entry.lastModified);
+            if (!tmp.renameTo(file)) {
+                // the rename doesn't replace an existing file on all platforms
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IllegalStateException("Cannot replace " + file);
+                }
+            }
+            done = true;
+        } finally {
+            if (!done) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private void delete(Entry entry, String destinationBucketName, File destinationDirectory) throws IOException {
+        LOG.trace("Deleting [{}] which isn't in the source anymore", entry.key);
+
+        if (destinationBucketName != null) {
+            endpoint.getS3Client().deleteObject(destinationBucketName, entry.key);
+        } else {
+            File file = resolve(destinationDirectory, entry.key);
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Resolves the key as a relative path within the directory. Keys of folder markers, and keys which
+     * would resolve outside the directory, such as keys with <tt>..</tt> segments, aren't synced.
+     *
+     * @return the file of the key, or <tt>null</tt> if the key isn't synced to a file
+     */
+    private static File resolve(File directory, String key) throws IOException {
+        if (key.endsWith("/")) {
+            LOG.debug("Skipping folder marker [{}]", key);
+            return null;
+        }
+
+        File root = directory.getCanonicalFile();
+        File file = new File(root, key).getCanonicalFile();
+        String rootPath = root.getPath().endsWith(File.separator) ? root.getPath() : root.getPath() + File.separator;
+        if (!file.getPath().startsWith(rootPath)) {
+            LOG.warn("Skipping object [{}] which would be synced outside of the directory [{}]", key, directory);
+            return null;
+        }
+        return file;
+    }
+
+    private static Entry next(Iterator<Entry> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * An object or file to sync, identified by its key
+     */
+    protected static final class Entry {
+        private final String key;
+        private final long size;
+        private final String eTag;
+        private final long lastModified;
+
+        Entry(String key, long size, String eTag, long lastModified) {
+            this.key = key;
+            this.size = size;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry[key=" + key + ", size=" + size + ", eTag=" + eTag + "]";
+        }
+    }
+
+    /**
+     * Lists the objects of a bucket in key order, one page at a time
+     */
+    private final class BucketIterator implements Iterator<Entry> {
+        private final String bucketName;
+        private final String prefix;
+        private Iterator<S3ObjectSummary> page = Collections.<S3ObjectSummary>emptyList().iterator();
+        private String marker;
+        private boolean truncated = true;
+
+        BucketIterator(String bucketName, String prefix) {
+            this.bucketName = bucketName;
+            this.prefix = prefix;
+        }
+
+        public boolean hasNext() {
+            while (!page.hasNext() && truncated) {
+                ListObjectsRequest listObjectsRequest = new ListObjectsRequest();
+                listObjectsRequest.setBucketName(bucketName);
+                listObjectsRequest.setPrefix(prefix);
+                listObjectsRequest.setMarker(marker);
+                listObjectsRequest.setMaxKeys(MAX_KEYS);
+
+                ObjectListing listing = endpoint.getS3Client().listObjects(listObjectsRequest);
+                List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+                page = summaries.iterator();
+                truncated = listing.isTruncated() && !summaries.isEmpty();
+                if (!summaries.isEmpty()) {
+                    marker = summaries.get(summaries.size() - 1).getKey();
+                }
+            }
+            return page.hasNext();
+        }
+
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            S3ObjectSummary summary = page.next();
+            Date lastModified = summary.getLastModified();
+            return new Entry(summary.getKey(), summary.getSize(), summary.getETag(), lastModified != null ? lastModified.getTime() : 0);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Walks the files of a directory in the order of their keys, holding one listing per directory level
+     */
+    private static final class DirectoryIterator implements Iterator<Entry> {
+        // sorting a directory as its key, with the separator, keeps its files next to each other in key order
+        private static final Comparator<File> KEY_ORDER = new Comparator<File>() {
+            public int compare(File file1, File file2) {
+                return name(file1).compareTo(name(file2));
+            }
+
+            private String name(File file) {
+                return file.isDirectory() ? file.getName() + "/" : file.getName();
+            }
+        };
+
+        private final File root;
+        private final String prefix;
+        private final LinkedList<Iterator<File>> stack = new LinkedList<Iterator<File>>();
+        private Entry next;
+
+        DirectoryIterator(File root, String prefix) {
+            this.root = root;
+            this.prefix = prefix != null ? prefix : "";
+            // only the directory of the prefix holds keys with the prefix
+            int separator = this.prefix.lastIndexOf('/');
+            File start = separator >= 0 ? new File(root, this.prefix.substring(0, separator)) : root;
+            push(start);
+        }
+
+        private void push(File directory) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                Arrays.sort(files, KEY_ORDER);
+                stack.addFirst(new ArrayList<File>(Arrays.asList(files)).iterator());
+            }
+        }
+
+        public boolean hasNext() {
+            while (next == null && !stack.isEmpty()) {
+                Iterator<File> files = stack.getFirst();
+                if (!files.hasNext()) {
+                    stack.removeFirst();
+                    continue;
+                }
+
+                File file = files.next();
+                if (file.getName().startsWith("camel-aws-s3-sync-")) {
+                    // left behind by an interrupted download
+                    continue;
+                }
+                if (file.isDirectory()) {
+                    push(file);
+                    continue;
+                }
+
+                String key = root.toURI().relativize(file.toURI()).getPath();
+                if (key.startsWith(prefix)) {
+                    next = new Entry(key, file.length(), null, file.lastModified());
+                }
+            }
+            return next != null;
+        }
+
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry answer = next;
+            next = null;
+            return answer;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress and outcome of a sync
+ */
+public class S3SyncResult {
+
+    private final AtomicLong compared = new AtomicLong();
+    private final AtomicLong copied = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    void compared() {
+        compared.incrementAndGet();
+    }
+
+    void copied(long size) {
+        copied.incrementAndGet();
+        bytesCopied.addAndGet(size);
+    }
+
+    void unchanged(long size) {
+        bytesSaved.addAndGet(size);
+    }
+
+    void deleted() {
+        deleted.incrementAndGet();
+    }
+
+    /**
+     * @return the number of source objects compared with the target so far
+     */
+    public long getCompared() {
+        return compared.get();
+    }
+
+    /**
+     * @return the number of objects which were new or changed and have been copied
+     */
+    public long getCopied() {
+        return copied.get();
+    }
+
+    /**
+     * @return the number of target objects which have been deleted because they are no longer in the source
+     */
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    public long getBytesCopied() {
+        return bytesCopied.get();
+    }
+
+    /**
+     * @return the number of bytes of the unchanged objects, which didn't have to be copied
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    @Override
+    public String toString() {
+        return "S3SyncResult[compared=" + compared + ", copied=" + copied + ", deleted=" + deleted
+            + ", bytesCopied=" + bytesCopied + ", bytesSaved=" + bytesSaved + "]";
+    }
+}
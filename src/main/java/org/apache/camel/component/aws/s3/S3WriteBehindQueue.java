@@ -0,0 +1,419 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+import org.apache.camel.impl.ServiceSupport;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A write-behind queue which journals bodies to a local directory and uploads them in the background.
+ * <p/>
+ * An entry consists of a data file with the body and an entry file with the key, which is written
+ * last, so only completely journaled bodies are uploaded. The entries are retried until they succeed
+ * and picked up again after a restart. Entries of different keys are uploaded in parallel, but an entry
+ * waits until the entries journaled before for the same key have been uploaded, so the last journaled
+ * body of a key is the one which ends up in the bucket. When the journal
+ * exceeds the configured disk usage, adding to the queue blocks until uploads have freed enough space.
+ * <p/>
+ * The directory must not be shared between producers.
+ */
+public class S3WriteBehindQueue extends ServiceSupport {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3WriteBehindQueue.class);
+    private static final String DATA_SUFFIX = ".data";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final S3Endpoint endpoint;
+    private final S3MultipartUploader uploader;
+    private final ScheduledExecutorService executorService;
+    private final File directory;
+    // the pending entries by id, the ids sort in the order the entries were journaled
+    private final Map<String, Long> pending = new TreeMap<String, Long>();
+    // the ids of the pending entries by key in the order they were journaled, only the first one is scheduled
+    private final Map<String, LinkedList<String>> pendingByKey = new HashMap<String, LinkedList<String>>();
+    private final AtomicLong sequence = new AtomicLong();
+    private long diskUsage;
+    private final Object unknownLengthLock = new Object();
+
+    public S3WriteBehindQueue(S3Endpoint endpoint, S3MultipartUploader uploader, ScheduledExecutorService executorService) {
+        this.endpoint = endpoint;
+        this.uploader = uploader;
+        this.executorService = executorService;
+        this.directory = new File(endpoint.getConfiguration().getWriteBehindDirectory());
+    }
+
+    /**
+     * Journals a body of unknown length and schedules its upload, blocking while the journal is full.
+     *
+     * @param key the key of the object
+     * @param body the body to upload
+     */
+    public void add(String key, InputStream body) throws IOException, InterruptedException {
+        add(key, body, -1);
+    }
+
+    /**
+     * Journals the body and schedules its upload, blocking while the journal is full. The space for
+     * the body is reserved before it's written, so concurrent producers don't exceed the disk usage.
+     *
+     * @param key the key of the object
+     * @param body the body to upload
+     * @param expectedLength the length of the body, or a negative value if it's unknown
+     */
+    public void add(String key, InputStream body, long expectedLength) throws IOException, InterruptedException {
+        add(key, body, expectedLength, null);
+    }
+
+    /**
+     * Journals the body and schedules its upload, blocking while the journal is full. The space for
+     * the body is reserved before it's written, so concurrent producers don't exceed the disk usage.
+     *
+     * @param key the key of the object
+     * @param body the body to upload
+     * @param expectedLength the length of the body, or a negative value if it's unknown
+     * @param contentEncoding the content encoding the body is already encoded with, may be <tt>null</tt>
+     */
+    public void add(String key, InputStream body, long expectedLength, String contentEncoding) throws IOException, InterruptedException {
+        String id = String.format("%013d-%06d", System.currentTimeMillis(), sequence.incrementAndGet() % 1000000);
+        File data = new File(directory, id + DATA_SUFFIX);
+
+        long length;
+        if (expectedLength >= 0) {
+            reserve(expectedLength);
+            length = write(body, data, expectedLength, false);
+        } else {
+            // bodies of unknown length reserve their space while they are written, one at a time,
+            // so two of them never wait for the space the other one holds
+            synchronized (unknownLengthLock) {
+                length = write(body, data, 0, true);
+            }
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("key", key);
+        properties.setProperty("created", String.valueOf(System.currentTimeMillis()));
+        if (contentEncoding != null) {
+            properties.setProperty("contentEncoding", contentEncoding);
+        }
+        File entry = new File(directory, id + ENTRY_SUFFIX);
+        File tmp = new File(directory, id + ENTRY_SUFFIX + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            properties.store(out, null);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(entry)) {
+            release(length);
+            data.delete();
+            tmp.delete();
+            throw new IOException("Cannot rename " + tmp + " to " + entry);
+        }
+
+        LOG.trace("Journaled object [{}] as entry [{}] with {} bytes", new Object[]{key, id, length});
+        schedule(id, key, Long.parseLong(properties.getProperty("created")));
+    }
+
+    /**
+     * @return the number of journaled entries which haven't been uploaded yet
+     */
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest entry which hasn't been uploaded yet, 0 if there is none
+     */
+    public synchronized long getUploadLag() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        return System.currentTimeMillis() - pending.values().iterator().next();
+    }
+
+    /**
+     * @return the number of bytes in the journal
+     */
+    public synchronized long getDiskUsage() {
+        return diskUsage;
+    }
+
+    protected void upload(String id) throws Exception {
+        File entry = new File(directory, id + ENTRY_SUFFIX);
+        File data = new File(directory, id + DATA_SUFFIX);
+        Properties properties = readEntry(entry);
+        String key = properties.getProperty("key");
+        long length = data.length();
+
+        LOG.trace("Uploading entry [{}] as object [{}]...", id, key);
+
+        ObjectMetadata objectMetadata = endpoint.createObjectMetadata(key);
+        if (properties.getProperty("contentEncoding") != null) {
+            objectMetadata.setContentEncoding(properties.getProperty("contentEncoding"));
+        }
+        if (uploader.isMultipartUpload(length)) {
+            uploader.upload(key, data, objectMetadata);
+        } else {
+            PutObjectRequest putObjectRequest = new PutObjectRequest(endpoint.getConfiguration().getBucketName(), key, data);
+            putObjectRequest.setMetadata(objectMetadata);
+            endpoint.getS3Client().putObject(putObjectRequest);
+        }
+
+        // the entry file goes first, so a crash in between doesn't upload the data again
+        entry.delete();
+        data.delete();
+        release(length);
+
+        LOG.trace("Uploaded entry [{}]", id);
+    }
+
+    /**
+     * Adds the entry to the pending entries, it's only scheduled right away if no other entry of the key is pending
+     */
+    private void schedule(String id, String key, long created) {
+        boolean first;
+        synchronized (this) {
+            pending.put(id, created);
+            LinkedList<String> ids = pendingByKey.get(key);
+            if (ids == null) {
+                ids = new LinkedList<String>();
+                pendingByKey.put(key, ids);
+            }
+            ids.add(id);
+            first = ids.size() == 1;
+        }
+        if (first) {
+            submit(id, key);
+        }
+    }
+
+    private void submit(final String id, final String key) {
+        executorService.submit(new Runnable() {
+            public void run() {
+                try {
+                    upload(id);
+                } catch (Exception e) {
+                    long retryDelay = endpoint.getConfiguration().getWriteBehindRetryDelay();
+                    LOG.warn("Error occurred during uploading entry [" + id + "], retrying in " + retryDelay + " ms", e);
+                    if (isRunAllowed()) {
+                        executorService.schedule(this, retryDelay, TimeUnit.MILLISECONDS);
+                    }
+                    return;
+                }
+
+                String next = uploaded(id, key);
+                if (next != null && isRunAllowed()) {
+                    submit(next, key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes the uploaded entry from the pending entries
+     *
+     * @return the id of the next entry of the key, or <tt>null</tt> if there is none
+     */
+    private synchronized String uploaded(String id, String key) {
+        pending.remove(id);
+        LinkedList<String> ids = pendingByKey.get(key);
+        if (ids == null || !ids.remove(id)) {
+            // the queue has been stopped in the meantime
+            return null;
+        }
+        if (ids.isEmpty()) {
+            pendingByKey.remove(key);
+            return null;
+        }
+        return ids.getFirst();
+    }
+
+    /**
+     * Reserves space for a body of known length before it's written
+     */
+    private synchronized void reserve(long length) throws InterruptedException {
+        long maxDiskUsage = endpoint.getConfiguration().getWriteBehindMaxDiskUsage();
+        // a body larger than the whole journal is let through once the journal is empty
+        while (maxDiskUsage > 0 && diskUsage > 0 && diskUsage + length > maxDiskUsage) {
+            LOG.debug("Journal [{}] is full with {} bytes, waiting for uploads...", directory, diskUsage);
+            wait();
+        }
+        diskUsage += length;
+    }
+
+    private synchronized void release(long length) {
+        diskUsage -= length;
+        notifyAll();
+    }
+
+    /**
+     * Reserves space for a body of unknown length which already holds <tt>own</tt> bytes of the journal.
+     * It only waits while other entries use the journal, so a body larger than the whole journal is let
+     * through once the journal is empty.
+     */
+    private synchronized void reserveMore(long length, long own) throws InterruptedException {
+        long maxDiskUsage = endpoint.getConfiguration().getWriteBehindMaxDiskUsage();
+        while (maxDiskUsage > 0 && diskUsage - own > 0 && diskUsage + length > maxDiskUsage) {
+            LOG.debug("Journal [{}] is full with {} bytes, waiting for uploads...", directory, diskUsage);
+            wait();
+        }
+        diskUsage += length;
+    }
+
+    /**
+     * Writes the body to the data file, reserving the bytes which exceed the reserved space while writing.
+     *
+     * @param reserved the space already reserved for the body
+     * @param wait whether to wait for space when the body exceeds the reserved space, otherwise the
+     *             reservation just grows, as the reserved space was only an estimate
+     * @return the length of the body
+     */
+    private long write(InputStream body, File data, long reserved, boolean wait) throws IOException, InterruptedException {
+        long length = 0;
+        FileOutputStream out = null;
+        boolean done = false;
+        try {
+            out = new FileOutputStream(data);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                if (length + read > reserved) {
+                    long more = length + read - reserved;
+                    if (wait) {
+                        reserveMore(more, reserved);
+                    } else {
+                        synchronized (this) {
+                            diskUsage += more;
+                        }
+                    }
+                    reserved += more;
+                }
+                out.write(buffer, 0, read);
+                length += read;
+            }
+            out.getFD().sync();
+            done = true;
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            if (!done) {
+                release(reserved);
+                data.delete();
+            }
+        }
+
+        // the expected length was too large
+        if (reserved > length) {
+            release(reserved - length);
+        }
+        return length;
+    }
+
+    private Properties readEntry(File entry) throws IOException {
+        Properties properties = new Properties();
+        FileInputStream in = new FileInputStream(entry);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        directory.mkdirs();
+
+        // drop what was left behind by an interrupted journaling
+        String[] names = directory.list();
+        if (names == null) {
+            throw new IOException("Cannot list journal directory " + directory);
+        }
+        for (String name : names) {
+            if (name.endsWith(".tmp")) {
+                new File(directory, name).delete();
+            } else if (name.endsWith(DATA_SUFFIX)
+                && !new File(directory, name.substring(0, name.length() - DATA_SUFFIX.length()) + ENTRY_SUFFIX).exists()) {
+                new File(directory, name).delete();
+            }
+        }
+
+        String[] entries = directory.list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(ENTRY_SUFFIX);
+            }
+        });
+        Arrays.sort(entries);
+        for (String name : entries) {
+            String id = name.substring(0, name.length() - ENTRY_SUFFIX.length());
+            File data = new File(directory, id + DATA_SUFFIX);
+            if (!data.exists()) {
+                // nothing left to upload
+                new File(directory, name).delete();
+                continue;
+            }
+
+            Properties properties = readEntry(new File(directory, name));
+            synchronized (this) {
+                diskUsage += data.length();
+            }
+            schedule(id, properties.getProperty("key"), Long.parseLong(properties.getProperty("created")));
+        }
+
+        LOG.debug("Recovered {} entries with {} bytes from journal [{}]", new Object[]{entries.length, diskUsage, directory});
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        // the pending entries stay in the journal and are uploaded after the next start
+        synchronized (this) {
+            pending.clear();
+            pendingByKey.clear();
+            diskUsage = 0;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "S3WriteBehindQueue[" + directory + "]";
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Content held in a single buffer on the heap, or in a direct buffer borrowed from a {@link S3BufferPool}.
+ */
+public class S3BufferedContent extends S3Content {
+
+    private final ByteBuffer buffer;
+    private final S3BufferPool pool;
+
+    /**
+     * @param buffer the buffer, flipped for reading the content
+     * @param pool the pool the buffer is returned to, or <tt>null</tt>
+     */
+    public S3BufferedContent(ByteBuffer buffer, S3BufferPool pool) {
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    /**
+     * Reads the channel into a buffer sized for the expected length, which grows if the length was wrong.
+     *
+     * @param channel the channel to read
+     * @param length the expected number of bytes
+     * @param pool the pool to borrow the buffer from if the length fits, or <tt>null</tt>
+     * @return the content
+     */
+    public static S3BufferedContent read(ReadableByteChannel channel, int length, S3BufferPool pool) throws IOException {
+        boolean pooled = pool != null && length <= pool.getBufferSize();
+        ByteBuffer buffer = pooled ? pool.acquire() : ByteBuffer.allocate(Math.max(length, 1));
+
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer probe = ByteBuffer.allocate(1);
+                if (channel.read(probe) < 0) {
+                    break;
+                }
+
+                // the content length was wrong, so grow the buffer
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                probe.flip();
+                larger.put(probe);
+                if (pooled) {
+                    pool.release(buffer);
+                    pooled = false;
+                }
+                buffer = larger;
+            }
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+
+        buffer.flip();
+        return new S3BufferedContent(buffer, pooled ? pool : null);
+    }
+
+    public long getLength() {
+        return buffer.remaining();
+    }
+
+    public InputStream getInputStream() {
+        return new ByteBufferInputStream(getByteBuffer());
+    }
+
+    public ByteBuffer getByteBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public void release() {
+        if (pool != null) {
+            pool.release(buffer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "S3BufferedContent[length=" + getLength() + ", direct=" + buffer.isDirect() + "]";
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer
+     */
+    static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses and decompresses object content while it's streamed, using the codecs which
+ * can be declared as HTTP content encoding.
+ */
+public final class S3Compression {
+
+    /** gzip with the default compression level */
+    public static final String GZIP = "gzip";
+    /** zlib deflate with the fastest compression level */
+    public static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private S3Compression() {
+        // helper class
+    }
+
+    /**
+     * @return whether the codec is supported
+     */
+    public static boolean isSupported(String codec) {
+        return GZIP.equalsIgnoreCase(codec) || DEFLATE.equalsIgnoreCase(codec);
+    }
+
+    /**
+     * Returns a stream which reads the content compressed with the codec, compressing one
+     * buffer at a time.
+     *
+     * @param in the uncompressed content
+     * @param codec the codec
+     * @return the compressed content
+     */
+    public static InputStream compress(InputStream in, String codec) throws IOException {
+        if (!isSupported(codec)) {
+            throw new IllegalArgumentException("Unsupported compression: " + codec);
+        }
+        return new CompressingInputStream(in, codec);
+    }
+
+    /**
+     * Returns a stream which decompresses the content if it's encoded with a supported codec.
+     *
+     * @param in the content
+     * @param contentEncoding the content encoding of the object, may be <tt>null</tt>
+     * @return the decompressed content, or the content itself if it isn't encoded with a supported codec
+     */
+    public static InputStream decompress(InputStream in, String contentEncoding) throws IOException {
+        if (GZIP.equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        } else if (DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Pulls the uncompressed content through a compressor whenever the compressed bytes
+     * of the previous buffer have been read.
+     */
+    static final class CompressingInputStream extends InputStream {
+        private final InputStream in;
+        private final byte[] input = new byte[BUFFER_SIZE];
+        private final PendingBytes pending = new PendingBytes();
+        private final OutputStream compressor;
+        private boolean finished;
+
+        CompressingInputStream(InputStream in, String codec) throws IOException {
+            this.in = in;
+            if (GZIP.equalsIgnoreCase(codec)) {
+                this.compressor = new GZIPOutputStream(pending, BUFFER_SIZE);
+            } else {
+                this.compressor = new DeflaterOutputStream(pending, new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (pending.available() == 0 && !finished) {
+                int read = in.read(input);
+                if (read < 0) {
+                    compressor.close();
+                    finished = true;
+                } else {
+                    compressor.write(input, 0, read);
+                }
+            }
+            return pending.available() == 0 ? -1 : pending.take(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * The compressed bytes which haven't been read yet
+     */
+    static final class PendingBytes extends OutputStream {
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int start;
+        private int end;
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (end + length > buffer.length) {
+                // move the unread bytes to the front, and grow if they still don't fit
+                int available = available();
+                byte[] target = available + length > buffer.length ? new byte[Math.max(buffer.length * 2, available + length)] : buffer;
+                System.arraycopy(buffer, start, target, 0, available);
+                buffer = target;
+                start = 0;
+                end = available;
+            }
+            System.arraycopy(bytes, offset, buffer, end, length);
+            end += length;
+        }
+
+        int available() {
+            return end - start;
+        }
+
+        int take(byte[] bytes, int offset, int length) {
+            int count = Math.min(length, available());
+            System.arraycopy(buffer, start, bytes, offset, count);
+            start += count;
+            return count;
+        }
+    }
+}
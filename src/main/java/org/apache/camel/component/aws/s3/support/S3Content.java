@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The materialized content of an S3 object, used as message body.
+ * <p/>
+ * The content is converted to streams, byte arrays, strings, buffers or files by the
+ * {@link S3ContentConverter}. It is released when the exchange is done, so it must not
+ * be used after the exchange completed.
+ */
+public abstract class S3Content {
+
+    /**
+     * @return the number of bytes of the content
+     */
+    public abstract long getLength();
+
+    /**
+     * @return a new stream reading the content from its start
+     */
+    public abstract InputStream getInputStream() throws IOException;
+
+    /**
+     * @return a read-only buffer of the content
+     */
+    public abstract ByteBuffer getByteBuffer() throws IOException;
+
+    /**
+     * @return the file holding the content, or <tt>null</tt> if the content isn't kept in a file
+     */
+    public File getFile() throws IOException {
+        return null;
+    }
+
+    /**
+     * @return a copy of the content on the heap
+     */
+    public byte[] getBytes() throws IOException {
+        ByteBuffer buffer = getByteBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Frees the resources held by the content
+     */
+    public abstract void release();
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import org.apache.camel.Converter;
+import org.apache.camel.Exchange;
+
+/**
+ * Type converters for the {@link S3Content} bodies of the S3 consumer
+ */
+@Converter
+public final class S3ContentConverter {
+
+    private S3ContentConverter() {
+        // helper class
+    }
+
+    @Converter
+    public static InputStream toInputStream(S3Content content) throws IOException {
+        return content.getInputStream();
+    }
+
+    @Converter
+    public static byte[] toByteArray(S3Content content) throws IOException {
+        return content.getBytes();
+    }
+
+    @Converter
+    public static ByteBuffer toByteBuffer(S3Content content) throws IOException {
+        return content.getByteBuffer();
+    }
+
+    @Converter
+    public static File toFile(S3Content content) throws IOException {
+        return content.getFile();
+    }
+
+    @Converter
+    public static String toString(S3Content content, Exchange exchange) throws IOException {
+        String charsetName = exchange != null ? exchange.getProperty(Exchange.CHARSET_NAME, String.class) : null;
+        Charset charset = charsetName != null ? Charset.forName(charsetName) : Charset.defaultCharset();
+        return charset.decode(content.getByteBuffer()).toString();
+    }
+
+    @Converter
+    public static ObjectMetadata toObjectMetadata(S3LazyContent content) {
+        return content.getObjectMetadata();
+    }
+}
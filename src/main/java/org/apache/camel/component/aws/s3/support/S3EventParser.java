@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import org.apache.camel.component.aws.support.JsonReader;
+
+/**
+ * Parses the object-created events of S3 bucket notifications, either as delivered to a queue
+ * or wrapped in the notification of a topic the queue is subscribed to.
+ */
+public final class S3EventParser {
+
+    private S3EventParser() {
+        // helper class
+    }
+
+    /**
+     * @param body the body of the message
+     * @return the objects the message reports as created, empty for other events and test events
+     * @throws IllegalArgumentException if the body isn't a JSON object, or the records aren't structured as events
+     */
+    @SuppressWarnings("unchecked")
+    public static List<S3ObjectSummary> parseCreatedObjects(String body) {
+        Map<String, Object> event = asMap(new JsonReader(body).readValue());
+        if ("Notification".equals(event.get("Type")) && event.get("Message") instanceof String) {
+            // the event as published to a topic
+            event = asMap(new JsonReader((String) event.get("Message")).readValue());
+        }
+
+        List<S3ObjectSummary> answer = new ArrayList<S3ObjectSummary>();
+        Object records = event.get("Records");
+        if (records == null) {
+            return answer;
+        } else if (!(records instanceof List)) {
+            throw new IllegalArgumentException("Expected a JSON array of records in the event, but was " + records);
+        }
+
+        for (Object element : (List<Object>) records) {
+            Map<String, Object> record = asMap(element);
+            String eventName = asString(record.get("eventName"));
+            if (eventName == null || !eventName.startsWith("ObjectCreated:")) {
+                continue;
+            }
+
+            Map<String, Object> s3 = asMap(record.get("s3"));
+            Map<String, Object> object = asMap(s3.get("object"));
+
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setBucketName(asString(asMap(s3.get("bucket")).get("name")));
+            summary.setKey(decodeKey(asString(object.get("key"))));
+            summary.setETag(asString(object.get("eTag")));
+            if (object.get("size") instanceof Number) {
+                summary.setSize(((Number) object.get("size")).longValue());
+            }
+            answer.add(summary);
+        }
+        return answer;
+    }
+
+    /**
+     * The keys in events are URL encoded
+     */
+    private static String decodeKey(String key) {
+        try {
+            if (key == null) {
+                throw new IllegalArgumentException("Expected the key of the created object in the event");
+            }
+            return URLDecoder.decode(key, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String asString(Object value) {
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException("Expected a JSON string in the event, but was " + value);
+        }
+        return (String) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object in the event, but was " + value);
+        }
+        return (Map<String, Object>) value;
+    }
+}
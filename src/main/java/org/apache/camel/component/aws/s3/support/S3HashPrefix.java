@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads keys over the key space with a short hexadecimal hash prefix, so that sequential keys
+ * don't all land in the same partition of a bucket. A key <tt>logs/2011-03-15.txt</tt> becomes
+ * <tt>7f3a/logs/2011-03-15.txt</tt> with a prefix of four characters.
+ */
+public final class S3HashPrefix {
+
+    /** The user metadata of an object holding its key without the hash prefix */
+    public static final String ORIGINAL_KEY_METADATA = "original-key";
+    /** The longest supported prefix, which spreads the keys over 65536 prefixes */
+    public static final int MAX_LENGTH = 4;
+    /** The longest hash prefix a consumer lists as a shard of its own, which bounds a pass over the bucket to 256 listings */
+    public static final int MAX_LISTED_LENGTH = 2;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private S3HashPrefix() {
+        // helper class
+    }
+
+    /**
+     * @param key the key
+     * @param source the text the hash is derived from, usually the key itself
+     * @param length the number of hexadecimal characters of the prefix
+     * @return the key with the hash prefix
+     */
+    public static String apply(String key, String source, int length) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(source.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder answer = new StringBuilder(length + 1 + key.length());
+        for (int index = 0; index < length; index++) {
+            int b = digest[index / 2];
+            answer.append(HEX[index % 2 == 0 ? (b >> 4) & 0xf : b & 0xf]);
+        }
+        return answer.append('/').append(key).toString();
+    }
+
+    /**
+     * @return the key without its hash prefix, the key itself if the length is 0
+     */
+    public static String strip(String key, int length) {
+        if (length > 0 && key.length() > length && key.charAt(length) == '/') {
+            return key.substring(length + 1);
+        }
+        return key;
+    }
+
+    /**
+     * @return all hash prefixes of the given length, including the separator
+     */
+    public static List<String> prefixes(int length) {
+        List<String> answer = new ArrayList<String>(1 << (4 * length));
+        for (int value = 0; value < 1 << (4 * length); value++) {
+            StringBuilder prefix = new StringBuilder(length + 1);
+            for (int index = length - 1; index >= 0; index--) {
+                prefix.append(HEX[(value >> (4 * index)) & 0xf]);
+            }
+            answer.add(prefix.append('/').toString());
+        }
+        return answer;
+    }
+}
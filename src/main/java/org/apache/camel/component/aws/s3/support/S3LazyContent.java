@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content of a listed object which isn't fetched before it's read.
+ * <p/>
+ * Exchanges built from a listing carry this content, so routes which filter on the key,
+ * size or last-modified date only pay for the listing. The object is fetched with a GET
+ * when the content is read, and the remaining metadata with a HEAD when it's asked for.
+ */
+public class S3LazyContent extends S3Content {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3LazyContent.class);
+
+    private final AmazonS3 s3Client;
+    private final S3ObjectSummary summary;
+    private final File directory;
+    private ObjectMetadata objectMetadata;
+    private S3Content fetched;
+    // the streams handed out by getInputStream, each holding a connection until it's released
+    private final List<S3ObjectStream> streams = new ArrayList<S3ObjectStream>();
+
+    /**
+     * @param s3Client the client used to fetch the object
+     * @param summary the listed object
+     * @param directory the directory the object is spooled to when it's read as file, or <tt>null</tt>
+     */
+    public S3LazyContent(AmazonS3 s3Client, S3ObjectSummary summary, File directory) {
+        this.s3Client = s3Client;
+        this.summary = summary;
+        this.directory = directory;
+    }
+
+    public String getBucketName() {
+        return summary.getBucketName();
+    }
+
+    public String getKey() {
+        return summary.getKey();
+    }
+
+    public long getLength() {
+        return summary.getSize();
+    }
+
+    /**
+     * @return whether the object has been fetched already
+     */
+    public synchronized boolean isFetched() {
+        return fetched != null;
+    }
+
+    /**
+     * Streams the object directly from S3, every call performs a GET of its own. The streams which
+     * haven't been read to the end or closed by the time the content is released are aborted.
+     */
+    public synchronized InputStream getInputStream() throws IOException {
+        if (fetched != null) {
+            return fetched.getInputStream();
+        }
+        S3Object s3Object = getObject();
+        S3ObjectStream stream = new S3ObjectStream(s3Object.getObjectContent(), s3Object.getObjectMetadata().getContentLength());
+        streams.add(stream);
+        return stream;
+    }
+
+    /**
+     * Reads the object into a buffer on the heap
+     */
+    public synchronized ByteBuffer getByteBuffer() throws IOException {
+        if (fetched == null) {
+            InputStream in = getObject().getObjectContent();
+            try {
+                fetched = S3BufferedContent.read(Channels.newChannel(in), (int) Math.min(summary.getSize(), Integer.MAX_VALUE - 1), null);
+            } finally {
+                in.close();
+            }
+        }
+        return fetched.getByteBuffer();
+    }
+
+    /**
+     * Spools the object to a temporary file, which is deleted when the content is released
+     */
+    @Override
+    public synchronized File getFile() throws IOException {
+        if (fetched == null || fetched.getFile() == null) {
+            InputStream in = getObject().getObjectContent();
+            S3Content spooled;
+            try {
+                spooled = S3SpooledContent.spool(Channels.newChannel(in), directory);
+            } finally {
+                in.close();
+            }
+
+            // a buffered copy isn't needed anymore
+            if (fetched != null) {
+                fetched.release();
+            }
+            fetched = spooled;
+        }
+        return fetched.getFile();
+    }
+
+    /**
+     * @return the full metadata of the object, fetched with a HEAD request unless the object has been fetched already
+     */
+    public synchronized ObjectMetadata getObjectMetadata() {
+        if (objectMetadata == null) {
+            LOG.trace("Getting metadata of object [{}] from bucket [{}]...", summary.getKey(), summary.getBucketName());
+            objectMetadata = s3Client.getObjectMetadata(summary.getBucketName(), summary.getKey());
+        }
+        return objectMetadata;
+    }
+
+    public synchronized void release() {
+        for (S3ObjectStream stream : streams) {
+            if (!stream.isReleased()) {
+                LOG.debug("Aborting stream of object [{}] which hasn't been closed", summary.getKey());
+                try {
+                    stream.abort();
+                } catch (IOException e) {
+                    LOG.warn("Cannot abort stream of object " + summary.getKey(), e);
+                }
+            }
+        }
+        streams.clear();
+        if (fetched != null) {
+            fetched.release();
+            fetched = null;
+        }
+    }
+
+    private S3Object getObject() {
+        LOG.trace("Getting object [{}] from bucket [{}]...", summary.getKey(), summary.getBucketName());
+
+        S3Object s3Object = s3Client.getObject(summary.getBucketName(), summary.getKey());
+        objectMetadata = s3Object.getObjectMetadata();
+        return s3Object;
+    }
+
+    @Override
+    public String toString() {
+        return "S3LazyContent[bucketName=" + summary.getBucketName() + ", key=" + summary.getKey() + ", fetched=" + isFetched() + "]";
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+
+/**
+ * Wraps the content stream of an S3 object, which holds a pooled HTTP connection until it's
+ * read to the end, closed or aborted.
+ * <p/>
+ * The stream keeps track of how far it has been read, so whoever releases it can decide
+ * between closing it, which drains the remaining content to reuse the connection, and
+ * aborting it, which drops the connection instead of transferring a large remainder.
+ */
+public class S3ObjectStream extends FilterInputStream {
+
+    private final long length;
+    private long position;
+    private volatile boolean endOfStream;
+    private volatile boolean closed;
+
+    /**
+     * @param in the content stream of the object
+     * @param length the content length of the object, or a non-positive value if it's unknown
+     */
+    public S3ObjectStream(InputStream in, long length) {
+        super(in);
+        this.length = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int answer = super.read();
+        if (answer < 0) {
+            endOfStream = true;
+        } else {
+            position++;
+        }
+        return answer;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int count) throws IOException {
+        int answer = super.read(bytes, offset, count);
+        if (answer < 0) {
+            endOfStream = true;
+        } else {
+            position += answer;
+        }
+        return answer;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long answer = super.skip(count);
+        position += answer;
+        return answer;
+    }
+
+    @Override
+    public boolean markSupported() {
+        // a reset would break the position tracking
+        return false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            super.close();
+        }
+    }
+
+    /**
+     * Drops the underlying connection without reading the remaining content. Falls back to
+     * closing the stream if it isn't the content stream of an object.
+     */
+    public synchronized void abort() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        if (in instanceof S3ObjectInputStream) {
+            // closing would read the remaining content to reuse the connection
+            ((S3ObjectInputStream) in).getHttpRequest().abort();
+            closed = true;
+            return;
+        }
+        close();
+    }
+
+    /**
+     * @return whether the connection has been given back, because the stream has been closed or read to the end
+     */
+    public boolean isReleased() {
+        return closed || endOfStream;
+    }
+
+    /**
+     * @return the number of bytes read so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of bytes which haven't been read yet, or {@link Long#MAX_VALUE} if the length is unknown
+     */
+    public long getRemaining() {
+        return length > 0 ? Math.max(length - position, 0) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "S3ObjectStream[length=" + length + ", position=" + position + ", closed=" + closed + "]";
+    }
+}
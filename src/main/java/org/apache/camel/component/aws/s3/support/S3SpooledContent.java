@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content spooled to a temporary file, which is exposed memory-mapped when it's read as buffer.
+ * The file is deleted when the content is released.
+ */
+public class S3SpooledContent extends S3Content {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(S3SpooledContent.class);
+
+    private final File file;
+    private ByteBuffer mapped;
+
+    public S3SpooledContent(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Copies the channel into a new temporary file.
+     *
+     * @param channel the channel to read
+     * @param directory the directory of the file, or <tt>null</tt> for the default temporary directory
+     * @return the content
+     */
+    public static S3SpooledContent spool(ReadableByteChannel channel, File directory) throws IOException {
+        File file = File.createTempFile("camel-aws-s3-", ".tmp", directory);
+        FileOutputStream out = new FileOutputStream(file);
+        boolean done = false;
+        try {
+            FileChannel fileChannel = out.getChannel();
+            long position = 0;
+            long transferred;
+            while ((transferred = fileChannel.transferFrom(channel, position, 1024 * 1024)) > 0) {
+                position += transferred;
+            }
+            done = true;
+        } finally {
+            out.close();
+            if (!done) {
+                file.delete();
+            }
+        }
+        return new S3SpooledContent(file);
+    }
+
+    public long getLength() {
+        return file.length();
+    }
+
+    public InputStream getInputStream() throws IOException {
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    /**
+     * Maps the file into memory; the content is not copied onto the heap
+     */
+    public synchronized ByteBuffer getByteBuffer() throws IOException {
+        if (mapped == null) {
+            if (file.length() > Integer.MAX_VALUE) {
+                throw new IOException("File " + file + " is too large to be mapped");
+            }
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                mapped = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            } finally {
+                // a mapping stays valid after the channel is closed
+                randomAccessFile.close();
+            }
+        }
+        return mapped.asReadOnlyBuffer();
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized void release() {
+        mapped = null;
+        if (!file.delete() && file.exists()) {
+            LOG.warn("Cannot delete spooled file [{}]", file);
+            file.deleteOnExit();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "S3SpooledContent[" + file + "]";
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.camel.component.aws.sns;
  * 
  */
 import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sqs.AmazonSQSClient;
 
 public class SnsConfiguration implements Cloneable {
 
@@ -35,6 +36,13 @@ public class SnsConfiguration implements Cloneable {
     private String subject;
     private String topicArn;
 
+    // Consumer only properties
+    private String queueName;
+    private AmazonSQSClient amazonSQSClient;
+    private String amazonSQSEndpoint;
+    private Boolean deleteAfterRead = true;
+    private Integer maxMessagesPerPoll;
+
     public void setAmazonSNSEndpoint(String awsSNSEndpoint) {
         this.amazonSNSEndpoint = awsSNSEndpoint;
     }
@@ -83,6 +91,46 @@ public class SnsConfiguration implements Cloneable {
         this.amazonSNSClient = amazonSNSClient;
     }
 
+    public String getQueueName() {
+        return queueName;
+    }
+
+    public void setQueueName(String queueName) {
+        this.queueName = queueName;
+    }
+
+    public AmazonSQSClient getAmazonSQSClient() {
+        return amazonSQSClient;
+    }
+
+    public void setAmazonSQSClient(AmazonSQSClient amazonSQSClient) {
+        this.amazonSQSClient = amazonSQSClient;
+    }
+
+    public String getAmazonSQSEndpoint() {
+        return amazonSQSEndpoint;
+    }
+
+    public void setAmazonSQSEndpoint(String amazonSQSEndpoint) {
+        this.amazonSQSEndpoint = amazonSQSEndpoint;
+    }
+
+    public Boolean isDeleteAfterRead() {
+        return deleteAfterRead;
+    }
+
+    public void setDeleteAfterRead(Boolean deleteAfterRead) {
+        this.deleteAfterRead = deleteAfterRead;
+    }
+
+    public Integer getMaxMessagesPerPoll() {
+        return maxMessagesPerPoll;
+    }
+
+    public void setMaxMessagesPerPoll(Integer maxMessagesPerPoll) {
+        this.maxMessagesPerPoll = maxMessagesPerPoll;
+    }
+
     public String getTopicName() {
         return topicName;
     }
@@ -94,11 +142,15 @@ public class SnsConfiguration implements Cloneable {
     @Override
     public String toString() {
         return "SnsConfiguration[topicName=" + topicName
-            + ", amazonSQSClient=" + amazonSNSClient
+            + ", amazonSNSClient=" + amazonSNSClient
             + ", accessKey=" + accessKey
             + ", secretKey=xxxxxxxxxxxxxxx" 
             + ", subject=" + subject
             + ", topicArn=" + topicArn
+            + ", queueName=" + queueName
+            + ", amazonSQSClient=" + amazonSQSClient
+            + ", deleteAfterRead=" + deleteAfterRead
+            + ", maxMessagesPerPoll=" + maxMessagesPerPoll
             + "]";
     }
 }
\ No newline at end of file
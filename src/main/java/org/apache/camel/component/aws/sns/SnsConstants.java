@@ -24,4 +24,7 @@ public interface SnsConstants {
     
     String MESSAGE_ID = "CamelAwsSnsMessageId";
     String SUBJECT = "CamelAwsSnsSubject";
+    String TOPIC_ARN = "CamelAwsSnsTopicArn";
+    String TIMESTAMP = "CamelAwsSnsTimestamp";
+    String RECEIPT_HANDLE = "CamelAwsSnsReceiptHandle";
 }
\ No newline at end of file
@@ -0,0 +1,249 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.sns;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+
+import org.apache.camel.BatchConsumer;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ShutdownRunningTask;
+import org.apache.camel.impl.DefaultEndpoint;
+import org.apache.camel.impl.ScheduledPollConsumer;
+import org.apache.camel.spi.ShutdownAware;
+import org.apache.camel.spi.Synchronization;
+import org.apache.camel.util.CastUtils;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Consumer of the notifications published to an Amazon Web Service Simple Notification Service
+ * <a href="http://aws.amazon.com/sns/">AWS SNS</a> topic.
+ * <p/>
+ * The notifications are delivered to a queue subscribed to the topic, which is provisioned on start.
+ * A poll receives messages until the queue is drained or <tt>maxMessagesPerPoll</tt> is reached, and a
+ * message is deleted from the queue once its exchange completes.
+ */
+public class SnsConsumer extends ScheduledPollConsumer implements BatchConsumer, ShutdownAware {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(SnsConsumer.class);
+    // the maximum number of messages SQS returns with one receive
+    private static final int MAX_MESSAGES = 10;
+
+    private volatile ShutdownRunningTask shutdownRunningTask;
+    private volatile int pendingExchanges;
+    private String queueUrl;
+
+    public SnsConsumer(SnsEndpoint endpoint, Processor processor) {
+        super(endpoint, processor);
+    }
+
+    @Override
+    protected int poll() throws Exception {
+        // must reset for each poll
+        shutdownRunningTask = null;
+        pendingExchanges = 0;
+
+        Queue<Exchange> exchanges = createExchanges(receiveMessages());
+        return processBatch(CastUtils.cast(exchanges));
+    }
+
+    /**
+     * Receives up to <tt>maxMessagesPerPoll</tt> messages, asking for more as long as full batches are returned.
+     */
+    protected List<Message> receiveMessages() {
+        int maxMessages = getMaxMessagesPerPoll() > 0 ? getMaxMessagesPerPoll() : Integer.MAX_VALUE;
+        List<Message> answer = new LinkedList<Message>();
+        boolean more = true;
+        while (more && answer.size() < maxMessages && isRunAllowed()) {
+            ReceiveMessageRequest request = new ReceiveMessageRequest(queueUrl);
+            request.setMaxNumberOfMessages(Math.min(MAX_MESSAGES, maxMessages - answer.size()));
+
+            LOG.trace("Receiving messages with request [{}]...", request);
+
+            List<Message> messages = getEndpoint().getSQSClient().receiveMessage(request).getMessages();
+            answer.addAll(messages);
+            more = messages.size() == MAX_MESSAGES;
+        }
+        return answer;
+    }
+
+    protected Queue<Exchange> createExchanges(List<Message> messages) {
+        LOG.trace("Received {} messages in this poll", messages.size());
+
+        Queue<Exchange> answer = new LinkedList<Exchange>();
+        for (Message message : messages) {
+            answer.add(getEndpoint().createExchange(message));
+        }
+        return answer;
+    }
+
+    public int processBatch(Queue<Object> exchanges) throws Exception {
+        int total = exchanges.size();
+
+        for (int index = 0; index < total && isBatchAllowed(); index++) {
+            // only loop if we are started (allowed to run)
+            Exchange exchange = ObjectHelper.cast(Exchange.class, exchanges.poll());
+            // add current index and total as properties
+            exchange.setProperty(Exchange.BATCH_INDEX, index);
+            exchange.setProperty(Exchange.BATCH_SIZE, total);
+            exchange.setProperty(Exchange.BATCH_COMPLETE, index == total - 1);
+
+            // update pending number of exchanges
+            pendingExchanges = total - index - 1;
+
+            // add on completion to handle after work when the exchange is done
+            exchange.addOnCompletion(new Synchronization() {
+                public void onComplete(Exchange exchange) {
+                    processCommit(exchange);
+                }
+
+                public void onFailure(Exchange exchange) {
+                    processRollback(exchange);
+                }
+
+                @Override
+                public String toString() {
+                    return "SnsConsumerOnCompletion";
+                }
+            });
+
+            LOG.trace("Processing exchange [{}]...", exchange);
+
+            getProcessor().process(exchange);
+        }
+
+        return total;
+    }
+
+    /**
+     * Strategy to delete the message after being processed.
+     *
+     * @param exchange the exchange
+     */
+    protected void processCommit(Exchange exchange) {
+        if (!getConfiguration().isDeleteAfterRead()) {
+            return;
+        }
+
+        try {
+            String receiptHandle = exchange.getIn().getHeader(SnsConstants.RECEIPT_HANDLE, String.class);
+
+            LOG.trace("Deleting message with receipt handle {}...", receiptHandle);
+
+            getEndpoint().getSQSClient().deleteMessage(new DeleteMessageRequest(queueUrl, receiptHandle));
+
+            LOG.trace("Message deleted");
+        } catch (AmazonClientException e) {
+            LOG.warn("Error occurred during deleting message", e);
+            exchange.setException(e);
+        }
+    }
+
+    /**
+     * Strategy when processing the exchange failed.
+     *
+     * @param exchange the exchange
+     */
+    protected void processRollback(Exchange exchange) {
+        Exception cause = exchange.getException();
+        if (cause != null) {
+            LOG.warn("Exchange failed, so rolling back message status: " + exchange, cause);
+        } else {
+            LOG.warn("Exchange failed, so rolling back message status: {}", exchange);
+        }
+    }
+
+    public boolean isBatchAllowed() {
+        // stop if we are not running
+        boolean answer = isRunAllowed();
+        if (!answer) {
+            return false;
+        }
+
+        if (shutdownRunningTask == null) {
+            // we are not shutting down so continue to run
+            return true;
+        }
+
+        // we are shutting down so only continue if we are configured to complete all tasks
+        return ShutdownRunningTask.CompleteAllTasks == shutdownRunningTask;
+    }
+
+    public boolean deferShutdown(ShutdownRunningTask shutdownRunningTask) {
+        // store a reference what to do in case when shutting down and we have pending messages
+        this.shutdownRunningTask = shutdownRunningTask;
+        // do not defer shutdown
+        return false;
+    }
+
+    public int getPendingExchangesSize() {
+        // only return the real pending size in case we are configured to complete all tasks
+        if (ShutdownRunningTask.CompleteAllTasks == shutdownRunningTask) {
+            return pendingExchanges;
+        } else {
+            return 0;
+        }
+    }
+
+    public void prepareShutdown() {
+        // noop
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        queueUrl = new SnsQueueSubscriber(getEndpoint()).subscribe();
+
+        LOG.trace("Receiving notifications of topic [{}] from queue [{}]", getConfiguration().getTopicArn(), queueUrl);
+
+        super.doStart();
+    }
+
+    protected SnsConfiguration getConfiguration() {
+        return getEndpoint().getConfiguration();
+    }
+
+    public String getQueueUrl() {
+        return queueUrl;
+    }
+
+    @Override
+    public SnsEndpoint getEndpoint() {
+        return (SnsEndpoint) super.getEndpoint();
+    }
+
+    public void setMaxMessagesPerPoll(int maxMessagesPerPoll) {
+        getEndpoint().setMaxMessagesPerPoll(maxMessagesPerPoll);
+    }
+
+    public int getMaxMessagesPerPoll() {
+        return getEndpoint().getMaxMessagesPerPoll();
+    }
+
+    @Override
+    public String toString() {
+        return "SnsConsumer[" + DefaultEndpoint.sanitizeUri(getEndpoint().getEndpointUri()) + "]";
+    }
+}
@@ -16,17 +16,25 @@
  */
 package org.apache.camel.component.aws.sns;
 
+import java.util.Map;
+
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sns.model.CreateTopicRequest;
 import com.amazonaws.services.sns.model.CreateTopicResult;
+import com.amazonaws.services.sqs.AmazonSQSClient;
 
 import org.apache.camel.CamelContext;
 import org.apache.camel.Consumer;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
 import org.apache.camel.Processor;
 import org.apache.camel.Producer;
-import org.apache.camel.impl.DefaultEndpoint;
+import org.apache.camel.component.aws.support.JsonReader;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.impl.ScheduledPollEndpoint;
+import org.apache.camel.util.CastUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,20 +42,32 @@ import org.slf4j.LoggerFactory;
  * Defines the <a href="http://camel.apache.org/aws.html">AWS SNS Endpoint</a>.  
  *
  */
-public class SnsEndpoint extends DefaultEndpoint {
+public class SnsEndpoint extends ScheduledPollEndpoint {
 
     private static final Logger LOG = LoggerFactory.getLogger(SnsEndpoint.class);
 
     private SnsConfiguration configuration;
     private AmazonSNSClient snsClient;
+    private AmazonSQSClient sqsClient;
+    private int maxMessagesPerPoll = 10;
     
     public SnsEndpoint(String uri, CamelContext context, SnsConfiguration configuration) {
         super(uri, context);
         this.configuration = configuration;
+
+        if (configuration.getMaxMessagesPerPoll() != null) {
+            setMaxMessagesPerPoll(configuration.getMaxMessagesPerPoll());
+        }
     }
 
     public Consumer createConsumer(Processor processor) throws Exception {
-        throw new UnsupportedOperationException("You cannot receive messages from this endpoint");
+        if (configuration.getQueueName() == null) {
+            throw new IllegalArgumentException("queueName must be specified to receive messages from topic " + configuration.getTopicName());
+        }
+
+        SnsConsumer snsConsumer = new SnsConsumer(this, processor);
+        configureConsumer(snsConsumer);
+        return snsConsumer;
     }
 
     public Producer createProducer() throws Exception {
@@ -73,6 +93,53 @@ public class SnsEndpoint extends DefaultEndpoint {
         LOG.trace("Topic created with Amazon resource name: {}", configuration.getTopicArn());
     }
 
+    public Exchange createExchange(com.amazonaws.services.sqs.model.Message msg) {
+        Exchange exchange = new DefaultExchange(this, getExchangePattern());
+        Message message = exchange.getIn();
+        message.setHeader(SnsConstants.RECEIPT_HANDLE, msg.getReceiptHandle());
+
+        Map<String, Object> envelope = parseEnvelope(msg.getBody());
+        if (envelope == null) {
+            // not delivered by a topic, e.g. sent to the queue directly
+            message.setBody(msg.getBody());
+            message.setHeader(SnsConstants.MESSAGE_ID, msg.getMessageId());
+            return exchange;
+        }
+
+        message.setBody(envelope.get("Message"));
+        message.setHeader(SnsConstants.MESSAGE_ID, envelope.get("MessageId"));
+        message.setHeader(SnsConstants.SUBJECT, envelope.get("Subject"));
+        message.setHeader(SnsConstants.TOPIC_ARN, envelope.get("TopicArn"));
+        message.setHeader(SnsConstants.TIMESTAMP, envelope.get("Timestamp"));
+
+        return exchange;
+    }
+
+    /**
+     * Parses the JSON document a topic wraps its notifications in when delivering them to a queue.
+     *
+     * @return the fields of the notification, or <tt>null</tt> if the body isn't a notification
+     */
+    private Map<String, Object> parseEnvelope(String body) {
+        if (body == null || !body.trim().startsWith("{")) {
+            return null;
+        }
+
+        Object value;
+        try {
+            value = new JsonReader(body).readValue();
+        } catch (IllegalArgumentException e) {
+            LOG.trace("Message body isn't a JSON document: {}", e.getMessage());
+            return null;
+        }
+
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<String, Object> envelope = CastUtils.cast((Map<?, ?>) value);
+        return "Notification".equals(envelope.get("Type")) ? envelope : null;
+    }
+
     public SnsConfiguration getConfiguration() {
         return configuration;
     }
@@ -94,6 +161,27 @@ public class SnsEndpoint extends DefaultEndpoint {
         return snsClient;
     }
 
+    public void setSQSClient(AmazonSQSClient sqsClient) {
+        this.sqsClient = sqsClient;
+    }
+
+    public AmazonSQSClient getSQSClient() {
+        if (sqsClient == null) {
+            sqsClient = configuration.getAmazonSQSClient() != null
+                ? configuration.getAmazonSQSClient() : createSQSClient();
+        }
+
+        return sqsClient;
+    }
+
+    public int getMaxMessagesPerPoll() {
+        return maxMessagesPerPoll;
+    }
+
+    public void setMaxMessagesPerPoll(int maxMessagesPerPoll) {
+        this.maxMessagesPerPoll = maxMessagesPerPoll;
+    }
+
     /**
      * Provide the possibility to override this method for an mock implementation
      *
@@ -107,4 +195,18 @@ public class SnsEndpoint extends DefaultEndpoint {
         }
         return client;
     }
-}
\ No newline at end of file
+
+    /**
+     * Provide the possibility to override this method for an mock implementation
+     *
+     * @return AmazonSQSClient
+     */
+    AmazonSQSClient createSQSClient() {
+        AWSCredentials credentials = new BasicAWSCredentials(configuration.getAccessKey(), configuration.getSecretKey());
+        AmazonSQSClient client = new AmazonSQSClient(credentials);
+        if (configuration.getAmazonSQSEndpoint() != null) {
+            client.setEndpoint(configuration.getAmazonSQSEndpoint());
+        }
+        return client;
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.sns;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.sns.model.ListSubscriptionsByTopicRequest;
+import com.amazonaws.services.sns.model.ListSubscriptionsByTopicResult;
+import com.amazonaws.services.sns.model.SubscribeRequest;
+import com.amazonaws.services.sns.model.Subscription;
+import com.amazonaws.services.sqs.model.CreateQueueRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.SetQueueAttributesRequest;
+
+import org.apache.camel.component.aws.support.JsonReader;
+import org.apache.camel.component.aws.support.JsonWriter;
+import org.apache.camel.converter.IOConverter;
+import org.apache.camel.util.CastUtils;
+import org.apache.camel.util.IOHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provisions the queue a topic is consumed from: creates the queue, allows the topic to send to it
+ * and subscribes it to the topic. Each step is skipped if it was already done, so a consumer can be
+ * restarted against the same queue. The permission of the topic is added to the existing policy of
+ * the queue, which keeps the permissions granted to other topics or accounts.
+ */
+public class SnsQueueSubscriber {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(SnsQueueSubscriber.class);
+    private static final String POLICY_TEMPLATE = "default-sqs-policy-template.json";
+    private static final String QUEUE_ARN = "QueueArn";
+    private static final String POLICY = "Policy";
+    private static final String PROTOCOL = "sqs";
+
+    private final SnsEndpoint endpoint;
+
+    public SnsQueueSubscriber(SnsEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Creates the queue if it doesn't exist yet and subscribes it to the topic of the endpoint.
+     *
+     * @return the URL of the queue
+     */
+    public String subscribe() throws IOException {
+        SnsConfiguration configuration = endpoint.getConfiguration();
+        String topicArn = configuration.getTopicArn();
+
+        // creates a new queue, or returns the URL of an existing one
+        String queueUrl = endpoint.getSQSClient().createQueue(new CreateQueueRequest(configuration.getQueueName())).getQueueUrl();
+
+        GetQueueAttributesRequest attributesRequest = new GetQueueAttributesRequest(queueUrl);
+        attributesRequest.setAttributeNames(Arrays.asList(QUEUE_ARN, POLICY));
+        Map<String, String> attributes = endpoint.getSQSClient().getQueueAttributes(attributesRequest).getAttributes();
+        String queueArn = attributes.get(QUEUE_ARN);
+
+        String policy = attributes.get(POLICY);
+        if (policy == null || !policy.contains(topicArn)) {
+            LOG.trace("Allowing topic [{}] to send to queue [{}]...", topicArn, queueArn);
+
+            String template = loadPolicyTemplate().replace("$SQS_ARN", queueArn).replace("$SNS_ARN", topicArn);
+            policy = policy == null ? template : mergePolicy(policy, template, queueArn + "/" + topicArn);
+            endpoint.getSQSClient().setQueueAttributes(new SetQueueAttributesRequest(queueUrl, Collections.singletonMap(POLICY, policy)));
+        }
+
+        if (isSubscribed(topicArn, queueArn)) {
+            LOG.trace("Queue [{}] is already subscribed to topic [{}]", queueArn, topicArn);
+        } else {
+            LOG.trace("Subscribing queue [{}] to topic [{}]...", queueArn, topicArn);
+
+            endpoint.getSNSClient().subscribe(new SubscribeRequest(topicArn, PROTOCOL, queueArn));
+        }
+
+        return queueUrl;
+    }
+
+    /**
+     * Adds the statement of the template to the statements of the existing policy.
+     *
+     * @param statementId the id of the added statement, which has to be unique within the policy
+     * @throws IllegalArgumentException if the existing policy isn't a JSON object
+     */
+    private String mergePolicy(String policy, String template, String statementId) {
+        Object existing = new JsonReader(policy).readValue();
+        if (!(existing instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object as policy of the queue, but was " + policy);
+        }
+        Map<String, Object> merged = CastUtils.cast((Map<?, ?>) existing);
+        Map<String, Object> templatePolicy = CastUtils.cast((Map<?, ?>) new JsonReader(template).readValue());
+        Map<String, Object> statement = CastUtils.cast((Map<?, ?>) ((List<?>) templatePolicy.get("Statement")).get(0));
+        statement.put("Sid", statementId);
+
+        // a policy with a single statement may hold it without an array
+        List<Object> statements = new ArrayList<Object>();
+        Object existingStatements = merged.get("Statement");
+        if (existingStatements instanceof List) {
+            statements.addAll((List<?>) existingStatements);
+        } else if (existingStatements != null) {
+            statements.add(existingStatements);
+        }
+        statements.add(statement);
+        merged.put("Statement", statements);
+
+        return JsonWriter.write(merged);
+    }
+
+    private boolean isSubscribed(String topicArn, String queueArn) {
+        String nextToken = null;
+        do {
+            ListSubscriptionsByTopicRequest request = new ListSubscriptionsByTopicRequest(topicArn);
+            request.setNextToken(nextToken);
+
+            ListSubscriptionsByTopicResult result = endpoint.getSNSClient().listSubscriptionsByTopic(request);
+            for (Subscription subscription : result.getSubscriptions()) {
+                if (PROTOCOL.equals(subscription.getProtocol()) && queueArn.equals(subscription.getEndpoint())) {
+                    return true;
+                }
+            }
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+
+        return false;
+    }
+
+    private String loadPolicyTemplate() throws IOException {
+        InputStream in = endpoint.getCamelContext().getClassResolver().loadResourceAsStream(POLICY_TEMPLATE);
+        if (in == null) {
+            throw new IOException("Cannot find " + POLICY_TEMPLATE + " on the classpath");
+        }
+        try {
+            return IOConverter.toString(in, null);
+        } finally {
+            IOHelper.close(in);
+        }
+    }
+}
@@ -20,6 +20,8 @@ import java.util.Collection;
 
 import com.amazonaws.services.sqs.AmazonSQSClient;
 
+import org.apache.camel.spi.IdempotentRepository;
+
 /**
  * The AWS SQS component configuration properties
  *
@@ -39,6 +41,7 @@ public class SqsConfiguration implements Cloneable {
     private Collection<String> attributeNames;
     private Integer defaultVisibilityTimeout;
     private Integer maxMessagesPerPoll;
+    private IdempotentRepository<String> idempotentRepository;
 
     public void setAmazonSQSEndpoint(String amazonSQSEndpoint) {
         this.amazonSQSEndpoint = amazonSQSEndpoint;
@@ -126,6 +129,20 @@ public class SqsConfiguration implements Cloneable {
         this.maxMessagesPerPoll = maxMessagesPerPoll;
     }
 
+    /**
+     * @return the idempotentRepository
+     */
+    public IdempotentRepository<String> getIdempotentRepository() {
+        return idempotentRepository;
+    }
+
+    /**
+     * @param idempotentRepository the repository of already processed message ids
+     */
+    public void setIdempotentRepository(IdempotentRepository<String> idempotentRepository) {
+        this.idempotentRepository = idempotentRepository;
+    }
+
     @Override
     public String toString() {
         return "SqsConfiguration[queueName=" + queueName
@@ -137,6 +154,7 @@ public class SqsConfiguration implements Cloneable {
             + ", attributeNames=" + attributeNames
             + ", defaultVisibilityTimeout=" + defaultVisibilityTimeout
             + ", maxMessagesPerPoll=" + maxMessagesPerPoll
+            + ", idempotentRepository=" + idempotentRepository
             + "]";
     }
 
@@ -34,10 +34,12 @@ import org.apache.camel.Processor;
 import org.apache.camel.ShutdownRunningTask;
 import org.apache.camel.impl.DefaultEndpoint;
 import org.apache.camel.impl.ScheduledPollConsumer;
+import org.apache.camel.spi.IdempotentRepository;
 import org.apache.camel.spi.ShutdownAware;
 import org.apache.camel.spi.Synchronization;
 import org.apache.camel.util.CastUtils;
 import org.apache.camel.util.ObjectHelper;
+import org.apache.camel.util.ServiceHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -82,8 +84,15 @@ public class SqsConsumer extends ScheduledPollConsumer implements BatchConsumer,
     protected Queue<Exchange> createExchanges(List<Message> messages) {
         LOG.trace("Received {} messages in this poll", messages.size());
         
+        IdempotentRepository<String> idempotentRepository = getConfiguration().getIdempotentRepository();
         Queue<Exchange> answer = new LinkedList<Exchange>();
         for (Message message : messages) {
+            if (idempotentRepository != null && idempotentRepository.contains(message.getMessageId())) {
+                LOG.trace("Skipping redelivered message [{}]", message.getMessageId());
+                deleteDuplicate(message);
+                continue;
+            }
+            
             Exchange exchange = getEndpoint().createExchange(message);
             answer.add(exchange);
         }
@@ -129,12 +138,34 @@ public class SqsConsumer extends ScheduledPollConsumer implements BatchConsumer,
         return total;
     }
     
+    /**
+     * Removes a message which was already processed from the queue, so it isn't redelivered again.
+     *
+     * @param message the redelivered message
+     */
+    protected void deleteDuplicate(Message message) {
+        if (!getConfiguration().isDeleteAfterRead()) {
+            return;
+        }
+        
+        try {
+            getClient().deleteMessage(new DeleteMessageRequest(getQueueUrl(), message.getReceiptHandle()));
+        } catch (AmazonClientException e) {
+            LOG.warn("Error occurred during deleting redelivered message", e);
+        }
+    }
+    
     /**
      * Strategy to delete the message after being processed.
      *
      * @param exchange the exchange
      */
     protected void processCommit(Exchange exchange) {
+        IdempotentRepository<String> idempotentRepository = getConfiguration().getIdempotentRepository();
+        if (idempotentRepository != null) {
+            idempotentRepository.add(exchange.getIn().getHeader(SqsConstants.MESSAGE_ID, String.class));
+        }
+        
         try {
             if (getConfiguration().isDeleteAfterRead()) {
                 String receiptHandle = exchange.getIn().getHeader(SqsConstants.RECEIPT_HANDLE, String.class);
@@ -202,6 +233,18 @@ public class SqsConsumer extends ScheduledPollConsumer implements BatchConsumer,
      // noop
     }
     
+    @Override
+    protected void doStart() throws Exception {
+        ServiceHelper.startService(getConfiguration().getIdempotentRepository());
+        super.doStart();
+    }
+    
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        ServiceHelper.stopService(getConfiguration().getIdempotentRepository());
+    }
+    
     protected SqsConfiguration getConfiguration() {
         return getEndpoint().getConfiguration();
     }
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.support;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads JSON values as maps, lists, strings, numbers, booleans and nulls
+ */
+public final class JsonReader {
+
+    private final String text;
+    private int position;
+
+    public JsonReader(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return the next value of the text
+     * @throws IllegalArgumentException if the text isn't valid JSON
+     */
+    public Object readValue() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("Unexpected end");
+        }
+
+        char c = text.charAt(position);
+        if (c == '{') {
+            return readObject();
+        } else if (c == '[') {
+            return readArray();
+        } else if (c == '"') {
+            return readString();
+        } else if (text.startsWith("true", position)) {
+            position += 4;
+            return Boolean.TRUE;
+        } else if (text.startsWith("false", position)) {
+            position += 5;
+            return Boolean.FALSE;
+        } else if (text.startsWith("null", position)) {
+            position += 4;
+            return null;
+        }
+        return readNumber();
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> answer = new LinkedHashMap<String, Object>();
+        position++;
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return answer;
+        }
+        while (true) {
+            skipWhitespace();
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            answer.put(name, readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return answer;
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> answer = new ArrayList<Object>();
+        position++;
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return answer;
+        }
+        while (true) {
+            answer.add(readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect(']');
+                return answer;
+            }
+        }
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder answer = new StringBuilder();
+        while (true) {
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char c = text.charAt(position++);
+            if (c == '"') {
+                return answer.toString();
+            } else if (c != '\\') {
+                answer.append(c);
+                continue;
+            }
+
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+            case 'b':
+                answer.append('\b');
+                break;
+            case 'f':
+                answer.append('\f');
+                break;
+            case 'n':
+                answer.append('\n');
+                break;
+            case 'r':
+                answer.append('\r');
+                break;
+            case 't':
+                answer.append('\t');
+                break;
+            case 'u':
+                answer.append(readUnicodeEscape());
+                break;
+            default:
+                answer.append(escaped);
+            }
+        }
+    }
+
+    private char readUnicodeEscape() {
+        if (position + 4 > text.length()) {
+            throw error("Truncated unicode escape");
+        }
+        try {
+            char answer = (char) Integer.parseInt(text.substring(position, position + 4), 16);
+            position += 4;
+            return answer;
+        } catch (NumberFormatException e) {
+            throw error("Invalid unicode escape");
+        }
+    }
+
+    private Number readNumber() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        String number = text.substring(start, position);
+        if (number.length() == 0) {
+            throw error("Unexpected character");
+        }
+        if (number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+            return Double.valueOf(number);
+        }
+        return Long.valueOf(number);
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() {
+        if (position >= text.length()) {
+            throw error("Unexpected end");
+        }
+        return text.charAt(position);
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        position++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of the JSON text");
+    }
+}
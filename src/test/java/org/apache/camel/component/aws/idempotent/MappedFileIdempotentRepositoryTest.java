@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.idempotent;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedFileIdempotentRepositoryTest {
+
+    private File fileStore = new File("target/idempotent/s3-consumer.dat");
+    private MappedFileIdempotentRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        fileStore.delete();
+        repository = new MappedFileIdempotentRepository(fileStore);
+        repository.setInitialMappedSize(64);
+        repository.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repository.stop();
+    }
+
+    @Test
+    public void addAndContains() throws Exception {
+        assertTrue(repository.add("counter-1@3a5c8b1ad448bca04584ecb55b836264"));
+        assertFalse(repository.add("counter-1@3a5c8b1ad448bca04584ecb55b836264"));
+
+        assertTrue(repository.contains("counter-1@3a5c8b1ad448bca04584ecb55b836264"));
+        assertFalse(repository.contains("counter-1@6a1559560f67c5e7a7d5d838bf0272ee"));
+        assertFalse(repository.contains("counter-2"));
+        assertTrue(repository.getFilteredLookups() > 0);
+    }
+
+    @Test
+    public void keysSurviveRestart() throws Exception {
+        for (int counter = 0; counter < 100; counter++) {
+            repository.add("counter-" + counter);
+        }
+        repository.remove("counter-50");
+        repository.stop();
+
+        repository = new MappedFileIdempotentRepository(fileStore);
+        repository.start();
+
+        assertEquals(99, repository.getSize());
+        assertTrue(repository.contains("counter-0"));
+        assertTrue(repository.contains("counter-99"));
+        assertFalse(repository.contains("counter-50"));
+    }
+
+    @Test
+    public void removeCompactsTheStore() throws Exception {
+        for (int counter = 0; counter < 10; counter++) {
+            repository.add("counter-" + counter);
+        }
+        long size = fileStore.length();
+
+        for (int counter = 0; counter < 8; counter++) {
+            assertTrue(repository.remove("counter-" + counter));
+        }
+        assertFalse(repository.remove("counter-0"));
+
+        assertEquals(2, repository.getSize());
+        assertTrue(repository.contains("counter-8"));
+        assertTrue(repository.contains("counter-9"));
+        assertFalse(repository.contains("counter-0"));
+        assertTrue(repository.add("counter-0"));
+        assertTrue(fileStore.length() <= size);
+    }
+
+    @Test
+    public void rejectEmptyKeys() throws Exception {
+        repository.add("counter-1");
+        try {
+            repository.add("");
+            fail("Should have thrown an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        repository.add("counter-2");
+        repository.stop();
+
+        repository = new MappedFileIdempotentRepository(fileStore);
+        repository.start();
+
+        assertEquals(2, repository.getSize());
+        assertTrue(repository.contains("counter-2"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void containsAfterStop() throws Exception {
+        repository.stop();
+        repository.contains("counter-1");
+    }
+}
@@ -16,12 +16,22 @@
  */
 package org.apache.camel.component.aws.s3;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
@@ -59,6 +69,7 @@ import com.amazonaws.services.s3.model.MultipartUploadListing;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.Owner;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PartListing;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.PutObjectResult;
@@ -74,7 +85,14 @@ import com.amazonaws.services.s3.model.VersionListing;
 
 public class AmazonS3ClientMock extends AmazonS3Client {
 
-    List<S3Object> objects = new ArrayList<S3Object>();
+    // objects may be stored by several uploading threads at once
+    List<S3Object> objects = new CopyOnWriteArrayList<S3Object>();
+    // the contents of objects which can be fetched in ranges, keyed by object key
+    Map<String, byte[]> contents = new ConcurrentHashMap<String, byte[]>();
+    // the parts of the multipart uploads in progress, keyed by upload id
+    Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<String, Map<Integer, byte[]>>();
+    List<String> abortedUploads = new ArrayList<String>();
+    Map<String, BucketNotificationConfiguration> notificationConfigurations = new HashMap<String, BucketNotificationConfiguration>();
 
     public AmazonS3ClientMock() {
         super(null);
@@ -116,10 +134,28 @@ public class AmazonS3ClientMock extends AmazonS3Client {
         ObjectListing objectListing = new ObjectListing();
         int capacity = listObjectsRequest.getMaxKeys();
 
-        for (int index = 0; index < objects.size() && index < capacity; index++) {
+        for (int index = 0; index < objects.size(); index++) {
+            S3Object s3Object = objects.get(index);
+            if (s3Object.getBucketName() != null && !s3Object.getBucketName().equals(listObjectsRequest.getBucketName())) {
+                continue;
+            }
+            if (listObjectsRequest.getPrefix() != null && !s3Object.getKey().startsWith(listObjectsRequest.getPrefix())) {
+                continue;
+            }
+            if (listObjectsRequest.getMarker() != null && s3Object.getKey().compareTo(listObjectsRequest.getMarker()) <= 0) {
+                continue;
+            }
+            if (objectListing.getObjectSummaries().size() == capacity) {
+                objectListing.setTruncated(true);
+                break;
+            }
+
             S3ObjectSummary s3ObjectSummary = new S3ObjectSummary();
-            s3ObjectSummary.setBucketName(objects.get(index).getBucketName());
-            s3ObjectSummary.setKey(objects.get(index).getKey());
+            s3ObjectSummary.setBucketName(s3Object.getBucketName());
+            s3ObjectSummary.setKey(s3Object.getKey());
+            s3ObjectSummary.setSize(s3Object.getObjectMetadata().getContentLength());
+            s3ObjectSummary.setETag(s3Object.getObjectMetadata().getETag());
+            s3ObjectSummary.setLastModified(s3Object.getObjectMetadata().getLastModified());
 
             objectListing.getObjectSummaries().add(s3ObjectSummary);
         }
@@ -223,7 +259,8 @@ public class AmazonS3ClientMock extends AmazonS3Client {
 
     @Override
     public ObjectMetadata getObjectMetadata(String bucketName, String key) throws AmazonClientException, AmazonServiceException {
-        throw new UnsupportedOperationException();
+        S3Object s3Object = getObject(bucketName, key);
+        return s3Object != null ? s3Object.getObjectMetadata() : null;
     }
 
     @Override
@@ -254,7 +291,25 @@ public class AmazonS3ClientMock extends AmazonS3Client {
 
     @Override
     public S3Object getObject(GetObjectRequest getObjectRequest) throws AmazonClientException, AmazonServiceException {
-        throw new UnsupportedOperationException();
+        S3Object s3Object = getObject(getObjectRequest.getBucketName(), getObjectRequest.getKey());
+        if (s3Object != null && getObjectRequest.getNonmatchingETagConstraints().contains(s3Object.getObjectMetadata().getETag())) {
+            return null;
+        }
+        byte[] content = contents.get(getObjectRequest.getKey());
+        if (s3Object == null || content == null) {
+            return s3Object;
+        }
+
+        long[] range = getObjectRequest.getRange();
+        int first = range != null ? (int) range[0] : 0;
+        int last = range != null ? (int) Math.min(range[1], content.length - 1) : content.length - 1;
+
+        S3Object answer = new S3Object();
+        answer.setBucketName(s3Object.getBucketName());
+        answer.setKey(s3Object.getKey());
+        answer.setObjectMetadata(s3Object.getObjectMetadata());
+        answer.setObjectContent(new ByteArrayInputStream(content, first, last - first + 1));
+        return answer;
     }
 
     @Override
@@ -288,6 +343,9 @@ public class AmazonS3ClientMock extends AmazonS3Client {
         s3Object.setBucketName(putObjectRequest.getBucketName());
         s3Object.setKey(putObjectRequest.getKey());
         s3Object.setObjectContent(putObjectRequest.getInputStream());
+        if (putObjectRequest.getMetadata() != null) {
+            s3Object.setObjectMetadata(putObjectRequest.getMetadata());
+        }
         objects.add(s3Object);
 
         PutObjectResult putObjectResult = new PutObjectResult();
@@ -302,7 +360,20 @@ public class AmazonS3ClientMock extends AmazonS3Client {
 
     @Override
     public CopyObjectResult copyObject(CopyObjectRequest copyObjectRequest) throws AmazonClientException, AmazonServiceException {
-        throw new UnsupportedOperationException();
+        S3Object source = getObject(copyObjectRequest.getSourceBucketName(), copyObjectRequest.getSourceKey());
+        if (source == null) {
+            throw new AmazonServiceException("The specified key does not exist.");
+        }
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(copyObjectRequest.getDestinationBucketName());
+        s3Object.setKey(copyObjectRequest.getDestinationKey());
+        s3Object.setObjectMetadata(source.getObjectMetadata());
+        objects.add(s3Object);
+
+        CopyObjectResult copyObjectResult = new CopyObjectResult();
+        copyObjectResult.setETag(source.getObjectMetadata().getETag());
+        return copyObjectResult;
     }
 
     @Override
@@ -337,12 +408,12 @@ public class AmazonS3ClientMock extends AmazonS3Client {
 
     @Override
     public void setBucketNotificationConfiguration(String bucketName, BucketNotificationConfiguration bucketNotificationConfiguration) throws AmazonClientException, AmazonServiceException {
-        throw new UnsupportedOperationException();
+        notificationConfigurations.put(bucketName, bucketNotificationConfiguration);
     }
 
     @Override
     public BucketNotificationConfiguration getBucketNotificationConfiguration(String bucketName) throws AmazonClientException, AmazonServiceException {
-        throw new UnsupportedOperationException();
+        return notificationConfigurations.get(bucketName);
     }
 
     @Override
@@ -387,17 +458,45 @@ public class AmazonS3ClientMock extends AmazonS3Client {
 
     @Override
     public void abortMultipartUpload(AbortMultipartUploadRequest abortMultipartUploadRequest) throws AmazonClientException, AmazonServiceException {
-        throw new UnsupportedOperationException();
+        uploads.remove(abortMultipartUploadRequest.getUploadId());
+        abortedUploads.add(abortMultipartUploadRequest.getUploadId());
     }
 
     @Override
     public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest completeMultipartUploadRequest) throws AmazonClientException, AmazonServiceException {
-        throw new UnsupportedOperationException();
+        Map<Integer, byte[]> parts = uploads.remove(completeMultipartUploadRequest.getUploadId());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (PartETag partETag : completeMultipartUploadRequest.getPartETags()) {
+            byte[] part = parts.get(partETag.getPartNumber());
+            content.write(part, 0, part.length);
+        }
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(completeMultipartUploadRequest.getBucketName());
+        s3Object.setKey(completeMultipartUploadRequest.getKey());
+        s3Object.setObjectContent(new ByteArrayInputStream(content.toByteArray()));
+        s3Object.getObjectMetadata().setContentLength(content.size());
+        s3Object.getObjectMetadata().setHeader("ETag", "3a5c8b1ad448bca04584ecb55b836264-" + parts.size());
+        objects.add(s3Object);
+        contents.put(s3Object.getKey(), content.toByteArray());
+
+        CompleteMultipartUploadResult completeMultipartUploadResult = new CompleteMultipartUploadResult();
+        completeMultipartUploadResult.setBucketName(completeMultipartUploadRequest.getBucketName());
+        completeMultipartUploadResult.setKey(completeMultipartUploadRequest.getKey());
+        completeMultipartUploadResult.setETag("3a5c8b1ad448bca04584ecb55b836264-" + parts.size());
+        return completeMultipartUploadResult;
     }
 
     @Override
     public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest initiateMultipartUploadRequest) throws AmazonClientException, AmazonServiceException {
-        throw new UnsupportedOperationException();
+        String uploadId = "upload-" + (uploads.size() + abortedUploads.size() + 1);
+        uploads.put(uploadId, new TreeMap<Integer, byte[]>());
+
+        InitiateMultipartUploadResult initiateMultipartUploadResult = new InitiateMultipartUploadResult();
+        initiateMultipartUploadResult.setBucketName(initiateMultipartUploadRequest.getBucketName());
+        initiateMultipartUploadResult.setKey(initiateMultipartUploadRequest.getKey());
+        initiateMultipartUploadResult.setUploadId(uploadId);
+        return initiateMultipartUploadResult;
     }
 
     @Override
@@ -412,7 +511,32 @@ public class AmazonS3ClientMock extends AmazonS3Client {
 
     @Override
     public UploadPartResult uploadPart(UploadPartRequest uploadPartRequest) throws AmazonClientException, AmazonServiceException {
-        throw new UnsupportedOperationException();
+        byte[] part = new byte[(int) uploadPartRequest.getPartSize()];
+        try {
+            if (uploadPartRequest.getFile() != null) {
+                RandomAccessFile file = new RandomAccessFile(uploadPartRequest.getFile(), "r");
+                try {
+                    file.seek(uploadPartRequest.getFileOffset());
+                    file.readFully(part);
+                } finally {
+                    file.close();
+                }
+            } else {
+                new DataInputStream(uploadPartRequest.getInputStream()).readFully(part);
+            }
+        } catch (IOException e) {
+            throw new AmazonClientException("Cannot read part " + uploadPartRequest.getPartNumber(), e);
+        }
+
+        Map<Integer, byte[]> parts = uploads.get(uploadPartRequest.getUploadId());
+        synchronized (parts) {
+            parts.put(uploadPartRequest.getPartNumber(), part);
+        }
+
+        UploadPartResult uploadPartResult = new UploadPartResult();
+        uploadPartResult.setPartNumber(uploadPartRequest.getPartNumber());
+        uploadPartResult.setETag("part-" + uploadPartRequest.getPartNumber());
+        return uploadPartResult;
     }
 
     @Override
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3BodyStrategyTest extends CamelTestSupport {
+
+    private static final String LARGE_CONTENT = "This content is larger than the buffer threshold and gets spooled.";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    @Test
+    public void bufferSmallAndSpoolLargeObjects() throws Exception {
+        mock.expectedMessageCount(2);
+        assertMockEndpointsSatisfied();
+
+        Exchange small = mock.getExchanges().get(0);
+        assertEquals("S3BufferedContent", small.getIn().getHeader("bodyType"));
+        assertEquals("small", small.getIn().getHeader("content"));
+
+        Exchange large = mock.getExchanges().get(1);
+        assertEquals("S3SpooledContent", large.getIn().getHeader("bodyType"));
+        assertEquals(LARGE_CONTENT, large.getIn().getHeader("content"));
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock();
+        clientMock.objects.add(createObject("small", "small"));
+        clientMock.objects.add(createObject("large", LARGE_CONTENT));
+
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    private S3Object createObject(String key, String content) {
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName("mycamelbucket");
+        s3Object.setKey(key);
+        s3Object.setObjectContent(new ByteArrayInputStream(content.getBytes()));
+        s3Object.getObjectMetadata().setContentLength(content.length());
+        return s3Object;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&delay=5000"
+                        + "&bodyStrategy=auto&bodyBufferThreshold=16&pooledBuffers=true&bufferPoolSize=1")
+                    .process(new Processor() {
+                        public void process(Exchange exchange) throws Exception {
+                            exchange.getIn().setHeader("bodyType", exchange.getIn().getBody().getClass().getSimpleName());
+                            exchange.getIn().setHeader("content", exchange.getIn().getBody(String.class));
+                        }
+                    })
+                    .to("mock:result");
+            }
+        };
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.apache.camel.util.FileUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+public class S3CollectionUploadTest extends CamelTestSupport {
+
+    private static final File DIRECTORY = new File("target/collection");
+
+    private AmazonS3ClientMock clientMock;
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        FileUtil.removeDir(DIRECTORY);
+        // two parts of the minimum size and a smaller last part
+        char[] jar = new char[(int) (2 * S3MultipartUploader.MIN_PART_SIZE + 10)];
+        Arrays.fill(jar, 'x');
+        writeFile("build/app.jar", new String(jar));
+        writeFile("build/classes/A.class", "class A");
+        writeFile("build/classes/B.class", "class B");
+        writeFile("README", "readme");
+
+        super.setUp();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void uploadDirectory() throws Exception {
+        Exchange exchange = upload(new File(DIRECTORY, "build"));
+
+        Map<String, String> eTags = exchange.getOut().getHeader(S3Constants.UPLOADED_OBJECTS, Map.class);
+        assertEquals(Arrays.asList("dist/app.jar", "dist/classes/A.class", "dist/classes/B.class"), Arrays.asList(eTags.keySet().toArray()));
+        // the large file went through a multipart upload with 3 parts
+        assertEquals("3a5c8b1ad448bca04584ecb55b836264-3", eTags.get("dist/app.jar"));
+        assertEquals("3a5c8b1ad448bca04584ecb55b836264", eTags.get("dist/classes/A.class"));
+
+        assertNotNull(clientMock.getObject("mycamelbucket", "dist/app.jar"));
+        assertNotNull(clientMock.getObject("mycamelbucket", "dist/classes/B.class"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void uploadCollection() throws Exception {
+        Exchange exchange = upload(Arrays.asList(new File(DIRECTORY, "README"), new File(DIRECTORY, "build/classes")));
+
+        Map<String, String> eTags = exchange.getOut().getHeader(S3Constants.UPLOADED_OBJECTS, Map.class);
+        assertEquals(Arrays.asList("dist/README", "dist/classes/A.class", "dist/classes/B.class"), Arrays.asList(eTags.keySet().toArray()));
+        assertNotNull(clientMock.getObject("mycamelbucket", "dist/classes/A.class"));
+    }
+
+    @Test
+    public void compressUploadedFiles() throws Exception {
+        upload("direct:compressed", new File(DIRECTORY, "build/classes"));
+
+        assertEquals("gzip", clientMock.getObject("mycamelbucket", "dist/classes/A.class").getObjectMetadata().getContentEncoding());
+        assertEquals("gzip", clientMock.getObject("mycamelbucket", "dist/classes/B.class").getObjectMetadata().getContentEncoding());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void skipUnchangedFiles() throws Exception {
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName("mycamelbucket");
+        s3Object.setKey("dist/README");
+        s3Object.getObjectMetadata().setHeader("ETag", md5("readme"));
+        clientMock.objects.add(s3Object);
+
+        Exchange exchange = upload("direct:unchanged", Arrays.asList(new File(DIRECTORY, "README"), new File(DIRECTORY, "build/classes")));
+
+        Map<String, String> eTags = exchange.getOut().getHeader(S3Constants.UPLOADED_OBJECTS, Map.class);
+        assertEquals(Arrays.asList("dist/classes/A.class", "dist/classes/B.class"), Arrays.asList(eTags.keySet().toArray()));
+        Map<String, String> unchanged = exchange.getOut().getHeader(S3Constants.UNCHANGED_OBJECTS, Map.class);
+        assertEquals(md5("readme"), unchanged.get("dist/README"));
+    }
+
+    @Test
+    public void deleteUploadedDirectory() throws Exception {
+        upload("direct:delete", new File(DIRECTORY, "build"));
+
+        assertNotNull(clientMock.getObject("mycamelbucket", "dist/classes/A.class"));
+        assertFalse(new File(DIRECTORY, "build").exists());
+        assertTrue(new File(DIRECTORY, "README").exists());
+    }
+
+    @Test
+    public void uploadCollectionOfTextAsOneObject() throws Exception {
+        template.send("direct:start", new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(S3Constants.KEY, "notes.txt");
+                exchange.getIn().setBody(Arrays.asList("line 1", "line 2"));
+            }
+        });
+
+        // the lines aren't taken as the paths of files to upload
+        assertNull(clientMock.getObject("mycamelbucket", "line 1"));
+        assertNull(clientMock.getObject("mycamelbucket", "line 2"));
+    }
+
+    private Exchange upload(Object body) {
+        return upload("direct:start", body);
+    }
+
+    private Exchange upload(String uri, final Object body) {
+        return template.request(uri, new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(S3Constants.PREFIX, "dist/");
+                exchange.getIn().setBody(body);
+            }
+        });
+    }
+
+    private static void writeFile(String path, String content) throws Exception {
+        File file = new File(DIRECTORY, path);
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes());
+        out.close();
+    }
+
+    private static String md5(String content) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("MD5").digest(content.getBytes())) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock();
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&multipartUploadThreshold=20"
+                        + "&uploadPartSize=" + S3MultipartUploader.MIN_PART_SIZE
+                        + "&collectionUploadPoolSize=2");
+
+                from("direct:compressed")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&compression=gzip");
+
+                from("direct:unchanged")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&skipUnchanged=true");
+
+                from("direct:delete")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&deleteAfterUpload=true");
+            }
+        };
+    }
+}
@@ -90,4 +90,29 @@ public class S3ComponentConfigurationTest extends CamelTestSupport {
         S3Component component = new S3Component(context);
         component.createEndpoint("aws-sns://MyTopic?accessKey=xxx");
     }
-}
\ No newline at end of file
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createEndpointWithSkipUnchangedAndCompression() throws Exception {
+        S3Component component = new S3Component(context);
+        component.createEndpoint("aws-s3://MyBucket?accessKey=xxx&secretKey=yyy&skipUnchanged=true&compression=gzip");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createEndpointWithSkipUnchangedAndWriteBehind() throws Exception {
+        S3Component component = new S3Component(context);
+        component.createEndpoint("aws-s3://MyBucket?accessKey=xxx&secretKey=yyy&skipUnchanged=true&writeBehindDirectory=target/journal");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createEndpointWithSkipUnchangedAndAggregation() throws Exception {
+        S3Component component = new S3Component(context);
+        component.createEndpoint("aws-s3://MyBucket?accessKey=xxx&secretKey=yyy&skipUnchanged=true&aggregationSize=100");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void startProducerWithTooSmallUploadPartSize() throws Exception {
+        S3Component component = new S3Component(context);
+        S3Endpoint endpoint = (S3Endpoint) component.createEndpoint("aws-s3://MyBucket?accessKey=xxx&secretKey=yyy&uploadPartSize=1024");
+        endpoint.createProducer().start();
+    }
+}
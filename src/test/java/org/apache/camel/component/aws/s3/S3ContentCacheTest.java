@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.converter.IOConverter;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3ContentCacheTest extends CamelTestSupport {
+
+    private AmazonS3ClientMock clientMock;
+    private int gets;
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    public void serveCachedObjectFromTheHeap() throws Exception {
+        S3ContentCache cache = startCache("contentCacheTtl=60000");
+
+        assertEquals("Lookup table", read(cache.getObject("lookup.txt")));
+        assertEquals("Lookup table", read(cache.getObject("lookup.txt")));
+
+        assertEquals(1, gets);
+        assertEquals(0.5, cache.getHitRatio(), 0.001);
+        assertEquals(12, cache.getHeapSize());
+        assertEquals(0, cache.getDiskSize());
+    }
+
+    @Test
+    public void serveLargeCachedObjectFromDisk() throws Exception {
+        S3ContentCache cache = startCache("contentCacheMaxObjectHeapSize=4&contentCacheDirectory=target/content-cache");
+
+        assertEquals("Lookup table", read(cache.getObject("lookup.txt")));
+        assertEquals("Lookup table", read(cache.getObject("lookup.txt")));
+
+        assertEquals(1, gets);
+        assertEquals(0, cache.getHeapSize());
+        assertEquals(12, cache.getDiskSize());
+
+        cache.stop();
+        assertEquals(0, new File("target/content-cache").list().length);
+    }
+
+    @Test
+    public void revalidateExpiredObjectByETag() throws Exception {
+        S3ContentCache cache = startCache("contentCacheTtl=0");
+
+        assertEquals("Lookup table", read(cache.getObject("lookup.txt")));
+        Thread.sleep(5);
+        assertEquals("Lookup table", read(cache.getObject("lookup.txt")));
+
+        assertEquals(2, gets);
+        assertEquals(1, cache.getRevalidations());
+        assertEquals(1, cache.getMisses());
+
+        putObject("lookup.txt", "Changed lookup table", "6a1559560f67c5e7a7d5d838bf0272ee");
+        Thread.sleep(5);
+        assertEquals("Changed lookup table", read(cache.getObject("lookup.txt")));
+
+        assertEquals(3, gets);
+        assertEquals(2, cache.getMisses());
+        assertEquals(20, cache.getHeapSize());
+    }
+
+    @Test
+    public void getObjectThroughTheCache() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Exchange exchange = template.request("direct:start", new Processor() {
+                public void process(Exchange exchange) throws Exception {
+                    exchange.getIn().setHeader(S3Constants.KEY, "lookup.txt");
+                }
+            });
+
+            assertEquals("Lookup table", exchange.getOut().getBody(String.class));
+            assertEquals("3a5c8b1ad448bca04584ecb55b836264", exchange.getOut().getHeader(S3Constants.E_TAG));
+        }
+
+        assertEquals(1, gets);
+    }
+
+    private S3ContentCache startCache(String options) throws Exception {
+        S3ContentCache cache = new S3ContentCache(context.getEndpoint(
+                "aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&contentCache=true&" + options, S3Endpoint.class));
+        cache.start();
+        return cache;
+    }
+
+    private void putObject(String key, String content, String eTag) {
+        S3Object s3Object = clientMock.getObject("mycamelbucket", key);
+        if (s3Object == null) {
+            s3Object = new S3Object();
+            s3Object.setBucketName("mycamelbucket");
+            s3Object.setKey(key);
+            clientMock.objects.add(s3Object);
+        }
+        s3Object.getObjectMetadata().setContentLength(content.length());
+        s3Object.getObjectMetadata().setHeader("ETag", eTag);
+        clientMock.contents.put(key, content.getBytes());
+    }
+
+    private static String read(S3Object s3Object) throws Exception {
+        return IOConverter.toString(s3Object.getObjectContent(), null);
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public S3Object getObject(GetObjectRequest getObjectRequest) throws AmazonClientException, AmazonServiceException {
+                gets++;
+                return super.getObject(getObjectRequest);
+            }
+        };
+        putObject("lookup.txt", "Lookup table", "3a5c8b1ad448bca04584ecb55b836264");
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&operation=getObject&contentCache=true");
+            }
+        };
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.NotifyBuilder;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.aws.s3.support.S3SpooledContent;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3DecompressRoundTripTest extends CamelTestSupport {
+
+    private static final String CONTENT = "This content is uploaded uncompressed after it was downloaded compressed, "
+            + "so it's longer than the compressed object. This content is uploaded uncompressed after it was "
+            + "downloaded compressed, so it's longer than the compressed object.";
+
+    private AmazonS3ClientMock clientMock = new AmazonS3ClientMock();
+    private volatile Object autoBody;
+
+    @Test
+    public void uploadDecompressedBodyWithItsOwnLength() throws Exception {
+        NotifyBuilder notify = new NotifyBuilder(context).whenDone(3).create();
+        assertTrue(notify.matches(5, TimeUnit.SECONDS));
+
+        assertCopied("stream.gz");
+        assertCopied("buffer.gz");
+        assertCopied("auto.gz");
+        // the compressed object fits the threshold, but the decompressed body doesn't
+        assertIsInstanceOf(S3SpooledContent.class, autoBody);
+    }
+
+    private void assertCopied(String key) throws Exception {
+        S3Object copy = clientMock.getObject("copies", key);
+        assertNotNull("Missing copy of " + key, copy);
+        assertNull(copy.getObjectMetadata().getContentEncoding());
+        assertEquals(CONTENT, context.getTypeConverter().convertTo(String.class, copy.getObjectContent()));
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock.objects.add(createCompressedObject("streamed", "stream.gz"));
+        clientMock.objects.add(createCompressedObject("buffered", "buffer.gz"));
+        clientMock.objects.add(createCompressedObject("auto", "auto.gz"));
+
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    private S3Object createCompressedObject(String bucketName, String key) throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(compressed);
+        out.write(CONTENT.getBytes());
+        out.close();
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(bucketName);
+        s3Object.setKey(key);
+        s3Object.setObjectContent(new ByteArrayInputStream(compressed.toByteArray()));
+        s3Object.getObjectMetadata().setContentLength(compressed.size());
+        s3Object.getObjectMetadata().setContentEncoding("gzip");
+        return s3Object;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-s3://streamed?amazonS3Client=#amazonS3Client&delay=5000&decompress=true&bodyStrategy=stream")
+                    .to("aws-s3://copies?amazonS3Client=#amazonS3Client");
+
+                from("aws-s3://buffered?amazonS3Client=#amazonS3Client&delay=5000&decompress=true&bodyStrategy=buffer")
+                    .to("aws-s3://copies?amazonS3Client=#amazonS3Client");
+
+                from("aws-s3://auto?amazonS3Client=#amazonS3Client&delay=5000&decompress=true&bodyStrategy=auto"
+                    + "&bodyBufferThreshold=160")
+                    .process(new Processor() {
+                        public void process(Exchange exchange) throws Exception {
+                            autoBody = exchange.getIn().getBody();
+                        }
+                    })
+                    .to("aws-s3://copies?amazonS3Client=#amazonS3Client");
+            }
+        };
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.aws.s3.support.S3HashPrefix;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.processor.idempotent.MemoryIdempotentRepository;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3HashPrefixTest extends CamelTestSupport {
+
+    private AmazonS3ClientMock clientMock;
+    private final Set<String> listedPrefixes = new HashSet<String>();
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    @EndpointInject(uri = "mock:long")
+    private MockEndpoint longMock;
+
+    @Test
+    public void spreadKeysOverHashPrefixes() throws Exception {
+        mock.expectedMessageCount(3);
+
+        put("logs/2011-03-15/1.txt", "tenant-a");
+        put("logs/2011-03-15/2.txt", "tenant-a");
+        put("logs/2011-03-15/3.txt", "tenant-b");
+
+        S3Object first = clientMock.objects.get(0);
+        assertTrue(first.getKey().matches("[0-9a-f]/logs/2011-03-15/1.txt"));
+        assertEquals("logs/2011-03-15/1.txt", first.getObjectMetadata().getUserMetadata().get(S3HashPrefix.ORIGINAL_KEY_METADATA));
+        // the prefix is derived from the tenant, not from the key
+        assertEquals(first.getKey().charAt(0), clientMock.objects.get(1).getKey().charAt(0));
+        assertEquals(S3HashPrefix.apply("logs/2011-03-15/3.txt", "tenant-b", 1), clientMock.objects.get(2).getKey());
+
+        assertMockEndpointsSatisfied();
+
+        Set<String> originalKeys = new HashSet<String>();
+        for (Exchange exchange : mock.getExchanges()) {
+            originalKeys.add(exchange.getIn().getHeader(S3Constants.ORIGINAL_KEY, String.class));
+        }
+        assertTrue(originalKeys.contains("logs/2011-03-15/1.txt"));
+        assertTrue(originalKeys.contains("logs/2011-03-15/2.txt"));
+        assertTrue(originalKeys.contains("logs/2011-03-15/3.txt"));
+    }
+
+    @Test
+    public void listAllHashPrefixes() throws Exception {
+        assertEquals(16, S3HashPrefix.prefixes(1).size());
+        assertEquals("00/", S3HashPrefix.prefixes(2).get(0));
+        assertEquals("ff/", S3HashPrefix.prefixes(2).get(255));
+        assertEquals("logs/1.txt", S3HashPrefix.strip("7f/logs/1.txt", 2));
+    }
+
+    @Test
+    public void listLongHashPrefixesByTheirLeadingCharacters() throws Exception {
+        longMock.expectedMessageCount(2);
+
+        put("direct:long", "logs/1.txt", null);
+        put("direct:long", "other/2.txt", null);
+        put("direct:long", "logs/3.txt", null);
+        assertTrue(clientMock.objects.get(0).getKey().matches("[0-9a-f]{4}/logs/1.txt"));
+
+        assertMockEndpointsSatisfied();
+
+        // 256 listings per pass instead of one for each of the 65536 hash prefixes
+        assertEquals(256, listedPrefixes.size());
+        assertTrue(listedPrefixes.contains(clientMock.objects.get(0).getKey().substring(0, 2)));
+    }
+
+    @Test
+    public void copyToHashPrefixedDestinationKey() throws Exception {
+        put("direct:long", "logs/source.txt", null);
+
+        template.send("direct:copy", new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(S3Constants.KEY, "logs/source.txt");
+                exchange.getIn().setHeader(S3Constants.DESTINATION_KEY, "copies/source.txt");
+            }
+        });
+
+        assertNotNull(clientMock.getObject("longbucket", S3HashPrefix.apply("copies/source.txt", "copies/source.txt", 4)));
+    }
+
+    private void put(String key, String tenant) {
+        put("direct:start", key, tenant);
+    }
+
+    private void put(String uri, final String key, final String tenant) {
+        template.send(uri, new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                String body = "Content of " + key;
+                exchange.getIn().setHeader(S3Constants.KEY, key);
+                exchange.getIn().setHeader(S3Constants.CONTENT_LENGTH, (long) body.length());
+                exchange.getIn().setHeader("tenant", tenant);
+                exchange.getIn().setBody(body);
+            }
+        });
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public ObjectListing listObjects(ListObjectsRequest listObjectsRequest) throws AmazonClientException, AmazonServiceException {
+                if ("longbucket".equals(listObjectsRequest.getBucketName())) {
+                    synchronized (listedPrefixes) {
+                        listedPrefixes.add(listObjectsRequest.getPrefix());
+                    }
+                }
+                return super.listObjects(listObjectsRequest);
+            }
+        };
+        registry.bind("amazonS3Client", clientMock);
+        registry.bind("processedObjects", MemoryIdempotentRepository.memoryIdempotentRepository());
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&hashPrefixLength=1&hashPrefixExpression=${header.tenant}");
+
+                from("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&hashPrefixLength=1&prefix=logs/"
+                        + "&listingPoolSize=4&deleteAfterRead=false&delay=100&idempotentRepository=#processedObjects")
+                    .to("mock:result");
+
+                from("direct:long")
+                    .to("aws-s3://longbucket?amazonS3Client=#amazonS3Client&hashPrefixLength=4");
+
+                from("direct:copy")
+                    .to("aws-s3://longbucket?amazonS3Client=#amazonS3Client&hashPrefixLength=4&operation=copyObject");
+
+                from("aws-s3://longbucket?amazonS3Client=#amazonS3Client&hashPrefixLength=4&prefix=logs/"
+                        + "&listingPoolSize=4&deleteAfterRead=false&delay=100&idempotentRepository=#processedObjects")
+                    .to("mock:long");
+            }
+        };
+    }
+}
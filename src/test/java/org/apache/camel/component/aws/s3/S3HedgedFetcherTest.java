@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.After;
+import org.junit.Test;
+
+public class S3HedgedFetcherTest extends CamelTestSupport {
+
+    private final AtomicInteger gets = new AtomicInteger();
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private volatile long slowGet = -1;
+
+    @Test
+    public void hedgeSlowGet() throws Exception {
+        S3HedgedFetcher fetcher = createFetcher("hedgeMaxRate=0.1");
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(fetcher.getObject("mycamelbucket", "fast.txt"));
+        }
+        assertEquals(0, fetcher.getHedgedRequests());
+
+        // the next GET is stuck, so the hedged GET answers
+        slowGet = gets.get() + 1;
+        long start = System.currentTimeMillis();
+        S3Object s3Object = fetcher.getObject("mycamelbucket", "fast.txt");
+
+        assertEquals("fast.txt", s3Object.getKey());
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(1, fetcher.getHedgedRequests());
+        assertEquals(1, fetcher.getHedgeWins());
+    }
+
+    @Test
+    public void capHedgedRequests() throws Exception {
+        S3HedgedFetcher fetcher = createFetcher("hedgeMaxRate=0");
+        for (int i = 0; i < 20; i++) {
+            fetcher.getObject("mycamelbucket", "fast.txt");
+        }
+
+        slowGet = gets.get() + 1;
+        assertNotNull(fetcher.getObject("mycamelbucket", "fast.txt"));
+
+        assertEquals(0, fetcher.getHedgedRequests());
+    }
+
+    @Test
+    public void noHedgingWithoutLatencies() throws Exception {
+        S3HedgedFetcher fetcher = createFetcher("hedgeMaxRate=1");
+
+        slowGet = 1;
+        assertNotNull(fetcher.getObject("mycamelbucket", "fast.txt"));
+
+        assertEquals(0, fetcher.getHedgedRequests());
+    }
+
+    @Test
+    public void rethrowServiceExceptionUnchanged() throws Exception {
+        S3HedgedFetcher fetcher = createFetcher("hedgeMaxRate=1");
+
+        try {
+            fetcher.getObject("mycamelbucket", "missing.txt");
+            fail("Should have thrown an AmazonServiceException");
+        } catch (AmazonServiceException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executorService.shutdownNow();
+    }
+
+    private S3HedgedFetcher createFetcher(String options) {
+        return new S3HedgedFetcher(context.getEndpoint(
+                "aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&hedgedGets=true&" + options, S3Endpoint.class), executorService);
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock() {
+            @Override
+            public S3Object getObject(String bucketName, String key) throws AmazonClientException, AmazonServiceException {
+                if ("missing.txt".equals(key)) {
+                    AmazonServiceException e = new AmazonServiceException("The specified key does not exist.");
+                    e.setStatusCode(404);
+                    throw e;
+                }
+                if (gets.incrementAndGet() == slowGet) {
+                    try {
+                        Thread.sleep(3000);
+                    } catch (InterruptedException e) {
+                        // stop waiting
+                    }
+                }
+
+                S3Object s3Object = new S3Object();
+                s3Object.setBucketName(bucketName);
+                s3Object.setKey(key);
+                s3Object.setObjectContent(new ByteArrayInputStream("content".getBytes()));
+                return s3Object;
+            }
+        };
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+}
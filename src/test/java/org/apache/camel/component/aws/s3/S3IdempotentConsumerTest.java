@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.aws.idempotent.MappedFileIdempotentRepository;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3IdempotentConsumerTest extends CamelTestSupport {
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    @Test
+    public void consumeEachObjectOnlyOnce() throws Exception {
+        mock.expectedMessageCount(3);
+        assertMockEndpointsSatisfied();
+
+        // the objects are not deleted, so the next polls see them again
+        Thread.sleep(1000);
+
+        assertEquals(3, mock.getReceivedCounter());
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock();
+        for (int counter = 0; counter < 3; counter++) {
+            S3Object s3Object = new S3Object();
+            s3Object.setBucketName("mycamelbucket");
+            s3Object.setKey("counter-" + counter);
+
+            clientMock.objects.add(s3Object);
+        }
+
+        File fileStore = new File("target/idempotent/mycamelbucket.dat");
+        fileStore.delete();
+
+        registry.bind("amazonS3Client", clientMock);
+        registry.bind("processedObjects", new MappedFileIdempotentRepository(fileStore));
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&deleteAfterRead=false"
+                        + "&idempotentRepository=#processedObjects&delay=100")
+                    .to("mock:result");
+            }
+        };
+    }
+}
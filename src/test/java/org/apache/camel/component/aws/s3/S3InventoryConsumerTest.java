@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3InventoryConsumerTest extends CamelTestSupport {
+
+    private final List<String> fetchedKeys = new CopyOnWriteArrayList<String>();
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    @Test
+    public void consumeFilteredObjectsOfInventory() throws Exception {
+        mock.expectedMessageCount(2);
+        assertMockEndpointsSatisfied();
+
+        Set<String> keys = new HashSet<String>();
+        for (Exchange exchange : mock.getExchanges()) {
+            keys.add(exchange.getIn().getHeader(S3Constants.KEY, String.class));
+        }
+        assertTrue(keys.contains("logs/a.txt"));
+        assertTrue(keys.contains("logs/b c.txt"));
+
+        // the filtered objects are never fetched
+        assertFalse(fetchedKeys.contains("logs/big.txt"));
+        assertFalse(fetchedKeys.contains("logs/cold.txt"));
+        assertFalse(fetchedKeys.contains("logs/old.txt"));
+        assertFalse(fetchedKeys.contains("other/d.txt"));
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock() {
+            @Override
+            public S3Object getObject(String bucketName, String key) throws AmazonClientException, AmazonServiceException {
+                fetchedKeys.add(key);
+                return super.getObject(bucketName, key);
+            }
+        };
+
+        addObject(clientMock, "inventory/manifest.json", ("{\"sourceBucket\":\"mycamelbucket\","
+            + "\"destinationBucket\":\"arn:aws:s3:::mycamelbucket\",\"version\":\"2016-11-30\",\"fileFormat\":\"CSV\","
+            + "\"fileSchema\":\"Bucket, Key, Size, LastModifiedDate, ETag, StorageClass\","
+            + "\"files\":[{\"key\":\"inventory/data/1.csv.gz\",\"size\":100},{\"key\":\"inventory/data/2.csv\",\"size\":100}]}").getBytes());
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(compressed);
+        out.write(("\"mycamelbucket\",\"logs/a.txt\",\"9\",\"2011-03-15T10:00:00.000Z\",\"3a5c8b1ad448bca04584ecb55b836264\",\"STANDARD\"\n"
+            + "\"mycamelbucket\",\"logs/big.txt\",\"1000000\",\"2011-03-15T10:00:00.000Z\",\"6a1559560f67c5e7a7d5d838bf0272ee\",\"STANDARD\"\n"
+            + "\"mycamelbucket\",\"logs/cold.txt\",\"9\",\"2011-03-15T10:00:00.000Z\",\"6a1559560f67c5e7a7d5d838bf0272ee\",\"GLACIER\"\n")
+            .getBytes());
+        out.close();
+        addObject(clientMock, "inventory/data/1.csv.gz", compressed.toByteArray());
+
+        addObject(clientMock, "inventory/data/2.csv",
+            ("\"mycamelbucket\",\"logs/b%20c.txt\",\"9\",\"2011-03-16T08:00:00.000Z\",\"3a5c8b1ad448bca04584ecb55b836264\",\"STANDARD\"\n"
+            + "\"mycamelbucket\",\"logs/old.txt\",\"9\",\"2010-12-31T23:00:00.000Z\",\"3a5c8b1ad448bca04584ecb55b836264\",\"STANDARD\"\n"
+            + "\"mycamelbucket\",\"other/d.txt\",\"9\",\"2011-03-16T08:00:00.000Z\",\"3a5c8b1ad448bca04584ecb55b836264\",\"STANDARD\"\n")
+            .getBytes());
+
+        addObject(clientMock, "logs/a.txt", "Content a".getBytes());
+        addObject(clientMock, "logs/b c.txt", "Content b".getBytes());
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    private static void addObject(AmazonS3ClientMock clientMock, String key, byte[] content) {
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName("mycamelbucket");
+        s3Object.setKey(key);
+        s3Object.setObjectContent(new ByteArrayInputStream(content));
+        s3Object.getObjectMetadata().setContentLength(content.length);
+
+        clientMock.objects.add(s3Object);
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&deleteAfterRead=false&prefix=logs/"
+                        + "&inventoryManifestKey=inventory/manifest.json&inventoryPoolSize=2&maxSize=1000"
+                        + "&inventoryModifiedAfter=2011-01-01&inventoryStorageClasses=STANDARD,STANDARD_IA")
+                    .to("mock:result");
+            }
+        };
+    }
+}
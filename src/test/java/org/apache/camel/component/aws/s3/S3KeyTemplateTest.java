@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3KeyTemplateTest extends CamelTestSupport {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final List<String> listedPrefixes = new ArrayList<String>();
+    private long now;
+
+    @Test
+    public void expandPartitions() throws Exception {
+        S3KeyTemplate template = new S3KeyTemplate("logs/{yyyy}/{MM}/{dd}/{HH}/", UTC);
+        long start = template.partitionStart(time(15, 10, 30));
+
+        assertEquals(time(15, 10, 0), start);
+        assertEquals("logs/2011/03/15/10/", template.expand(start));
+        assertEquals("logs/2011/03/15/11/", template.expand(template.nextPartitionStart(start)));
+
+        template = new S3KeyTemplate("events/{yyyy-MM-dd}", UTC);
+        assertEquals(time(15, 0, 0), template.partitionStart(time(15, 10, 30)));
+        assertEquals("events/2011-03-16", template.expand(template.nextPartitionStart(time(15, 0, 0))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectTemplateWithoutPlaceholder() throws Exception {
+        new S3KeyTemplate("logs/", UTC);
+    }
+
+    @Test
+    public void neverListClosedPartitionsAgain() throws Exception {
+        S3ShardedLister lister = new S3ShardedLister(context.getEndpoint("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client"
+                + "&keyTemplate=logs/{yyyy}/{MM}/{dd}/{HH}/&keyTemplateWindow=10800000&keyTemplateLateness=600000", S3Endpoint.class)) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+
+        // the window covers the last three hours
+        assertListed(lister, time(15, 10, 30), "logs/2011/03/15/07/", "logs/2011/03/15/08/", "logs/2011/03/15/09/", "logs/2011/03/15/10/");
+        assertEquals(time(15, 7, 0), lister.getWatermark());
+
+        // the previous pass started after the earlier hours and their lateness had passed
+        assertListed(lister, time(15, 10, 45), "logs/2011/03/15/10/");
+        assertListed(lister, time(15, 11, 5), "logs/2011/03/15/10/", "logs/2011/03/15/11/");
+
+        // objects may still arrive in the closed hour until ten minutes past
+        assertListed(lister, time(15, 11, 20), "logs/2011/03/15/10/", "logs/2011/03/15/11/");
+        assertListed(lister, time(15, 11, 30), "logs/2011/03/15/11/");
+        assertEquals(time(15, 11, 0), lister.getWatermark());
+    }
+
+    private void assertListed(S3ShardedLister lister, long time, String... prefixes) throws Exception {
+        now = time;
+        listedPrefixes.clear();
+        lister.list(10);
+
+        assertEquals(Arrays.asList(prefixes), listedPrefixes);
+    }
+
+    private static long time(int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.clear();
+        calendar.set(2011, Calendar.MARCH, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock() {
+            @Override
+            public ObjectListing listObjects(ListObjectsRequest listObjectsRequest) throws AmazonClientException, AmazonServiceException {
+                listedPrefixes.add(listObjectsRequest.getPrefix());
+                return super.listObjects(listObjectsRequest);
+            }
+        };
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3MetadataOnlyConsumerTest extends CamelTestSupport {
+
+    private final AtomicInteger getObjectCounter = new AtomicInteger();
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    @Test
+    public void fetchOnlyTheObjectsWhichAreRead() throws Exception {
+        mock.expectedMessageCount(1);
+        mock.expectedBodiesReceived("Camel rocks!");
+        mock.expectedHeaderReceived(S3Constants.KEY, "camel.txt");
+        mock.expectedHeaderReceived(S3Constants.CONTENT_LENGTH, 12L);
+        assertMockEndpointsSatisfied();
+
+        assertEquals(1, getObjectCounter.get());
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock() {
+            @Override
+            public S3Object getObject(String bucketName, String key) throws AmazonClientException, AmazonServiceException {
+                getObjectCounter.incrementAndGet();
+                return super.getObject(bucketName, key);
+            }
+        };
+        for (String key : new String[]{"camel.txt", "large.bin", "other.bin"}) {
+            S3Object s3Object = new S3Object();
+            s3Object.setBucketName("mycamelbucket");
+            s3Object.setKey(key);
+            s3Object.setObjectContent(new ByteArrayInputStream("Camel rocks!".getBytes()));
+            s3Object.getObjectMetadata().setContentLength(12);
+
+            clientMock.objects.add(s3Object);
+        }
+
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&delay=5000&metadataOnly=true")
+                    .filter(header(S3Constants.KEY).isEqualTo("camel.txt"))
+                        .convertBodyTo(String.class)
+                        .to("mock:result");
+            }
+        };
+    }
+}
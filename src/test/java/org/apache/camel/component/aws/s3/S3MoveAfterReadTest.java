@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.builder.NotifyBuilder;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3MoveAfterReadTest extends CamelTestSupport {
+
+    private final List<String> deletedKeys = new ArrayList<String>();
+    private AmazonS3ClientMock clientMock;
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    @Test
+    public void moveProcessedObjectsToTheArchive() throws Exception {
+        NotifyBuilder notify = new NotifyBuilder(context).whenDone(2).create();
+
+        mock.expectedMessageCount(2);
+        assertMockEndpointsSatisfied();
+        assertTrue(notify.matches(5, TimeUnit.SECONDS));
+
+        assertNotNull(clientMock.getObject("myarchivebucket", "processed/counter-0"));
+        assertNotNull(clientMock.getObject("myarchivebucket", "processed/counter-1"));
+        assertTrue(deletedKeys.contains("counter-0"));
+        assertTrue(deletedKeys.contains("counter-1"));
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public void deleteObject(String bucketName, String key) throws AmazonClientException, AmazonServiceException {
+                synchronized (deletedKeys) {
+                    deletedKeys.add(key);
+                }
+            }
+        };
+        for (int counter = 0; counter < 2; counter++) {
+            S3Object s3Object = new S3Object();
+            s3Object.setBucketName("mycamelbucket");
+            s3Object.setKey("counter-" + counter);
+
+            clientMock.objects.add(s3Object);
+        }
+
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&delay=5000&deleteAfterRead=false"
+                        + "&moveAfterRead=true&archiveBucketName=myarchivebucket&archivePrefix=processed/")
+                    .to("mock:result");
+            }
+        };
+    }
+}
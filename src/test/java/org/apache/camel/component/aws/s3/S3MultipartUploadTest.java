@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.ExchangePattern;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3MultipartUploadTest extends CamelTestSupport {
+
+    // two parts of the minimum size and a smaller last part
+    private static final byte[] CONTENT = createContent((int) (2 * S3MultipartUploader.MIN_PART_SIZE + 10));
+
+    private final Set<String> failedParts = new HashSet<String>();
+    private AmazonS3ClientMock clientMock;
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    public void uploadLargeFileInParts() throws Exception {
+        Exchange exchange = template.send("direct:start", ExchangePattern.InOut, createProcessor("large.txt"));
+
+        assertEquals("3a5c8b1ad448bca04584ecb55b836264-3", exchange.getOut().getHeader(S3Constants.E_TAG));
+        assertTrue(Arrays.equals(CONTENT, clientMock.contents.get("large.txt")));
+        // the second part failed once and was retried on its own
+        assertTrue(failedParts.contains("large.txt-2"));
+        assertTrue(clientMock.abortedUploads.isEmpty());
+    }
+
+    @Test
+    public void abortUploadWhenPartFails() throws Exception {
+        try {
+            template.requestBodyAndHeader("direct:start", createFile(), S3Constants.KEY, "broken.txt");
+            fail("Should have thrown an exception");
+        } catch (CamelExecutionException e) {
+            assertIsInstanceOf(AmazonClientException.class, e.getCause());
+        }
+
+        assertEquals(1, clientMock.abortedUploads.size());
+        assertTrue(clientMock.uploads.isEmpty());
+        assertNull(clientMock.contents.get("broken.txt"));
+    }
+
+    private Processor createProcessor(final String key) {
+        return new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(S3Constants.KEY, key);
+                exchange.getIn().setBody(createFile());
+            }
+        };
+    }
+
+    private File createFile() throws Exception {
+        File file = new File("target/multipart/" + CONTENT.length + ".txt");
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(CONTENT);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] createContent(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        return content;
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public UploadPartResult uploadPart(UploadPartRequest uploadPartRequest) throws AmazonClientException, AmazonServiceException {
+                String part = uploadPartRequest.getKey() + "-" + uploadPartRequest.getPartNumber();
+                synchronized (failedParts) {
+                    if (uploadPartRequest.getPartNumber() == 2 && (failedParts.add(part) || part.startsWith("broken"))) {
+                        throw new AmazonClientException("Connection reset");
+                    }
+                }
+                return super.uploadPart(uploadPartRequest);
+            }
+        };
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&multipartUploadThreshold=20"
+                        + "&uploadPartSize=" + S3MultipartUploader.MIN_PART_SIZE + "&uploadPoolSize=2&uploadPartRetries=1");
+            }
+        };
+    }
+}
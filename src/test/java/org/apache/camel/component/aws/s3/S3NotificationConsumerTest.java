@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.BucketNotificationConfiguration;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.NotifyBuilder;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.aws.sqs.AmazonSQSClientMock;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3NotificationConsumerTest extends CamelTestSupport {
+
+    private static final String TOPIC_ARN = "arn:aws:sns:us-east-1:541925086079:MyTopic";
+    private static final String OTHER_TOPIC_ARN = "arn:aws:sns:us-east-1:541925086079:OtherTopic";
+    private static final String ENDPOINT_URI = "aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&amazonSQSClient=#amazonSQSClient"
+        + "&notificationQueueName=MyQueue&notificationTopicArn=" + TOPIC_ARN + "&delay=100";
+
+    private final AtomicInteger deletedMessages = new AtomicInteger();
+    private AmazonS3ClientMock clientMock;
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    @Test
+    public void consumeNotifiedObjects() throws Exception {
+        NotifyBuilder notify = new NotifyBuilder(context).whenDone(3).create();
+
+        mock.expectedMessageCount(3);
+        assertMockEndpointsSatisfied();
+        assertTrue(notify.matches(5, TimeUnit.SECONDS));
+
+        Set<String> keys = new HashSet<String>();
+        for (Exchange exchange : mock.getExchanges()) {
+            keys.add(exchange.getIn().getHeader(S3Constants.KEY, String.class));
+        }
+        assertTrue(keys.contains("incoming/1.txt"));
+        assertTrue(keys.contains("incoming/report 2.txt"));
+        assertTrue(keys.contains("incoming/3.txt"));
+
+        // the test event, the messages which aren't events and the three notifications
+        assertEquals(6, deletedMessages.get());
+
+        // the topic is added to the configuration the bucket already had
+        List<BucketNotificationConfiguration.TopicConfiguration> topicConfigurations
+            = clientMock.notificationConfigurations.get("mycamelbucket").getTopicConfigurations();
+        assertEquals(2, topicConfigurations.size());
+        assertEquals(OTHER_TOPIC_ARN, topicConfigurations.get(0).getTopicARN());
+        assertEquals(TOPIC_ARN, topicConfigurations.get(1).getTopicARN());
+    }
+
+    @Test
+    public void addTheTopicToTheBucketOnlyOnce() throws Exception {
+        new S3NotificationReceiver(context.getEndpoint(ENDPOINT_URI, S3Endpoint.class)).start();
+
+        assertEquals(2, clientMock.notificationConfigurations.get("mycamelbucket").getTopicConfigurations().size());
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public S3Object getObject(String bucketName, String key) throws AmazonClientException, AmazonServiceException {
+                S3Object s3Object = super.getObject(bucketName, key);
+                if (s3Object == null) {
+                    AmazonServiceException e = new AmazonServiceException("The specified key does not exist.");
+                    e.setStatusCode(404);
+                    throw e;
+                }
+                return s3Object;
+            }
+        };
+        clientMock.objects.add(createObject("incoming/1.txt"));
+        clientMock.objects.add(createObject("incoming/report 2.txt"));
+        clientMock.objects.add(createObject("incoming/3.txt"));
+        clientMock.notificationConfigurations.put("mycamelbucket", new BucketNotificationConfiguration(Collections.singletonList(
+            new BucketNotificationConfiguration.TopicConfiguration(OTHER_TOPIC_ARN, "s3:ReducedRedundancyLostObject"))));
+        registry.bind("amazonS3Client", clientMock);
+
+        AmazonSQSClientMock sqsClientMock = new AmazonSQSClientMock() {
+            @Override
+            public void deleteMessage(DeleteMessageRequest deleteMessageRequest) throws AmazonServiceException, AmazonClientException {
+                deletedMessages.incrementAndGet();
+            }
+        };
+        String queueUrl = "https://queue.amazonaws.com/541925086079/MyQueue";
+        sqsClientMock.sendMessage(new SendMessageRequest(queueUrl, "{\"Service\":\"Amazon S3\",\"Event\":\"s3:TestEvent\"}"));
+        sqsClientMock.sendMessage(new SendMessageRequest(queueUrl, createEvent("incoming/1.txt")));
+        sqsClientMock.sendMessage(new SendMessageRequest(queueUrl, "no event"));
+        sqsClientMock.sendMessage(new SendMessageRequest(queueUrl, "{\"Type\":\"Notification\",\"TopicArn\":\"" + TOPIC_ARN + "\","
+            + "\"Message\":\"" + createEvent("incoming/report+2.txt").replace("\"", "\\\"") + "\"}"));
+        sqsClientMock.sendMessage(new SendMessageRequest(queueUrl, "{\"Records\":[{\"eventName\":\"ObjectCreated:Put\\u00"));
+        // only the object which still exists is consumed
+        sqsClientMock.sendMessage(new SendMessageRequest(queueUrl, createEvent("incoming/missing.txt", "incoming/3.txt")));
+        registry.bind("amazonSQSClient", sqsClientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from(ENDPOINT_URI)
+                    .to("mock:result");
+            }
+        };
+    }
+
+    private static S3Object createObject(String key) {
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName("mycamelbucket");
+        s3Object.setKey(key);
+        s3Object.setObjectContent(new ByteArrayInputStream(key.getBytes()));
+        return s3Object;
+    }
+
+    private static String createEvent(String... keys) {
+        StringBuilder event = new StringBuilder("{\"Records\":[");
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                event.append(',');
+            }
+            event.append("{\"eventVersion\":\"2.0\",\"eventSource\":\"aws:s3\",\"eventName\":\"ObjectCreated:Put\","
+                + "\"s3\":{\"bucket\":{\"name\":\"mycamelbucket\"},\"object\":{\"key\":\"" + keys[i] + "\",\"size\":14,"
+                + "\"eTag\":\"3a5c8b1ad448bca04584ecb55b836264\"}}}");
+        }
+        return event.append("]}").toString();
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.camel.component.aws.lease.LeaseStore;
+import org.apache.camel.component.aws.lease.MemoryLeaseStore;
+import org.apache.camel.component.aws.s3.support.S3HashPrefix;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class S3PartitionCoordinatorTest {
+
+    private LeaseStore leaseStore = new MemoryLeaseStore();
+
+    @Test
+    public void rebalanceOnJoinAndLeave() throws Exception {
+        S3PartitionCoordinator node1 = new S3PartitionCoordinator(leaseStore, "mycamelbucket", "node1", 4, 30000);
+        S3PartitionCoordinator node2 = new S3PartitionCoordinator(leaseStore, "mycamelbucket", "node2", 4, 30000);
+
+        node1.rebalance();
+        assertEquals(4, node1.getOwnedPartitions().size());
+
+        // node2 joins, but all partitions are still owned by node1
+        node2.rebalance();
+        assertEquals(0, node2.getOwnedPartitions().size());
+
+        // node1 hands over the partitions above its fair share
+        node1.rebalance();
+        node2.rebalance();
+        assertEquals(2, node1.getOwnedPartitions().size());
+        assertEquals(2, node2.getOwnedPartitions().size());
+
+        Set<Integer> all = new HashSet<Integer>(node1.getOwnedPartitions());
+        all.addAll(node2.getOwnedPartitions());
+        assertEquals(4, all.size());
+
+        // node1 leaves
+        node1.releaseAll();
+        node2.rebalance();
+        assertEquals(4, node2.getOwnedPartitions().size());
+    }
+
+    @Test
+    public void eachKeyIsOwnedByOneNode() throws Exception {
+        S3PartitionCoordinator node1 = new S3PartitionCoordinator(leaseStore, "mycamelbucket", "node1", 8, 30000);
+        S3PartitionCoordinator node2 = new S3PartitionCoordinator(leaseStore, "mycamelbucket", "node2", 8, 30000);
+        node1.rebalance();
+        node2.rebalance();
+        node1.rebalance();
+        node2.rebalance();
+
+        for (int counter = 0; counter < 100; counter++) {
+            String key = "counter-" + counter;
+            assertTrue(node1.isOwned(key) || node2.isOwned(key));
+            assertFalse(node1.isOwned(key) && node2.isOwned(key));
+        }
+    }
+
+    @Test
+    public void divideHashPrefixesBetweenNodes() throws Exception {
+        S3PartitionCoordinator node1 = new S3PartitionCoordinator(leaseStore, "mycamelbucket", "node1", 4, 30000);
+        S3PartitionCoordinator node2 = new S3PartitionCoordinator(leaseStore, "mycamelbucket", "node2", 4, 30000);
+        node1.setHashPrefixLength(1);
+        node2.setHashPrefixLength(1);
+        node1.rebalance();
+        node2.rebalance();
+        node1.rebalance();
+        node2.rebalance();
+
+        int listedByNode1 = 0;
+        for (String hashPrefix : S3HashPrefix.prefixes(1)) {
+            assertTrue(node1.isOwnedHashPrefix(hashPrefix) ^ node2.isOwnedHashPrefix(hashPrefix));
+            if (node1.isOwnedHashPrefix(hashPrefix)) {
+                listedByNode1++;
+                // the keys below the hash prefix belong to the node which lists it
+                assertTrue(node1.isOwned(hashPrefix + "logs/1.txt"));
+            }
+        }
+        assertEquals(8, listedByNode1);
+        assertEquals(3, node1.partitionOf("b/logs/1.txt"));
+    }
+}
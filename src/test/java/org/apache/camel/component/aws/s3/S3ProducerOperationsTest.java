@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3ProducerOperationsTest extends CamelTestSupport {
+
+    private final List<String> deletedKeys = new ArrayList<String>();
+    private AmazonS3ClientMock clientMock;
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    public void copyObject() throws Exception {
+        Exchange exchange = template.request("direct:start", new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(S3Constants.OPERATION, S3Operations.COPY_OBJECT);
+                exchange.getIn().setHeader(S3Constants.KEY, "reports/1.txt");
+                exchange.getIn().setHeader(S3Constants.DESTINATION_BUCKET_NAME, "myarchivebucket");
+                exchange.getIn().setHeader(S3Constants.DESTINATION_KEY, "archive/1.txt");
+            }
+        });
+
+        assertEquals("3a5c8b1ad448bca04584ecb55b836264", exchange.getOut().getHeader(S3Constants.E_TAG));
+        assertNotNull(clientMock.getObject("myarchivebucket", "archive/1.txt"));
+    }
+
+    @Test
+    public void deleteObject() throws Exception {
+        template.sendBodyAndHeader("direct:delete", null, S3Constants.KEY, "reports/1.txt");
+
+        assertEquals(1, deletedKeys.size());
+        assertEquals("reports/1.txt", deletedKeys.get(0));
+    }
+
+    @Test
+    public void getObject() throws Exception {
+        Exchange exchange = template.request("direct:start", new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(S3Constants.OPERATION, S3Operations.GET_OBJECT);
+                exchange.getIn().setHeader(S3Constants.KEY, "reports/2.txt");
+            }
+        });
+
+        assertEquals("Report 2", exchange.getOut().getBody(String.class));
+        assertEquals(8L, exchange.getOut().getHeader(S3Constants.CONTENT_LENGTH));
+        assertEquals("6a1559560f67c5e7a7d5d838bf0272ee", exchange.getOut().getHeader(S3Constants.E_TAG));
+    }
+
+    @Test
+    public void getObjectMetadata() throws Exception {
+        Exchange exchange = template.request("direct:start", new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(S3Constants.OPERATION, S3Operations.GET_OBJECT_METADATA);
+                exchange.getIn().setHeader(S3Constants.KEY, "reports/2.txt");
+                exchange.getIn().setBody("unchanged");
+            }
+        });
+
+        assertEquals("unchanged", exchange.getOut().getBody(String.class));
+        assertEquals(8L, exchange.getOut().getHeader(S3Constants.CONTENT_LENGTH));
+        assertEquals("6a1559560f67c5e7a7d5d838bf0272ee", exchange.getOut().getHeader(S3Constants.E_TAG));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void listObjects() throws Exception {
+        Exchange exchange = template.request("direct:start", new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(S3Constants.OPERATION, S3Operations.LIST_OBJECTS);
+                exchange.getIn().setHeader(S3Constants.PREFIX, "reports/");
+            }
+        });
+
+        List<S3ObjectSummary> summaries = exchange.getOut().getBody(List.class);
+        assertEquals(2, summaries.size());
+        assertEquals("reports/1.txt", summaries.get(0).getKey());
+        assertEquals("reports/2.txt", summaries.get(1).getKey());
+        assertNull(exchange.getOut().getHeader(S3Constants.MARKER));
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public void deleteObject(String bucketName, String key) throws AmazonClientException, AmazonServiceException {
+                deletedKeys.add(key);
+            }
+        };
+        clientMock.objects.add(createObject("reports/1.txt", "3a5c8b1ad448bca04584ecb55b836264", "Report 1"));
+        clientMock.objects.add(createObject("reports/2.txt", "6a1559560f67c5e7a7d5d838bf0272ee", "Report 2"));
+        clientMock.objects.add(createObject("other/3.txt", "3a5c8b1ad448bca04584ecb55b836264", "Other 3"));
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client");
+
+                from("direct:delete")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&operation=deleteObject");
+            }
+        };
+    }
+
+    private static S3Object createObject(String key, String eTag, String content) {
+        InputStream objectContent = new ByteArrayInputStream(content.getBytes());
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName("mycamelbucket");
+        s3Object.setKey(key);
+        s3Object.setObjectContent(objectContent);
+        s3Object.getObjectMetadata().setContentLength(content.length());
+        s3Object.getObjectMetadata().setHeader("ETag", eTag);
+        return s3Object;
+    }
+}
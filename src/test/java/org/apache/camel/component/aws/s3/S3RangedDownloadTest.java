@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3RangedDownloadTest extends CamelTestSupport {
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    private byte[] content = new byte[100000];
+
+    @Test
+    public void downloadInParallelRanges() throws Exception {
+        mock.expectedMessageCount(1);
+        assertMockEndpointsSatisfied();
+
+        byte[] body = mock.getExchanges().get(0).getIn().getBody(byte[].class);
+        assertTrue(Arrays.equals(content, body));
+        assertEquals(100000L, mock.getExchanges().get(0).getIn().getHeader(S3Constants.CONTENT_LENGTH));
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        new Random(1).nextBytes(content);
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName("mycamelbucket");
+        s3Object.setKey("large");
+        s3Object.getObjectMetadata().setContentLength(content.length);
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock();
+        clientMock.objects.add(s3Object);
+        clientMock.contents.put("large", content);
+
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&delay=5000"
+                        + "&multipartDownloadThreshold=1000&downloadPartSize=7000&downloadPoolSize=4")
+                    .convertBodyTo(byte[].class)
+                    .to("mock:result");
+            }
+        };
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.processor.idempotent.MemoryIdempotentRepository;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3RecordSplitterTest extends CamelTestSupport {
+
+    private static final int LONG_LINE_LENGTH = 200000;
+
+    private final AtomicBoolean failed = new AtomicBoolean();
+    private final AtomicLong largestRange = new AtomicLong();
+
+    @EndpointInject(uri = "mock:lines")
+    private MockEndpoint lines;
+
+    @EndpointInject(uri = "mock:parallel")
+    private MockEndpoint parallel;
+
+    @EndpointInject(uri = "mock:resumed")
+    private MockEndpoint resumed;
+
+    @EndpointInject(uri = "mock:long")
+    private MockEndpoint longLines;
+
+    @Test
+    public void splitObjectIntoLines() throws Exception {
+        lines.expectedBodiesReceived("line-1", "line-2", "line-3", "", "line-5");
+        lines.message(1).header(S3Constants.RECORD_OFFSET).isEqualTo(7L);
+        lines.message(4).header(S3Constants.RECORD_OFFSET).isEqualTo(23L);
+        lines.message(0).header(S3Constants.KEY).isEqualTo("lines/records.txt");
+
+        assertMockEndpointsSatisfied();
+    }
+
+    @Test
+    public void splitObjectInParallelRanges() throws Exception {
+        parallel.expectedMessageCount(100);
+        assertMockEndpointsSatisfied();
+
+        Set<String> records = new HashSet<String>();
+        for (Exchange exchange : parallel.getExchanges()) {
+            records.add(exchange.getIn().getBody(String.class));
+        }
+        assertEquals(100, records.size());
+        assertTrue(records.contains("record-0"));
+        assertTrue(records.contains("record-99"));
+    }
+
+    @Test
+    public void resumeAtFailedRecord() throws Exception {
+        resumed.expectedBodiesReceived("rec1", "rec2", "rec3", "rec4");
+        assertMockEndpointsSatisfied();
+
+        assertTrue(failed.get());
+    }
+
+    @Test
+    public void requestOnlyTheTailOfTheLastLine() throws Exception {
+        longLines.expectedMessageCount(3);
+        assertMockEndpointsSatisfied();
+
+        // the ranges are read in parallel, so the records may arrive in any order
+        Set<Integer> lengths = new HashSet<Integer>();
+        for (Exchange exchange : longLines.getExchanges()) {
+            lengths.add(exchange.getIn().getBody(String.class).length());
+        }
+        assertTrue(lengths.contains("short".length()));
+        assertTrue(lengths.contains(LONG_LINE_LENGTH));
+        assertTrue(lengths.contains("end".length()));
+        // each range reader requested its range and a tail at a time instead of the rest of the object
+        assertTrue("Requested " + largestRange.get() + " bytes at once", largestRange.get() < LONG_LINE_LENGTH);
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            records.append("record-").append(i).append('\n');
+        }
+
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < LONG_LINE_LENGTH; i++) {
+            longLine.append('x');
+        }
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock() {
+            @Override
+            public S3Object getObject(GetObjectRequest getObjectRequest) throws AmazonClientException, AmazonServiceException {
+                if (getObjectRequest.getKey().startsWith("long/")) {
+                    long[] range = getObjectRequest.getRange();
+                    long length = range[1] - range[0] + 1;
+                    synchronized (largestRange) {
+                        largestRange.set(Math.max(largestRange.get(), length));
+                    }
+                }
+                return super.getObject(getObjectRequest);
+            }
+        };
+        addObject(clientMock, "lines/records.txt", "line-1\nline-2\r\nline-3\n\nline-5");
+        addObject(clientMock, "parallel/records.txt", records.toString());
+        addObject(clientMock, "resumed/records.dat", "rec1rec2rec3rec4");
+        addObject(clientMock, "long/records.txt", "short\n" + longLine + "\nend\n");
+        registry.bind("amazonS3Client", clientMock);
+        registry.bind("processedObjects", MemoryIdempotentRepository.memoryIdempotentRepository());
+
+        return registry;
+    }
+
+    private static void addObject(AmazonS3ClientMock clientMock, String key, String content) {
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName("mycamelbucket");
+        s3Object.setKey(key);
+        s3Object.getObjectMetadata().setContentLength(content.length());
+
+        clientMock.objects.add(s3Object);
+        clientMock.contents.put(key, content.getBytes());
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                String uri = "aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&idempotentRepository=#processedObjects&delay=100";
+
+                from(uri + "&prefix=lines/&recordMode=line")
+                    .convertBodyTo(String.class)
+                    .to("mock:lines");
+
+                from(uri + "&prefix=parallel/&recordMode=line&recordReaderPoolSize=3")
+                    .convertBodyTo(String.class)
+                    .to("mock:parallel");
+
+                from(uri + "&prefix=long/&recordMode=line&recordReaderPoolSize=3")
+                    .convertBodyTo(String.class)
+                    .to("mock:long");
+
+                from(uri + "&prefix=resumed/&recordMode=fixed&recordLength=4")
+                    .convertBodyTo(String.class)
+                    .process(new Processor() {
+                        public void process(Exchange exchange) throws Exception {
+                            if ("rec3".equals(exchange.getIn().getBody()) && failed.compareAndSet(false, true)) {
+                                throw new IllegalStateException("Failing record rec3 once");
+                            }
+                        }
+                    })
+                    .to("mock:resumed");
+            }
+        };
+    }
+}
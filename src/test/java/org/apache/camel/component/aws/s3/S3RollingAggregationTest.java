@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.converter.IOConverter;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3RollingAggregationTest extends CamelTestSupport {
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private AmazonS3ClientMock clientMock;
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    public void uploadAggregatedObjectWhenFull() throws Exception {
+        for (int counter = 1; counter <= 6; counter++) {
+            template.sendBody("direct:start", "line-" + counter);
+        }
+
+        // the sixth line is still in the buffer
+        assertEquals(1, clientMock.objects.size());
+        S3Object s3Object = clientMock.objects.get(0);
+        assertEquals("logs/5.log", s3Object.getKey());
+        assertEquals("line-1\nline-2\nline-3\nline-4\nline-5\n", IOConverter.toString(s3Object.getObjectContent(), null));
+    }
+
+    @Test
+    public void uploadCompressedObjectOnShutdown() throws Exception {
+        template.sendBody("direct:gzip", "line-1");
+        template.sendBody("direct:gzip", "line-2");
+        assertEquals(0, clientMock.objects.size());
+
+        context.stop();
+
+        assertEquals(1, clientMock.objects.size());
+        S3Object s3Object = clientMock.objects.get(0);
+        assertEquals("logs/2.log.gz", s3Object.getKey());
+        InputStream in = new GZIPInputStream(s3Object.getObjectContent());
+        assertEquals("line-1\nline-2\n", IOConverter.toString(in, null));
+    }
+
+    @Test
+    public void retryFailedUploads() throws Exception {
+        failures.set(1);
+        for (int counter = 1; counter <= 6; counter++) {
+            template.sendBody("direct:start", "line-" + counter);
+        }
+
+        // the full buffer failed to upload, but its exchanges are done already
+        assertEquals(0, clientMock.objects.size());
+
+        context.stop();
+
+        assertEquals(2, clientMock.objects.size());
+        S3Object s3Object = clientMock.objects.get(0);
+        assertEquals("logs/5.log", s3Object.getKey());
+        assertEquals("line-1\nline-2\nline-3\nline-4\nline-5\n", IOConverter.toString(s3Object.getObjectContent(), null));
+        assertEquals("logs/1.log", clientMock.objects.get(1).getKey());
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public PutObjectResult putObject(PutObjectRequest putObjectRequest) throws AmazonClientException, AmazonServiceException {
+                if (failures.getAndDecrement() > 0) {
+                    throw new AmazonClientException("Slow down");
+                }
+                return super.putObject(putObjectRequest);
+            }
+        };
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&aggregationSize=35"
+                        + "&aggregationKey=logs/${header.CamelAwsS3AggregatedSize}.log");
+
+                from("direct:gzip")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&aggregationSize=1000000&aggregationGzip=true"
+                        + "&aggregationKey=logs/${header.CamelAwsS3AggregatedSize}.log.gz");
+            }
+        };
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3ShardedConsumerTest extends CamelTestSupport {
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    @Test
+    public void consumeMatchingObjectsOfAllShards() throws Exception {
+        mock.expectedMessageCount(3);
+        assertMockEndpointsSatisfied();
+
+        Set<String> keys = new HashSet<String>();
+        for (Exchange exchange : mock.getExchanges()) {
+            keys.add(exchange.getIn().getHeader(S3Constants.KEY, String.class));
+        }
+
+        assertTrue(keys.contains("logs/a/1.txt"));
+        assertTrue(keys.contains("logs/b/2.txt"));
+        assertTrue(keys.contains("logs/c/5.txt"));
+    }
+
+    @Test
+    public void neverListMoreObjectsThanRequested() throws Exception {
+        S3ShardedLister lister = new S3ShardedLister(context.getEndpoint("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client"
+                + "&prefixes=logs/a/,logs/b/,logs/c/,other/", S3Endpoint.class));
+
+        assertEquals(Arrays.asList("logs/a/1.txt", "logs/b/2.txt"), keys(lister.list(2)));
+        assertEquals(Arrays.asList("logs/c/5.txt", "other/4.txt"), keys(lister.list(2)));
+        // the shards listed to their end wait for the next pass
+        assertEquals(Arrays.asList("logs/b/3.log"), keys(lister.list(2)));
+        assertEquals(Arrays.asList("logs/a/1.txt", "logs/b/2.txt"), keys(lister.list(2)));
+    }
+
+    private static List<String> keys(List<S3ObjectSummary> summaries) {
+        List<String> answer = new ArrayList<String>();
+        for (S3ObjectSummary summary : summaries) {
+            answer.add(summary.getKey());
+        }
+        return answer;
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock();
+        for (String key : new String[]{"logs/a/1.txt", "logs/b/2.txt", "logs/b/3.log", "other/4.txt", "logs/c/5.txt"}) {
+            S3Object s3Object = new S3Object();
+            s3Object.setBucketName("mycamelbucket");
+            s3Object.setKey(key);
+
+            clientMock.objects.add(s3Object);
+        }
+
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&delay=5000&maxMessagesPerPoll=6"
+                        + "&prefixes=logs/a/,logs/b/,logs/c/&suffix=.txt&listingPoolSize=3")
+                    .to("mock:result");
+            }
+        };
+    }
+}
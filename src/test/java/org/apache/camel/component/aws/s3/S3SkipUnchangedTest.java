@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.util.IOHelper;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3SkipUnchangedTest extends CamelTestSupport {
+
+    private int puts;
+    private int heads;
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    public void skipUploadOfCachedUnchangedObject() throws Exception {
+        Exchange exchange = template.request("direct:start", new BodyAndKey("This is my bucket content.", "unchanged.txt"));
+        assertNull(exchange.getOut().getHeader(S3Constants.UNCHANGED));
+        assertEquals(1, puts);
+        assertEquals(1, heads);
+
+        exchange = template.request("direct:start", new BodyAndKey("This is my bucket content.", "unchanged.txt"));
+        assertEquals(Boolean.TRUE, exchange.getOut().getHeader(S3Constants.UNCHANGED));
+        assertEquals(md5("This is my bucket content."), exchange.getOut().getHeader(S3Constants.E_TAG));
+        assertEquals(1, puts);
+        assertEquals(1, heads);
+
+        exchange = template.request("direct:start", new BodyAndKey("This is my changed content.", "unchanged.txt"));
+        assertNull(exchange.getOut().getHeader(S3Constants.UNCHANGED));
+        assertEquals(2, puts);
+        assertEquals(1, heads);
+    }
+
+    @Test
+    public void skipUploadOfStoredUnchangedObject() throws Exception {
+        Exchange exchange = template.request("direct:start", new BodyAndKey("This object is stored already.", "stored.txt"));
+
+        assertEquals(Boolean.TRUE, exchange.getOut().getHeader(S3Constants.UNCHANGED));
+        assertEquals(0, puts);
+        assertEquals(1, heads);
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        AmazonS3ClientMock clientMock = new AmazonS3ClientMock() {
+            @Override
+            public PutObjectResult putObject(PutObjectRequest putObjectRequest) throws AmazonClientException, AmazonServiceException {
+                puts++;
+                String eTag;
+                try {
+                    eTag = md5(read(putObjectRequest.getFile()));
+                } catch (Exception e) {
+                    throw new AmazonClientException(e.getMessage(), e);
+                }
+                objects.add(createObject(putObjectRequest.getKey(), eTag));
+
+                PutObjectResult putObjectResult = new PutObjectResult();
+                putObjectResult.setETag(eTag);
+                return putObjectResult;
+            }
+
+            @Override
+            public ObjectMetadata getObjectMetadata(String bucketName, String key) throws AmazonClientException, AmazonServiceException {
+                heads++;
+                return super.getObjectMetadata(bucketName, key);
+            }
+        };
+        clientMock.objects.add(createObject("stored.txt", md5("This object is stored already.")));
+
+        new File("target/etags/mycamelbucket.properties").delete();
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&skipUnchanged=true"
+                        + "&eTagCacheFile=target/etags/mycamelbucket.properties");
+            }
+        };
+    }
+
+    private static S3Object createObject(String key, String eTag) {
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName("mycamelbucket");
+        s3Object.setKey(key);
+        s3Object.getObjectMetadata().setHeader("ETag", eTag);
+        return s3Object;
+    }
+
+    private static String md5(String content) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("MD5").digest(content.getBytes())) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static String read(File file) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        try {
+            IOHelper.copy(in, out);
+        } finally {
+            in.close();
+        }
+        return out.toString();
+    }
+
+    private static final class BodyAndKey implements Processor {
+        private final String body;
+        private final String key;
+
+        BodyAndKey(String body, String key) {
+            this.body = body;
+            this.key = key;
+        }
+
+        public void process(Exchange exchange) throws Exception {
+            exchange.getIn().setHeader(S3Constants.KEY, key);
+            exchange.getIn().setBody(body);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class S3StreamingUploadTest extends CamelTestSupport {
+
+    private static final String CONTENT = "This stream of known length is put at once.";
+
+    private final List<PutObjectRequest> putObjectRequests = new ArrayList<PutObjectRequest>();
+    private AmazonS3ClientMock clientMock;
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Test
+    public void uploadStreamOfUnknownLengthInParts() throws Exception {
+        // two parts of the minimum size and a smaller last part
+        byte[] content = new byte[(int) (2 * S3MultipartUploader.MIN_PART_SIZE + 10)];
+        Arrays.fill(content, (byte) 'x');
+        template.sendBodyAndHeader("direct:start", new ByteArrayInputStream(content), S3Constants.KEY, "unknown.txt");
+
+        assertTrue(Arrays.equals(content, clientMock.contents.get("unknown.txt")));
+        assertTrue(putObjectRequests.isEmpty());
+    }
+
+    @Test
+    public void putSmallStreamOfUnknownLengthAtOnce() throws Exception {
+        template.sendBodyAndHeader("direct:start", new ByteArrayInputStream("small".getBytes()), S3Constants.KEY, "small.txt");
+
+        assertEquals(1, putObjectRequests.size());
+        assertEquals(5, putObjectRequests.get(0).getMetadata().getContentLength());
+    }
+
+    @Test
+    public void putStreamOfKnownLength() throws Exception {
+        template.send("direct:start", new Processor() {
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(S3Constants.KEY, "known.txt");
+                exchange.getIn().setHeader(S3Constants.CONTENT_LENGTH, CONTENT.length());
+                exchange.getIn().setBody(new ByteArrayInputStream(CONTENT.getBytes()));
+            }
+        });
+
+        assertEquals(1, putObjectRequests.size());
+        assertEquals(CONTENT.length(), putObjectRequests.get(0).getMetadata().getContentLength());
+        assertTrue(clientMock.uploads.isEmpty());
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public PutObjectResult putObject(PutObjectRequest putObjectRequest) throws AmazonClientException, AmazonServiceException {
+                putObjectRequests.add(putObjectRequest);
+                return super.putObject(putObjectRequest);
+            }
+        };
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&uploadPartSize="
+                        + S3MultipartUploader.MIN_PART_SIZE + "&uploadPoolSize=2");
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Date;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.converter.IOConverter;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.apache.camel.util.FileUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+public class S3SyncTest extends CamelTestSupport {
+
+    private static final Date LAST_MODIFIED = new Date(1300000000000L);
+
+    private final File directory = new File("target/sync");
+    private AmazonS3ClientMock clientMock;
+    private int copies;
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        FileUtil.removeDir(directory);
+        super.setUp();
+    }
+
+    @Test
+    public void syncToBucket() throws Exception {
+        S3SyncResult result = template.requestBodyAndHeader("direct:start", null,
+            S3Constants.DESTINATION_BUCKET_NAME, "mybackupbucket", S3SyncResult.class);
+
+        // 1.txt is unchanged, 2.txt has another ETag, 3.txt and 4.txt are new and old.txt is gone
+        assertEquals(4, result.getCompared());
+        assertEquals(3, result.getCopied());
+        assertEquals(1, result.getDeleted());
+        assertEquals(9, result.getBytesSaved());
+        assertEquals(3, copies);
+        assertNotNull(clientMock.getObject("mybackupbucket", "data/3.txt"));
+    }
+
+    @Test
+    public void syncToDirectory() throws Exception {
+        S3SyncResult result = template.requestBodyAndHeader("direct:start", null,
+            S3Constants.PREFIX, "data/", S3SyncResult.class);
+
+        assertEquals(4, result.getCopied());
+        assertEquals("Content 3", IOConverter.toString(new FileInputStream(new File(directory, "data/3.txt")), null));
+        assertEquals(LAST_MODIFIED.getTime(), new File(directory, "data/3.txt").lastModified());
+
+        // a changed file is copied again, the others are left as they are
+        FileOutputStream out = new FileOutputStream(new File(directory, "data/2.txt"));
+        out.write("Changed".getBytes());
+        out.close();
+
+        result = template.requestBodyAndHeader("direct:start", null, S3Constants.PREFIX, "data/", S3SyncResult.class);
+
+        assertEquals(4, result.getCompared());
+        assertEquals(1, result.getCopied());
+        assertEquals(27, result.getBytesSaved());
+        assertEquals("Content 2", IOConverter.toString(new FileInputStream(new File(directory, "data/2.txt")), null));
+    }
+
+    @Test
+    public void syncOnlyKeysWithinDirectory() throws Exception {
+        File escaped = new File("target/escaped.txt");
+        escaped.delete();
+        // the mock lists the objects in the order they were added
+        addObject("mycamelbucket", "data/../../escaped.txt", "3a5c8b1ad448bca04584ecb55b836264", "Escaped");
+        clientMock.objects.add(0, clientMock.objects.remove(clientMock.objects.size() - 1));
+        addObject("mycamelbucket", "data/folder/", "d41d8cd98f00b204e9800998ecf8427e", "");
+
+        S3SyncResult result = template.requestBodyAndHeader("direct:start", null,
+            S3Constants.PREFIX, "data/", S3SyncResult.class);
+
+        assertEquals(4, result.getCompared());
+        assertEquals(4, result.getCopied());
+        assertFalse(escaped.exists());
+        assertFalse(new File(directory, "data/folder").exists());
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public CopyObjectResult copyObject(CopyObjectRequest copyObjectRequest) throws AmazonClientException, AmazonServiceException {
+                copies++;
+                return super.copyObject(copyObjectRequest);
+            }
+        };
+        addObject("mycamelbucket", "data/1.txt", "3a5c8b1ad448bca04584ecb55b836264", "Content 1");
+        addObject("mycamelbucket", "data/2.txt", "6a1559560f67c5e7a7d5d838bf0272ee", "Content 2");
+        addObject("mycamelbucket", "data/3.txt", "9e107d9d372bb6826bd81d3542a419d6", "Content 3");
+        addObject("mycamelbucket", "data/4.txt", "e4d909c290d0fb1ca068ffaddf22cbd0", "Content 4");
+        addObject("mybackupbucket", "data/1.txt", "3a5c8b1ad448bca04584ecb55b836264", "Content 1");
+        addObject("mybackupbucket", "data/2.txt", "d41d8cd98f00b204e9800998ecf8427e", "Content 2");
+        addObject("mybackupbucket", "data/old.txt", "d41d8cd98f00b204e9800998ecf8427e", "Old");
+        registry.bind("amazonS3Client", clientMock);
+
+        return registry;
+    }
+
+    private void addObject(String bucketName, String key, String eTag, String content) {
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(bucketName);
+        s3Object.setKey(key);
+        s3Object.getObjectMetadata().setContentLength(content.length());
+        s3Object.getObjectMetadata().setHeader("ETag", eTag);
+        s3Object.getObjectMetadata().setLastModified(LAST_MODIFIED);
+
+        clientMock.objects.add(s3Object);
+        clientMock.contents.put(key, content.getBytes());
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&operation=sync&syncDelete=true"
+                        + "&syncDirectory=target/sync&syncPoolSize=1");
+            }
+        };
+    }
+}
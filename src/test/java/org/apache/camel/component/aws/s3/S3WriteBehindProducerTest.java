@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.aws.s3.support.S3Compression;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.apache.camel.util.FileUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+public class S3WriteBehindProducerTest extends CamelTestSupport {
+
+    private static final File JOURNAL = new File("target/write-behind");
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private final List<String> storedBodies = new CopyOnWriteArrayList<String>();
+    private AmazonS3ClientMock clientMock;
+
+    @EndpointInject(uri = "direct:start")
+    private ProducerTemplate template;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        FileUtil.removeDir(JOURNAL);
+        FileUtil.removeDir(new File("target/write-behind-compressed"));
+        JOURNAL.mkdirs();
+
+        // left behind by a previous run
+        FileOutputStream out = new FileOutputStream(new File(JOURNAL, "0000000000001-000001.data"));
+        out.write("Recovered content".getBytes());
+        out.close();
+        Properties properties = new Properties();
+        properties.setProperty("key", "recovered.txt");
+        properties.setProperty("created", String.valueOf(System.currentTimeMillis()));
+        out = new FileOutputStream(new File(JOURNAL, "0000000000001-000001.entry"));
+        properties.store(out, null);
+        out.close();
+
+        super.setUp();
+    }
+
+    @Test
+    public void uploadJournaledBodiesInTheBackground() throws Exception {
+        template.sendBodyAndHeader("direct:start", "This is my bucket content.", S3Constants.KEY, "CamelUnitTest");
+
+        for (int i = 0; i < 50 && JOURNAL.list().length > 0; i++) {
+            Thread.sleep(100);
+        }
+
+        assertNotNull(clientMock.getObject("mycamelbucket", "CamelUnitTest"));
+        assertNotNull(clientMock.getObject("mycamelbucket", "recovered.txt"));
+        // the first upload failed and has been retried
+        assertEquals(3, failures.get());
+        assertEquals(0, JOURNAL.list().length);
+    }
+
+    @Test
+    public void compressJournaledBodies() throws Exception {
+        template.sendBodyAndHeader("direct:compressed", "This is my compressed content.", S3Constants.KEY, "compressed.txt");
+
+        for (int i = 0; i < 50 && storedBodies.isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(Arrays.asList("This is my compressed content."), storedBodies);
+        S3Object s3Object = context.getRegistry().lookup("storingS3Client", AmazonS3ClientMock.class).getObject("mycamelbucket", "compressed.txt");
+        assertEquals("gzip", s3Object.getObjectMetadata().getContentEncoding());
+    }
+
+    @Test
+    public void reserveTheSpaceBeforeWriting() throws Exception {
+        final File journal = new File("target/write-behind-full");
+        FileUtil.removeDir(journal);
+        final CountDownLatch uploads = new CountDownLatch(1);
+        ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1);
+        S3Endpoint endpoint = context.getEndpoint("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client"
+                + "&writeBehindDirectory=target/write-behind-full&writeBehindMaxDiskUsage=20&writeBehindRetryDelay=100", S3Endpoint.class);
+        final S3WriteBehindQueue queue = new S3WriteBehindQueue(endpoint, new S3MultipartUploader(endpoint, null), executorService) {
+            @Override
+            protected void upload(String id) throws Exception {
+                uploads.await();
+                super.upload(id);
+            }
+        };
+        queue.start();
+        try {
+            queue.add("first.txt", new ByteArrayInputStream("0123456789abcdef".getBytes()), 16);
+
+            Thread producer = new Thread() {
+                public void run() {
+                    try {
+                        queue.add("second.txt", new ByteArrayInputStream("0123456789abcdef".getBytes()), 16);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            producer.start();
+            Thread.sleep(500);
+
+            // the second body waits for the space before it's written
+            assertEquals(16, queue.getDiskUsage());
+            assertEquals(2, journal.list().length);
+
+            uploads.countDown();
+            producer.join(5000);
+            assertFalse(producer.isAlive());
+            assertTrue(queue.getDiskUsage() <= 20);
+        } finally {
+            uploads.countDown();
+            queue.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void uploadTheEntriesOfAKeyInOrder() throws Exception {
+        FileUtil.removeDir(new File("target/write-behind-ordered"));
+        final CountDownLatch journaled = new CountDownLatch(1);
+        final AtomicInteger attempts = new AtomicInteger();
+        ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+        S3Endpoint endpoint = context.getEndpoint("aws-s3://mycamelbucket?amazonS3Client=#storingS3Client"
+                + "&writeBehindDirectory=target/write-behind-ordered&writeBehindRetryDelay=100", S3Endpoint.class);
+        S3WriteBehindQueue queue = new S3WriteBehindQueue(endpoint, new S3MultipartUploader(endpoint, null), executorService) {
+            @Override
+            protected void upload(String id) throws Exception {
+                if (attempts.getAndIncrement() == 0) {
+                    // the second body is journaled while the first upload is about to fail
+                    journaled.await();
+                    throw new AmazonClientException("Connection reset");
+                }
+                super.upload(id);
+            }
+        };
+        queue.start();
+        try {
+            queue.add("ordered.txt", new ByteArrayInputStream("first".getBytes()), 5);
+            queue.add("ordered.txt", new ByteArrayInputStream("second".getBytes()), 6);
+            journaled.countDown();
+
+            for (int i = 0; i < 50 && queue.getQueueDepth() > 0; i++) {
+                Thread.sleep(100);
+            }
+
+            // the second body isn't overwritten by the retry of the first one
+            assertEquals(Arrays.asList("first", "second"), storedBodies);
+        } finally {
+            journaled.countDown();
+            queue.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        clientMock = new AmazonS3ClientMock() {
+            @Override
+            public synchronized PutObjectResult putObject(PutObjectRequest putObjectRequest) throws AmazonClientException, AmazonServiceException {
+                if (failures.getAndIncrement() == 0) {
+                    throw new AmazonClientException("Slow down");
+                }
+                return super.putObject(putObjectRequest);
+            }
+        };
+        registry.bind("amazonS3Client", clientMock);
+        registry.bind("storingS3Client", new AmazonS3ClientMock() {
+            @Override
+            public PutObjectResult putObject(PutObjectRequest putObjectRequest) throws AmazonClientException, AmazonServiceException {
+                try {
+                    InputStream in = S3Compression.decompress(new FileInputStream(putObjectRequest.getFile()),
+                        putObjectRequest.getMetadata().getContentEncoding());
+                    storedBodies.add(context.getTypeConverter().convertTo(String.class, in));
+                } catch (IOException e) {
+                    throw new AmazonClientException("Cannot read " + putObjectRequest.getFile(), e);
+                }
+                return super.putObject(putObjectRequest);
+            }
+        });
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:start")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#amazonS3Client&writeBehindDirectory=target/write-behind"
+                        + "&writeBehindPoolSize=1&writeBehindRetryDelay=100");
+
+                from("direct:compressed")
+                    .to("aws-s3://mycamelbucket?amazonS3Client=#storingS3Client&writeBehindDirectory=target/write-behind-compressed"
+                        + "&compression=gzip");
+            }
+        };
+    }
+}
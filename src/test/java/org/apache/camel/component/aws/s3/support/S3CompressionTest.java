@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class S3CompressionTest {
+
+    @Test
+    public void roundTripGzip() throws Exception {
+        assertRoundTrip(S3Compression.GZIP);
+    }
+
+    @Test
+    public void roundTripDeflate() throws Exception {
+        assertRoundTrip(S3Compression.DEFLATE);
+    }
+
+    @Test
+    public void keepContentWithUnknownEncoding() throws Exception {
+        InputStream in = new ByteArrayInputStream(new byte[0]);
+        assertSame(in, S3Compression.decompress(in, null));
+        assertSame(in, S3Compression.decompress(in, "identity"));
+    }
+
+    private void assertRoundTrip(String codec) throws Exception {
+        // compressible content spanning several buffers
+        byte[] content = new byte[300 * 1024];
+        Random random = new Random(42);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(4));
+        }
+
+        byte[] compressed = readFully(S3Compression.compress(new ByteArrayInputStream(content), codec));
+        assertTrue(compressed.length < content.length);
+
+        byte[] decompressed = readFully(S3Compression.decompress(new ByteArrayInputStream(compressed), codec));
+        assertArrayEquals(content, decompressed);
+    }
+
+    private byte[] readFully(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.util.List;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class S3EventParserTest {
+
+    @Test
+    public void parseCreatedObjects() {
+        List<S3ObjectSummary> summaries = S3EventParser.parseCreatedObjects("{\"Records\":["
+            + "{\"eventName\":\"ObjectCreated:Put\",\"s3\":{\"bucket\":{\"name\":\"mycamelbucket\"},"
+            + "\"object\":{\"key\":\"logs/caf%C3%A9+1.txt\",\"size\":1024,\"eTag\":\"3a5c8b1ad448bca04584ecb55b836264\"}}},"
+            + "{\"eventName\":\"ObjectRemoved:Delete\",\"s3\":{\"bucket\":{\"name\":\"mycamelbucket\"},"
+            + "\"object\":{\"key\":\"logs/2.txt\"}}}]}");
+
+        assertEquals(1, summaries.size());
+        assertEquals("mycamelbucket", summaries.get(0).getBucketName());
+        assertEquals("logs/caf\u00e9 1.txt", summaries.get(0).getKey());
+        assertEquals(1024, summaries.get(0).getSize());
+        assertEquals("3a5c8b1ad448bca04584ecb55b836264", summaries.get(0).getETag());
+    }
+
+    @Test
+    public void parseEventPublishedToTopic() {
+        List<S3ObjectSummary> summaries = S3EventParser.parseCreatedObjects("{\"Type\" : \"Notification\", \"Message\" : "
+            + "\"{\\\"Records\\\":[{\\\"eventName\\\":\\\"ObjectCreated:Copy\\\",\\\"s3\\\":{\\\"bucket\\\":"
+            + "{\\\"name\\\":\\\"mycamelbucket\\\"},\\\"object\\\":{\\\"key\\\":\\\"logs/3.txt\\\"}}}]}\"}");
+
+        assertEquals(1, summaries.size());
+        assertEquals("logs/3.txt", summaries.get(0).getKey());
+    }
+
+    @Test
+    public void ignoreTestEvent() {
+        assertTrue(S3EventParser.parseCreatedObjects("{\"Service\":\"Amazon S3\",\"Event\":\"s3:TestEvent\"}").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectOtherMessages() {
+        S3EventParser.parseCreatedObjects("[1, 2, 3]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectTruncatedEscape() {
+        S3EventParser.parseCreatedObjects("{\"Records\\");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectTruncatedUnicodeEscape() {
+        S3EventParser.parseCreatedObjects("{\"Records\\u00");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectRecordsWhichAreNoArray() {
+        S3EventParser.parseCreatedObjects("{\"Records\":\"ObjectCreated:Put\"}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectKeyWhichIsNoString() {
+        S3EventParser.parseCreatedObjects("{\"Records\":[{\"eventName\":\"ObjectCreated:Put\",\"s3\":{\"bucket\":"
+            + "{\"name\":\"mycamelbucket\"},\"object\":{\"key\":42}}}]}");
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.apache.camel.component.aws.s3.AmazonS3ClientMock;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class S3LazyContentTest {
+
+    private final List<TrackingInputStream> contents = new ArrayList<TrackingInputStream>();
+
+    private AmazonS3ClientMock clientMock = new AmazonS3ClientMock() {
+        @Override
+        public S3Object getObject(String bucketName, String key) throws AmazonClientException, AmazonServiceException {
+            TrackingInputStream content = new TrackingInputStream();
+            contents.add(content);
+
+            S3Object s3Object = new S3Object();
+            s3Object.setBucketName(bucketName);
+            s3Object.setKey(key);
+            s3Object.setObjectContent(content);
+            s3Object.getObjectMetadata().setContentLength(12);
+            return s3Object;
+        }
+    };
+
+    @Test
+    public void releaseStreamsLeftOpen() throws Exception {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName("mycamelbucket");
+        summary.setKey("camel.txt");
+        summary.setSize(12);
+        S3LazyContent content = new S3LazyContent(clientMock, summary, null);
+
+        // the route reads the body twice and closes neither stream
+        InputStream first = content.getInputStream();
+        first.read();
+        InputStream second = content.getInputStream();
+        second.read();
+        assertEquals(2, contents.size());
+        assertFalse(contents.get(0).closed);
+
+        content.release();
+
+        assertTrue(contents.get(0).closed);
+        assertTrue(contents.get(1).closed);
+    }
+
+    private static class TrackingInputStream extends ByteArrayInputStream {
+        boolean closed;
+
+        TrackingInputStream() {
+            super("Camel rocks!".getBytes());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
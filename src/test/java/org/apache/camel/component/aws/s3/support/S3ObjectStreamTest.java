@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.s3.support;
+
+import java.io.ByteArrayInputStream;
+
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class S3ObjectStreamTest {
+
+    @Test
+    public void trackReadPosition() throws Exception {
+        S3ObjectStream stream = new S3ObjectStream(new ByteArrayInputStream(new byte[10]), 10);
+
+        stream.read();
+        stream.read(new byte[4], 0, 4);
+        assertEquals(5, stream.getPosition());
+        assertEquals(5, stream.getRemaining());
+        assertFalse(stream.isReleased());
+
+        stream.read(new byte[10], 0, 10);
+        stream.read();
+        assertTrue(stream.isReleased());
+    }
+
+    @Test
+    public void abortConnectionInsteadOfDrainingIt() throws Exception {
+        HttpGet request = new HttpGet("https://mycamelbucket.s3.amazonaws.com/large.bin");
+        TrackingInputStream content = new TrackingInputStream();
+        S3ObjectStream stream = new S3ObjectStream(new S3ObjectInputStream(content, request), 1024);
+
+        stream.read(new byte[16], 0, 16);
+        stream.abort();
+
+        assertTrue(request.isAborted());
+        assertFalse(content.closed);
+        // nothing is read beyond what the route consumed
+        assertEquals(1008, content.available());
+        assertTrue(stream.isReleased());
+    }
+
+    @Test
+    public void closeWhenAbortIsNotSupported() throws Exception {
+        S3ObjectStream stream = new S3ObjectStream(new ByteArrayInputStream(new byte[10]), 10);
+
+        stream.abort();
+        assertTrue(stream.isReleased());
+    }
+
+    private static class TrackingInputStream extends ByteArrayInputStream {
+        boolean closed;
+
+        TrackingInputStream() {
+            super(new byte[1024]);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
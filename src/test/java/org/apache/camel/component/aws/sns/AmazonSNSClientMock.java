@@ -16,6 +16,9 @@
  */
 package org.apache.camel.component.aws.sns;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonWebServiceRequest;
@@ -41,10 +44,13 @@ import com.amazonaws.services.sns.model.RemovePermissionRequest;
 import com.amazonaws.services.sns.model.SetTopicAttributesRequest;
 import com.amazonaws.services.sns.model.SubscribeRequest;
 import com.amazonaws.services.sns.model.SubscribeResult;
+import com.amazonaws.services.sns.model.Subscription;
 import com.amazonaws.services.sns.model.UnsubscribeRequest;
 
 public class AmazonSNSClientMock extends AmazonSNSClient {
     
+    List<Subscription> subscriptions = new ArrayList<Subscription>();
+    
     public AmazonSNSClientMock() {
         super(null);
     }
@@ -61,7 +67,16 @@ public class AmazonSNSClientMock extends AmazonSNSClient {
 
     @Override
     public SubscribeResult subscribe(SubscribeRequest subscribeRequest) throws AmazonServiceException, AmazonClientException {
-        throw new UnsupportedOperationException();
+        Subscription subscription = new Subscription();
+        subscription.setTopicArn(subscribeRequest.getTopicArn());
+        subscription.setProtocol(subscribeRequest.getProtocol());
+        subscription.setEndpoint(subscribeRequest.getEndpoint());
+        subscription.setSubscriptionArn(subscribeRequest.getTopicArn() + ":b6f5e7a2-4b7c-4b8e-9f6c-3a1d2e4f5a6b");
+        subscriptions.add(subscription);
+
+        SubscribeResult subscribeResult = new SubscribeResult();
+        subscribeResult.setSubscriptionArn(subscription.getSubscriptionArn());
+        return subscribeResult;
     }
 
     @Override
@@ -108,7 +123,9 @@ public class AmazonSNSClientMock extends AmazonSNSClient {
 
     @Override
     public ListSubscriptionsByTopicResult listSubscriptionsByTopic(ListSubscriptionsByTopicRequest listSubscriptionsByTopicRequest) throws AmazonServiceException, AmazonClientException {
-        throw new UnsupportedOperationException();
+        ListSubscriptionsByTopicResult listSubscriptionsByTopicResult = new ListSubscriptionsByTopicResult();
+        listSubscriptionsByTopicResult.setSubscriptions(new ArrayList<Subscription>(subscriptions));
+        return listSubscriptionsByTopicResult;
     }
 
     @Override
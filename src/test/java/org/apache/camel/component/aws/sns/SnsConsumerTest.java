@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.sns;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.NotifyBuilder;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.aws.sqs.AmazonSQSClientMock;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class SnsConsumerTest extends CamelTestSupport {
+
+    private static final String QUEUE_URL = "https://queue.amazonaws.com/541925086079/MyQueue";
+    private static final String TOPIC_ARN = "arn:aws:sns:us-east-1:541925086079:MyTopic";
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    private AmazonSNSClientMock snsClientMock = new AmazonSNSClientMock();
+    private AtomicInteger deletes = new AtomicInteger();
+    private AmazonSQSClientMock sqsClientMock = new AmazonSQSClientMock() {
+        @Override
+        public void deleteMessage(DeleteMessageRequest deleteMessageRequest) throws AmazonServiceException, AmazonClientException {
+            deletes.incrementAndGet();
+        }
+    };
+
+    @Test
+    public void unwrapNotificationsOfTheSubscribedQueue() throws Exception {
+        assertEquals(1, snsClientMock.subscriptions.size());
+        assertEquals("sqs", snsClientMock.subscriptions.get(0).getProtocol());
+        assertEquals("arn:aws:sqs:us-east-1:541925086079:MyQueue", snsClientMock.subscriptions.get(0).getEndpoint());
+
+        String policy = sqsClientMock.getQueueAttributes().get("Policy");
+        assertTrue(policy.contains("\"aws:SourceArn\":\"" + TOPIC_ARN + "\""));
+        assertTrue(policy.contains("\"Resource\": \"arn:aws:sqs:us-east-1:541925086079:MyQueue\""));
+
+        NotifyBuilder notify = new NotifyBuilder(context).whenDone(3).create();
+        mock.expectedBodiesReceived("This is my message text.", "This was sent to the queue directly.", "{\"Type\":\"Notification\\");
+
+        sqsClientMock.sendMessage(new SendMessageRequest(QUEUE_URL, "{\"Type\" : \"Notification\","
+                + " \"MessageId\" : \"dcc8ce7a-7f18-4385-bedd-b97984b4363c\", \"TopicArn\" : \"" + TOPIC_ARN + "\","
+                + " \"Subject\" : \"This is my subject text.\", \"Message\" : \"This is my message text.\","
+                + " \"Timestamp\" : \"2011-07-12T10:15:30.000Z\", \"SignatureVersion\" : \"1\"}"));
+        sqsClientMock.sendMessage(new SendMessageRequest(QUEUE_URL, "This was sent to the queue directly."));
+        // a malformed document is consumed as it is
+        sqsClientMock.sendMessage(new SendMessageRequest(QUEUE_URL, "{\"Type\":\"Notification\\"));
+
+        assertMockEndpointsSatisfied();
+
+        Exchange exchange = mock.getExchanges().get(0);
+        assertEquals("dcc8ce7a-7f18-4385-bedd-b97984b4363c", exchange.getIn().getHeader(SnsConstants.MESSAGE_ID));
+        assertEquals("This is my subject text.", exchange.getIn().getHeader(SnsConstants.SUBJECT));
+        assertEquals(TOPIC_ARN, exchange.getIn().getHeader(SnsConstants.TOPIC_ARN));
+        assertEquals("2011-07-12T10:15:30.000Z", exchange.getIn().getHeader(SnsConstants.TIMESTAMP));
+
+        exchange = mock.getExchanges().get(1);
+        assertEquals("f6fb6f99-5eb2-4be4-9b15-144774141458", exchange.getIn().getHeader(SnsConstants.MESSAGE_ID));
+        assertNull(exchange.getIn().getHeader(SnsConstants.TOPIC_ARN));
+
+        // the exchanges complete after the mock endpoint got them
+        assertTrue(notify.matches(5, TimeUnit.SECONDS));
+        assertEquals(3, deletes.get());
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+        registry.bind("amazonSNSClient", snsClientMock);
+        registry.bind("amazonSQSClient", sqsClientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-sns://MyTopic?amazonSNSClient=#amazonSNSClient&amazonSQSClient=#amazonSQSClient&queueName=MyQueue&delay=100")
+                    .to("mock:result");
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.sns;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.aws.sqs.AmazonSQSClientMock;
+import org.apache.camel.component.aws.support.JsonReader;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.apache.camel.util.CastUtils;
+import org.junit.Test;
+
+public class SnsQueueSubscriberTest extends CamelTestSupport {
+
+    private static final String QUEUE_ARN = "arn:aws:sqs:us-east-1:541925086079:MyQueue";
+    private static final String TOPIC_ARN = "arn:aws:sns:us-east-1:541925086079:MyTopic";
+    private static final String OTHER_STATEMENT = "{\"Sid\":\"other\",\"Effect\":\"Allow\",\"Principal\":{\"AWS\":\"*\"},"
+        + "\"Action\":\"SQS:SendMessage\",\"Resource\":\"" + QUEUE_ARN + "\"}";
+
+    private AmazonSQSClientMock sqsClientMock = new AmazonSQSClientMock();
+
+    @Test
+    public void addStatementToExistingPolicy() throws Exception {
+        Map<String, Object> policy = CastUtils.cast((Map<?, ?>) new JsonReader(sqsClientMock.getQueueAttributes().get("Policy")).readValue());
+        assertEquals("2008-10-17", policy.get("Version"));
+
+        List<Map<String, Object>> statements = CastUtils.cast((List<?>) policy.get("Statement"));
+        assertEquals(2, statements.size());
+        assertEquals("other", statements.get(0).get("Sid"));
+        assertEquals(QUEUE_ARN + "/" + TOPIC_ARN, statements.get(1).get("Sid"));
+        Map<String, Object> condition = CastUtils.cast((Map<?, ?>) statements.get(1).get("Condition"));
+        Map<String, Object> stringLike = CastUtils.cast((Map<?, ?>) condition.get("StringLike"));
+        assertEquals(TOPIC_ARN, stringLike.get("aws:SourceArn"));
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        // the queue already allows another sender
+        sqsClientMock.getQueueAttributes().put("Policy", "{\"Version\":\"2008-10-17\",\"Statement\":" + OTHER_STATEMENT + "}");
+        registry.bind("amazonSNSClient", new AmazonSNSClientMock());
+        registry.bind("amazonSQSClient", sqsClientMock);
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-sns://MyTopic?amazonSNSClient=#amazonSNSClient&amazonSQSClient=#amazonSQSClient&queueName=MyQueue&delay=100")
+                    .to("mock:result");
+            }
+        };
+    }
+}
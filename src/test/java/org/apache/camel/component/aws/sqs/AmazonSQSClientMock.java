@@ -18,8 +18,10 @@ package org.apache.camel.component.aws.sqs;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
@@ -27,18 +29,27 @@ import com.amazonaws.services.sqs.AmazonSQSClient;
 import com.amazonaws.services.sqs.model.CreateQueueRequest;
 import com.amazonaws.services.sqs.model.CreateQueueResult;
 import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
 import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.amazonaws.services.sqs.model.SetQueueAttributesRequest;
 
 public class AmazonSQSClientMock extends AmazonSQSClient {
     
     List<Message> messages = new ArrayList<Message>();
+    Map<String, String> queueAttributes = new HashMap<String, String>();
     
     public AmazonSQSClientMock() {
         super(null);
+        queueAttributes.put("QueueArn", "arn:aws:sqs:us-east-1:541925086079:MyQueue");
+    }
+
+    public Map<String, String> getQueueAttributes() {
+        return queueAttributes;
     }
 
     @Override
@@ -89,4 +100,16 @@ public class AmazonSQSClientMock extends AmazonSQSClient {
     public void deleteMessage(DeleteMessageRequest deleteMessageRequest) throws AmazonServiceException, AmazonClientException {
         // noop
     }
-}
\ No newline at end of file
+
+    @Override
+    public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest getQueueAttributesRequest) throws AmazonServiceException, AmazonClientException {
+        GetQueueAttributesResult result = new GetQueueAttributesResult();
+        result.setAttributes(new HashMap<String, String>(queueAttributes));
+        return result;
+    }
+
+    @Override
+    public void setQueueAttributes(SetQueueAttributesRequest setQueueAttributesRequest) throws AmazonServiceException, AmazonClientException {
+        queueAttributes.putAll(setQueueAttributesRequest.getAttributes());
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.aws.sqs;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.Message;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.aws.idempotent.MappedFileIdempotentRepository;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+public class SqsIdempotentConsumerTest extends CamelTestSupport {
+
+    @EndpointInject(uri = "mock:result")
+    private MockEndpoint mock;
+
+    private AtomicInteger deletes = new AtomicInteger();
+    private AmazonSQSClientMock clientMock = new AmazonSQSClientMock() {
+        @Override
+        public void deleteMessage(DeleteMessageRequest deleteMessageRequest) throws AmazonServiceException, AmazonClientException {
+            deletes.incrementAndGet();
+        }
+    };
+
+    @Test
+    public void consumeEachMessageOnlyOnce() throws Exception {
+        mock.expectedBodiesReceived("Message 0", "Message 1");
+        assertMockEndpointsSatisfied();
+
+        // the first message is redelivered, e.g. because its deletion failed
+        synchronized (clientMock.messages) {
+            clientMock.messages.add(createMessage(0));
+        }
+        Thread.sleep(1000);
+
+        assertEquals(2, mock.getReceivedCounter());
+        assertTrue(clientMock.messages.isEmpty());
+        assertEquals(3, deletes.get());
+    }
+
+    private static Message createMessage(int counter) {
+        Message message = new Message();
+        message.setBody("Message " + counter);
+        message.setMD5OfBody("6a1559560f67c5e7a7d5d838bf0272ee");
+        message.setMessageId("f6fb6f99-5eb2-4be4-9b15-14477414145" + counter);
+        message.setReceiptHandle("0NNAq8PwvXsyZkR6yu4nQ07FGxNmOBWi" + counter);
+        return message;
+    }
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry registry = super.createRegistry();
+
+        for (int counter = 0; counter < 2; counter++) {
+            clientMock.messages.add(createMessage(counter));
+        }
+
+        File fileStore = new File("target/idempotent/MyQueue.dat");
+        fileStore.delete();
+
+        registry.bind("amazonSQSClient", clientMock);
+        registry.bind("processedMessages", new MappedFileIdempotentRepository(fileStore));
+
+        return registry;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        return new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("aws-sqs://MyQueue?amazonSQSClient=#amazonSQSClient&idempotentRepository=#processedMessages&delay=100")
+                    .to("mock:result");
+            }
+        };
+    }
+}